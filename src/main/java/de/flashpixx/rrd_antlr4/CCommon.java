@@ -117,7 +117,7 @@ public final class CCommon
      *
      * @return property object
      */
-    static ResourceBundle configuration()
+    public static ResourceBundle configuration()
     {
         return PROPERTIES;
     }
@@ -28,6 +28,7 @@ import de.flashpixx.rrd_antlr4.engine.template.ETemplate;
 import de.flashpixx.rrd_antlr4.engine.template.ITemplate;
 import de.flashpixx.rrd_antlr4.generator.CPlugin;
 import de.flashpixx.rrd_antlr4.generator.CStandalone;
+import de.flashpixx.rrd_antlr4.generator.CWatcher;
 import de.flashpixx.rrd_antlr4.generator.IGenerator;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
@@ -48,7 +49,9 @@ import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -88,6 +91,10 @@ public final class CMain extends AbstractMavenReport
      * default export format
      */
     private static final String DEFAULTTEMPLATE = "HTML";
+    /**
+     * default number of worker threads
+     */
+    private static final int DEFAULTTHREADS = Runtime.getRuntime().availableProcessors();
     /**
      * default grammar file extension
      */
@@ -129,6 +136,24 @@ public final class CMain extends AbstractMavenReport
      */
     @Parameter
     private String[] docclean;
+    /**
+     * Maven plugin number of grammar files which are processed concurrently,
+     * a value less or equal zero uses all available cores
+     */
+    @Parameter( defaultValue = "0" )
+    private int threads;
+    /**
+     * Maven plugin directory of the persistent model cache,
+     * an empty value disables the cache
+     */
+    @Parameter( defaultValue = "${project.build.directory}/rrd-cache" )
+    private String cache;
+    /**
+     * Maven plugin flag to write static template files once
+     * into a shared asset directory of each template
+     */
+    @Parameter( defaultValue = "false" )
+    private boolean sharedassets;
 
 
     // --- standalone execution --------------------------------------------------------------------------------------------------------------------------------
@@ -151,6 +176,11 @@ public final class CMain extends AbstractMavenReport
         l_clioptions.addOption( "language", true, CCommon.languagestring( CMain.class, "language" ) );
         l_clioptions.addOption( "docclean", true, CCommon.languagestring( CMain.class, "documentationclean" ) );
         l_clioptions.addOption( "templates", true, CCommon.languagestring( CMain.class, "template", Arrays.asList( ETemplate.values() ), DEFAULTTEMPLATE ) );
+        l_clioptions.addOption( "threads", true, CCommon.languagestring( CMain.class, "threads", DEFAULTTHREADS ) );
+        l_clioptions.addOption( "cache", true, CCommon.languagestring( CMain.class, "cache" ) );
+        l_clioptions.addOption( "sharedassets", false, CCommon.languagestring( CMain.class, "sharedassets" ) );
+        l_clioptions.addOption( "watch", false, CCommon.languagestring( CMain.class, "watch" ) );
+        l_clioptions.addOption( "statistic", false, CCommon.languagestring( CMain.class, "statistic" ) );
 
 
         final CommandLine l_cli;
@@ -200,18 +230,57 @@ public final class CMain extends AbstractMavenReport
         );
 
 
+        final int l_threads;
+        try
+        {
+            l_threads = Integer.parseInt( l_cli.getOptionValue( "threads", String.valueOf( DEFAULTTHREADS ) ).trim() );
+        }
+        catch ( final NumberFormatException l_exception )
+        {
+            System.err.println( CCommon.languagestring( CMain.class, "parseerror", l_exception.getLocalizedMessage() ) );
+            System.exit( -1 );
+            return;
+        }
+
+
         // --- run generator ---
-        final IGenerator l_generator = new CStandalone( l_initdata.v1(), l_initdata.v3(), l_initdata.v5(), l_initdata.v2() );
+        final IGenerator l_generator = new CStandalone(
+            l_initdata.v1(), l_initdata.v3(), l_initdata.v5(), l_initdata.v2(),
+            l_cli.hasOption( "cache" ) ? new File( l_cli.getOptionValue( "cache" ) ) : null,
+            l_cli.hasOption( "sharedassets" )
+        );
 
-        if ( Arrays.stream( l_cli.getOptionValue( "grammar" ).split( "," ) )
-                   .flatMap( i -> CMain.filelist( new File( i.trim() ), l_initdata.v3(), l_initdata.v4() ) )
-                   .map( i -> l_generator.generate( i ).hasError() )
-                   .findFirst()
-                   .isPresent()
-            )
-            System.exit( -1 );
+        final Supplier<Stream<File>> l_grammars = () -> Arrays.stream( l_cli.getOptionValue( "grammar" ).split( "," ) )
+                                                             .flatMap( i -> CMain.filelist( new File( i.trim() ), l_initdata.v3(), l_initdata.v4() ) );
 
-        l_generator.finish();
+        // all grammar files are processed, the exit code is set after the last one is finished
+        l_generator.generate( l_grammars.get(), l_threads ).finish();
+
+        if ( l_cli.hasOption( "statistic" ) )
+            l_generator.statistic().forEach( ( i, j ) -> System.out.println( CCommon.languagestring( CMain.class, "statisticvalue", i, j ) ) );
+
+        // watch mode runs until the process is terminated, the JVM and the parsed models are kept
+        if ( l_cli.hasOption( "watch" ) )
+            new CWatcher(
+                l_generator,
+                l_grammars,
+                Stream.concat(
+                    Arrays.stream( l_cli.getOptionValue( "grammar" ).split( "," ) ),
+                    Arrays.stream( l_cli.getOptionValue( "imports", "" ).split( "," ) )
+                )
+                      .map( String::trim )
+                      .filter( i -> !i.isEmpty() )
+                      .map( File::new )
+                      .map( i -> i.isDirectory() ? i : i.getAbsoluteFile().getParentFile() )
+                      .distinct()
+                      .collect( Collectors.toList() ),
+                Stream.of( l_initdata.v1(), l_cli.hasOption( "cache" ) ? new File( l_cli.getOptionValue( "cache" ) ) : null )
+                      .filter( Objects::nonNull )
+                      .collect( Collectors.toList() ),
+                l_threads
+            ).run();
+
+        System.exit( l_generator.hasError() ? -1 : 0 );
     }
 
     // ---------------------------------------------------------------------------------------------------------------------------------------------------------
@@ -253,12 +322,18 @@ public final class CMain extends AbstractMavenReport
         );
 
         // --- run generator ---
-        final IGenerator l_generator = new CPlugin( this, NAME, l_initdata.v1(), new File( grammarbasedir ), l_initdata.v3(), l_initdata.v5(), l_initdata.v2() );
-        Arrays.stream( grammar )
-              .flatMap( i -> CMain.filelist( new File( i.trim() ), l_initdata.v3(), l_initdata.v4() ) )
-              .forEach( l_generator::generate );
+        final IGenerator l_generator = new CPlugin(
+            this, NAME, l_initdata.v1(), new File( grammarbasedir ), l_initdata.v3(), l_initdata.v5(), l_initdata.v2(),
+            ( cache == null ) || ( cache.trim().isEmpty() ) ? null : new File( cache.trim() ),
+            sharedassets
+        );
+        l_generator.generate(
+            Arrays.stream( grammar )
+                  .flatMap( i -> CMain.filelist( new File( i.trim() ), l_initdata.v3(), l_initdata.v4() ) ),
+            threads
+        ).finish();
 
-        l_generator.finish();
+        l_generator.statistic().forEach( ( i, j ) -> this.getLog().debug( CCommon.languagestring( this, "statisticvalue", i, j ) ) );
     }
 
     // ---------------------------------------------------------------------------------------------------------------------------------------------------------
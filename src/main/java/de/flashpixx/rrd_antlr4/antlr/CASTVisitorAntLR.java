@@ -23,9 +23,9 @@
 
 package de.flashpixx.rrd_antlr4.antlr;
 
-import de.flashpixx.rrd_antlr4.engine.template.ITemplate;
-
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -36,32 +36,30 @@ import java.util.stream.Collectors;
 @SuppressWarnings( {"all", "warnings", "unchecked", "unused", "cast"} )
 public final class CASTVisitorAntLR extends ANTLRv4ParserBaseVisitor<IGrammarElement>
 {
-    /**
-     * exporting template
-     */
-    private final ITemplate m_template;
     /**
      * grammar name - is set by the first grammar rule
      */
     private IGrammarComplexElement m_grammar;
+    /**
+     * list with grammar rules in definition order
+     */
+    private final List<IGrammarComplexElement> m_rules = new ArrayList<>();
     /**
      * set with grammer imports
      */
-    private Set<IGrammarSimpleElement<String>> m_imports = new HashSet<>();
+    private final Set<String> m_imports = new LinkedHashSet<>();
     /**
      * set with documentation clean pattern
      */
     private final Set<String> m_docuclean;
 
     /**
-     * exporting template
+     * ctor
      *
-     * @param p_template template
      * @param p_docuclean set with regex for documentation cleanup
      */
-    public CASTVisitorAntLR( final ITemplate p_template, final Set<String> p_docuclean )
+    public CASTVisitorAntLR( final Set<String> p_docuclean )
     {
-        m_template = p_template;
         m_docuclean = p_docuclean;
     }
 
@@ -69,11 +67,9 @@ public final class CASTVisitorAntLR extends ANTLRv4ParserBaseVisitor<IGrammarEle
     @Override
     public final IGrammarElement visitGrammarSpec( final ANTLRv4Parser.GrammarSpecContext p_context )
     {
-        m_grammar = m_template.grammar(
-                new CGrammar(
-                        p_context.id().getText(),
-                        CCommon.cleanComment( p_context.DOC_COMMENT() == null ? null : p_context.DOC_COMMENT().getText(), m_docuclean )
-                )
+        m_grammar = new CGrammar(
+                p_context.id().getText(),
+                CCommon.cleanComment( p_context.DOC_COMMENT() == null ? null : p_context.DOC_COMMENT().getText(), m_docuclean )
         );
         return super.visitGrammarSpec( p_context );
     }
@@ -83,15 +79,14 @@ public final class CASTVisitorAntLR extends ANTLRv4ParserBaseVisitor<IGrammarEle
     @Override
     public final IGrammarElement visitDelegateGrammar( final ANTLRv4Parser.DelegateGrammarContext p_context )
     {
-        p_context.id().stream().map( i -> (IGrammarSimpleElement<String>) this.visitId( i ) ).forEach( i -> m_imports.add( i ) );
+        p_context.id().stream().map( i -> ( (IGrammarSimpleElement<String>) this.visitId( i ) ).<String>get() ).forEach( i -> m_imports.add( i ) );
         return this.visitChildren( p_context );
     }
 
     @Override
     public final IGrammarElement visitParserRuleSpec( final ANTLRv4Parser.ParserRuleSpecContext p_context )
     {
-        return m_template.element(
-                m_grammar,
+        return this.rule(
                 new CGrammarRule(
                         p_context.RULE_REF().getText(),
                         CCommon.cleanComment( p_context.DOC_COMMENT() == null ? null : p_context.DOC_COMMENT().getText(), m_docuclean ),
@@ -137,8 +132,7 @@ public final class CASTVisitorAntLR extends ANTLRv4ParserBaseVisitor<IGrammarEle
     public final IGrammarElement visitLexerRuleSpec( final ANTLRv4Parser.LexerRuleSpecContext p_context )
     {
         // Element Push
-        return m_template.element(
-                m_grammar,
+        return this.rule(
                 new CGrammarNonTerminal(
                         p_context.TOKEN_REF().getText(),
                         CCommon.cleanComment( p_context.DOC_COMMENT() == null ? null : p_context.DOC_COMMENT().getText(), m_docuclean ),
@@ -162,7 +156,38 @@ public final class CASTVisitorAntLR extends ANTLRv4ParserBaseVisitor<IGrammarEle
     public final IGrammarElement visitNotSet( final ANTLRv4Parser.NotSetContext p_context )
     {
         // Sequence with NOT
-        return new CGrammarNegation( this.visitChildren( p_context ) );
+        return new CGrammarNegation(
+                p_context.setElement() != null
+                ? this.visitSetElement( p_context.setElement() )
+                : this.visitBlockSet( p_context.blockSet() )
+        );
+    }
+
+    @Override
+    public final IGrammarElement visitSetElement( final ANTLRv4Parser.SetElementContext p_context )
+    {
+        if ( p_context.TOKEN_REF() != null )
+            return new CGrammarIdentifier( p_context.TOKEN_REF().getText() );
+
+        if ( p_context.STRING_LITERAL() != null )
+            return new CGrammarTerminalValue<>( p_context.STRING_LITERAL().getText() );
+
+        if ( p_context.range() != null )
+            return this.visitRange( p_context.range() );
+
+        final IGrammarElement l_set = CCommon.characterset( p_context.LEXER_CHAR_SET().getText() );
+        return l_set == null
+               ? CCommon.terminalvalue( p_context.LEXER_CHAR_SET().getText() )
+               : l_set;
+    }
+
+    @Override
+    public final IGrammarElement visitRange( final ANTLRv4Parser.RangeContext p_context )
+    {
+        final IGrammarElement l_range = CCommon.characterrange( p_context.STRING_LITERAL( 0 ).getText(), p_context.STRING_LITERAL( 1 ).getText() );
+        return l_range == null
+               ? new CGrammarTerminalValue<>( p_context.getText() )
+               : l_range;
     }
 
     @Override
@@ -179,8 +204,10 @@ public final class CASTVisitorAntLR extends ANTLRv4ParserBaseVisitor<IGrammarEle
     @Override
     public final IGrammarElement visitLexerAlt( final ANTLRv4Parser.LexerAltContext p_context )
     {
-        // Sequence - ignoring lexer command rule
-        return this.visitLexerElements( p_context.lexerElements() );
+        // Sequence - ignoring lexer command rule, empty alternatives are ignored
+        return p_context.lexerElements() == null
+               ? null
+               : this.visitLexerElements( p_context.lexerElements() );
     }
 
     @Override
@@ -254,7 +281,60 @@ public final class CASTVisitorAntLR extends ANTLRv4ParserBaseVisitor<IGrammarEle
     @Override
     public final IGrammarElement visitLexerElement( final ANTLRv4Parser.LexerElementContext p_context )
     {
-        return CCommon.terminalvalue( p_context.getText() );
+        final String l_cardinality = p_context.ebnfSuffix() != null
+                                     ? p_context.ebnfSuffix().getText()
+                                     : "";
+
+        if ( p_context.lexerBlock() != null )
+            return CCommon.cardinality( l_cardinality, this.visitLexerBlock( p_context.lexerBlock() ) );
+
+        if ( ( p_context.labeledLexerElement() != null ) && ( p_context.labeledLexerElement().block() != null ) )
+            return CCommon.cardinality( l_cardinality, this.visitBlock( p_context.labeledLexerElement().block() ) );
+
+        // actions and predicates are not part of the syntax
+        final ANTLRv4Parser.LexerAtomContext l_atom = p_context.labeledLexerElement() != null
+                                                      ? p_context.labeledLexerElement().lexerAtom()
+                                                      : p_context.lexerAtom();
+        if ( l_atom == null )
+            return null;
+
+        // atoms are built from the parse tree, only character sets which cannot be
+        // scanned are converted as regular expression, the conversion result is
+        // shared, so the cardinality is passed within the expression
+        final IGrammarElement l_element = this.visitLexerAtom( l_atom );
+        return l_element == null
+               ? CCommon.terminalvalue( l_atom.getText() + l_cardinality )
+               : CCommon.cardinality( l_cardinality, l_element );
+    }
+
+    @Override
+    public final IGrammarElement visitLexerBlock( final ANTLRv4Parser.LexerBlockContext p_context )
+    {
+        return new CGrammarGroup( this.visitLexerAltList( p_context.lexerAltList() ) );
+    }
+
+    @Override
+    public final IGrammarElement visitLexerAtom( final ANTLRv4Parser.LexerAtomContext p_context )
+    {
+        if ( p_context.range() != null )
+            return this.visitRange( p_context.range() );
+
+        if ( p_context.terminal() != null )
+            return p_context.terminal().TOKEN_REF() != null
+                   ? new CGrammarIdentifier( p_context.terminal().TOKEN_REF().getText() )
+                   : new CGrammarTerminalValue<>( p_context.terminal().STRING_LITERAL().getText() );
+
+        if ( p_context.RULE_REF() != null )
+            return new CGrammarIdentifier( p_context.RULE_REF().getText() );
+
+        if ( p_context.notSet() != null )
+            return this.visitNotSet( p_context.notSet() );
+
+        if ( p_context.LEXER_CHAR_SET() != null )
+            return CCommon.characterset( p_context.LEXER_CHAR_SET().getText() );
+
+        // the wildcard is converted like a regular expression, so it is cached and labeled like any other dot
+        return CCommon.terminalvalue( "." );
     }
 
     @Override
@@ -272,13 +352,25 @@ public final class CASTVisitorAntLR extends ANTLRv4ParserBaseVisitor<IGrammarEle
 
 
     /**
-     * returns a set with grammar imports
+     * returns the visited grammar model
+     *
+     * @return grammar model
+     */
+    public final CGrammarModel model()
+    {
+        return new CGrammarModel( m_grammar, new ArrayList<>( m_rules ), new LinkedHashSet<>( m_imports ) );
+    }
+
+    /**
+     * adds a completed rule to the model
      *
-     * @return set with grammar imports
+     * @param p_rule rule
+     * @return rule
      */
-    public final Set<IGrammarSimpleElement<String>> getGrammarImports()
+    private IGrammarComplexElement rule( final IGrammarComplexElement p_rule )
     {
-        return m_imports;
+        m_rules.add( p_rule );
+        return p_rule;
     }
 
 }
@@ -23,15 +23,12 @@
 
 package de.flashpixx.rrd_antlr4.antlr;
 
-import com.aol.cyclops.sequence.SequenceM;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 
 /**
@@ -50,11 +47,29 @@ public final class CASTVisitorPCRE extends PCREBaseVisitor<Object>
     @Override
     public final Object visitCharacter_class( final PCREParser.Character_classContext p_context )
     {
-        return CCommon.choice(
-                p_context.cc_atom().stream()
-                         .map( i -> new CGrammarTerminalValue<>( i.getText() ) )
-                         .collect( Collectors.toList() )
-        );
+        final List<String> l_items = p_context.cc_atom().stream()
+                                              .map( i -> i.getText() )
+                                              .collect( Collectors.toList() );
+
+        // a ] in front of the items is a literal or the start of a range, the last ] closes the class
+        if ( p_context.CharacterClassEnd().size() > 1 )
+            if ( p_context.Hyphen() == null )
+                l_items.add( 0, "]" );
+            else
+                l_items.set( 0, "]-" + l_items.get( 0 ) );
+
+        final IGrammarElement l_class = CCommon.characterclass( l_items );
+        final IGrammarElement l_element = l_class != null
+                                          ? l_class
+                                          : CCommon.choice(
+                                              l_items.stream()
+                                                     .map( i -> new CGrammarTerminalValue<>( i ) )
+                                                     .collect( Collectors.toList() )
+                                          );
+
+        return p_context.Caret() == null
+               ? l_element
+               : new CGrammarNegation( l_element );
     }
 
     @Override
@@ -107,25 +122,9 @@ public final class CASTVisitorPCRE extends PCREBaseVisitor<Object>
                                                        .filter( i -> i != null )
                                                        .collect( Collectors.toList() );
 
-        // get pairs and check if a negation "~" is followed by
-        // a grammar symbol so concat this first
-        final List<Pair<?, String>> l_clean = SequenceM.range( 0, l_pairs.size() )
-                                                       .sliding( 2, 2 )
-                                                       .flatMap( i -> l_pairs.get( i.get( 0 ) ).getLeft().equals( "~" )
-                                                                      ? Stream.of( new ImmutablePair<>(
-                                                                                           new CGrammarNegation( (IGrammarElement) l_pairs.get( i.get( 1 ) ).getLeft() ),
-                                                                                           l_pairs.get( i.get( 1 ) ).getRight()
-                                                                                   )
-                                                                 )
-                                                                      : i.get( 1 ) != null
-                                                                        ? Stream.of( l_pairs.get( i.get( 0 ) ), l_pairs.get( i.get( 1 ) ) )
-                                                                        : Stream.of( l_pairs.get( i.get( 0 ) ) )
-                                                       )
-                                                       .collect( Collectors.toList() );
-
         // build sequences and implode strings
         return CCommon.sequence(
-                this.implode( l_clean ).stream()
+                this.implode( this.negation( l_pairs ) ).stream()
                     .map( i -> CCommon.cardinality(
                             i.getRight(),
                             i.getLeft() instanceof String
@@ -175,51 +174,83 @@ public final class CASTVisitorPCRE extends PCREBaseVisitor<Object>
         );
     }
 
+    /**
+     * pairs a negation "~" with the following element,
+     * the elements are checked in blocks of two, so only
+     * a negation on an even position will be paired
+     *
+     * @param p_list list of pairs object & quantifier
+     * @return list with negation elements
+     */
+    private List<Pair<?, String>> negation( final List<Pair<?, String>> p_list )
+    {
+        final List<Pair<?, String>> l_result = new ArrayList<>( p_list.size() );
+
+        for ( int i = 0; i < p_list.size(); i += 2 )
+        {
+            final boolean l_next = i + 1 < p_list.size();
+
+            if ( l_next && "~".equals( p_list.get( i ).getLeft() ) )
+                l_result.add( new ImmutablePair<>( new CGrammarNegation( (IGrammarElement) p_list.get( i + 1 ).getLeft() ), p_list.get( i + 1 ).getRight() ) );
+            else
+            {
+                l_result.add( p_list.get( i ) );
+                if ( l_next )
+                    l_result.add( p_list.get( i + 1 ) );
+            }
+        }
+
+        return l_result;
+    }
+
     /**
      * implodes a list of any objects, strings
-     * will be concated into one string
+     * will be concated into one string in a single pass
      *
      * @param p_list list of pairs object & quantifier
      * @return list with concated objects and used quantifier
+     *
+     * @note the mergeable elements (string or quantifier) are concated in blocks of two,
+     * elements before the first block and between two blocks are removed, except
+     * the elements in front of the last mergeable element if the number of mergeable
+     * elements is odd, the quantifier of the last mergeable element is used
      */
     private List<Pair<?, String>> implode( final List<Pair<?, String>> p_list )
     {
-        // search string within the list
-        final int l_start = this.filter( 0, p_list );
-        if ( l_start < 0 )
+        final long l_count = p_list.stream().filter( CASTVisitorPCRE::mergeable ).count();
+        if ( l_count < 2 )
             return p_list;
 
-        final int l_end = this.filter( l_start + 1, p_list );
-        if ( l_end < 0 )
-            return p_list;
+        final StringBuilder l_string = new StringBuilder();
+        int l_seen = 0;
+        int l_last = -1;
 
-        return this.implode(
-            Stream.concat(
-                Stream.of(
-                    new ImmutablePair<>(
-                        StringUtils.join( p_list.subList( l_start, l_end + 1 ).stream().map( i -> i.getLeft().toString() ).collect( Collectors.toList() ), "" ),
-                        p_list.get( l_end ).getRight()
-                    )
-                ),
-                CASTVisitorPCRE.this.implode( p_list.subList( l_end + 1, p_list.size() ) ).stream()
-            ).collect( Collectors.toList() )
-        );
+        for ( int i = 0; i < p_list.size(); i++ )
+        {
+            if ( !mergeable( p_list.get( i ) ) )
+                continue;
+
+            l_seen++;
+            for ( int j = ( l_seen % 2 == 1 ) && ( l_seen < l_count ) ? i : l_last + 1; j <= i; j++ )
+                l_string.append( p_list.get( j ).getLeft().toString() );
+            l_last = i;
+        }
+
+        final List<Pair<?, String>> l_result = new ArrayList<>( p_list.size() - l_last );
+        l_result.add( new ImmutablePair<>( l_string.toString(), p_list.get( l_last ).getRight() ) );
+        l_result.addAll( p_list.subList( l_last + 1, p_list.size() ) );
+        return l_result;
     }
 
     /**
-     * filters the pair list of string or quantifier
+     * checks if an element can be concated
      *
-     * @param p_start start index
-     * @param p_list list
-     * @return end position of a string or quantifier element, -1 on non found
+     * @param p_pair pair of object & quantifier
+     * @return string or quantifier element
      */
-    private int filter( final int p_start, final List<Pair<?, String>> p_list )
+    private static boolean mergeable( final Pair<?, String> p_pair )
     {
-        return IntStream.range( p_start, p_list.size() )
-                        .boxed()
-                        .filter( i -> ( p_list.get( i ).getLeft() instanceof String ) || ( !p_list.get( i ).getRight().isEmpty() ) )
-                        .findFirst()
-                        .orElse( -1 );
+        return ( p_pair.getLeft() instanceof String ) || ( !p_pair.getRight().isEmpty() );
     }
 
 }
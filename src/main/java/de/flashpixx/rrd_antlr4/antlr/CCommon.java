@@ -23,16 +23,21 @@
 
 package de.flashpixx.rrd_antlr4.antlr;
 
-import de.flashpixx.rrd_antlr4.CStringReplace;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.CommonTokenStream;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 
 /**
@@ -40,6 +45,16 @@ import java.util.regex.PatternSyntaxException;
  */
 public final class CCommon
 {
+    /**
+     * maximum number of compiled documentation clean expressions
+     */
+    private static final int DOCUCLEANCACHESIZE = 256;
+    /**
+     * cache of compiled documentation clean expressions
+     */
+    private static final Cache<String, Pattern> DOCUCLEAN = CacheBuilder.newBuilder()
+                                                                        .maximumSize( DOCUCLEANCACHESIZE )
+                                                                        .build();
 
     /**
      * ctor
@@ -63,16 +78,24 @@ public final class CCommon
     }
 
     /**
-     * creates a choice
+     * creates a choice, a choice of character
+     * classes is merged into one character class
      *
      * @param p_elements grammar elements
      * @return grammar element
      */
     public static IGrammarElement choice( final List<IGrammarElement> p_elements )
     {
-        return p_elements.size() == 1
-               ? p_elements.get( 0 )
-               : new CGrammarChoice( p_elements );
+        if ( p_elements.size() == 1 )
+            return p_elements.get( 0 );
+
+        if ( ( !p_elements.isEmpty() )
+             && ( p_elements.stream().allMatch( i -> ( i instanceof IGrammarCharacterClass ) && ( i.cardinality() == IGrammarElement.ECardinality.NONE ) ) ) )
+            return new CGrammarCharacterClass(
+                p_elements.stream().flatMapToInt( i -> Arrays.stream( ( (IGrammarCharacterClass) i ).ranges() ) ).toArray()
+            );
+
+        return new CGrammarChoice( p_elements );
     }
 
     /**
@@ -110,12 +133,12 @@ public final class CCommon
     }
 
     /**
-     * generates a terminal element with data
+     * generates a terminal element with data, regular expressions
+     * are converted once and the element is cached
      *
      * @param p_value data string
      * @return grammar terminal element
      */
-    @SuppressWarnings( "unchecked" )
     public static IGrammarElement terminalvalue( final String p_value )
     {
         // a terminal-string starts and ends always with ', so we do
@@ -123,6 +146,295 @@ public final class CCommon
         if ( ( p_value.startsWith( "'" ) ) && ( p_value.endsWith( "'" ) ) )
             return new CGrammarTerminalValue<>( p_value );
 
+        final IGrammarElement l_cached = CTerminalCache.get( p_value );
+        if ( l_cached != null )
+            return l_cached;
+
+        final IGrammarElement l_element = CCommon.regularexpression( p_value );
+        if ( l_element != null )
+            CTerminalCache.put( p_value, l_element );
+        return l_element;
+    }
+
+    /**
+     * converts a lexer character set into a character class,
+     * if the set contains unknown properties a choice of its
+     * characters and ranges is returned
+     *
+     * @param p_set character set with brackets
+     * @return grammar element or null if the set cannot be scanned
+     */
+    public static IGrammarElement characterset( final String p_set )
+    {
+        if ( ( p_set.length() < 3 ) || ( !p_set.startsWith( "[" ) ) || ( !p_set.endsWith( "]" ) ) )
+            return null;
+
+        final String l_body = p_set.substring( 1, p_set.length() - 1 );
+        final List<String> l_items = new ArrayList<>();
+
+        int l_start = 0;
+        while ( l_start < l_body.length() )
+        {
+            int l_end = CCommon.characterend( l_body, l_start );
+            if ( ( l_end > 0 ) && ( l_end < l_body.length() - 1 ) && ( l_body.charAt( l_end ) == '-' ) )
+                l_end = CCommon.characterend( l_body, l_end + 1 );
+            if ( l_end < 0 )
+                return null;
+
+            l_items.add( l_body.substring( l_start, l_end ) );
+            l_start = l_end;
+        }
+
+        final IGrammarElement l_class = CCommon.characterclass( l_items );
+        return l_class != null
+               ? l_class
+               : CCommon.choice( l_items.stream().map( CGrammarTerminalValue::new ).collect( Collectors.toList() ) );
+    }
+
+    /**
+     * creates a character class of a lexer range
+     *
+     * @param p_lower lower string literal
+     * @param p_upper upper string literal
+     * @return character class or null if the literals are not single characters
+     */
+    public static IGrammarElement characterrange( final String p_lower, final String p_upper )
+    {
+        final int l_lower = CCommon.codepoint( CCommon.cleanString( p_lower ) );
+        final int l_upper = CCommon.codepoint( CCommon.cleanString( p_upper ) );
+
+        return ( l_lower < 0 ) || ( l_upper < l_lower )
+               ? null
+               : new CGrammarCharacterClass( l_lower, l_upper );
+    }
+
+    /**
+     * creates a character class of character set items
+     *
+     * @param p_items items like a, a-z, \\n, \\uFFFF or \\p{Lu}
+     * @return character class or null if any item cannot be converted
+     */
+    static IGrammarElement characterclass( final List<String> p_items )
+    {
+        final IntStream.Builder l_ranges = IntStream.builder();
+        for ( final String l_item : p_items )
+        {
+            final int[] l_range = CCommon.range( l_item );
+            if ( l_range == null )
+                return null;
+            Arrays.stream( l_range ).forEach( l_ranges::add );
+        }
+
+        final int[] l_result = l_ranges.build().toArray();
+        return l_result.length == 0
+               ? null
+               : new CGrammarCharacterClass( l_result );
+    }
+
+    /**
+     * converts a character set item into code point ranges
+     *
+     * @param p_item item
+     * @return lower and upper bound pairs or null
+     */
+    private static int[] range( final String p_item )
+    {
+        final int[] l_shorthand = CCommon.shorthand( p_item );
+        if ( l_shorthand != null )
+            return l_shorthand;
+
+        if ( ( p_item.startsWith( "\\p{" ) || p_item.startsWith( "\\P{" ) ) && ( p_item.endsWith( "}" ) ) )
+        {
+            final EUnicodeCategory l_category = EUnicodeCategory.of( p_item.substring( 3, p_item.length() - 1 ) );
+            if ( l_category == null )
+                return null;
+
+            return p_item.charAt( 1 ) == 'p'
+                   ? l_category.ranges()
+                   : CCommon.complement( l_category.ranges() );
+        }
+
+        final int l_end = CCommon.characterend( p_item, 0 );
+        if ( l_end < 0 )
+            return null;
+
+        final int l_lower = CCommon.codepoint( p_item.substring( 0, l_end ) );
+        final int l_upper = l_end == p_item.length()
+                            ? l_lower
+                            : p_item.charAt( l_end ) == '-'
+                              ? CCommon.codepoint( p_item.substring( l_end + 1 ) )
+                              : -1;
+
+        return ( l_lower < 0 ) || ( l_upper < l_lower )
+               ? null
+               : new int[]{l_lower, l_upper};
+    }
+
+    /**
+     * returns the ranges of regular expression shorthand classes
+     *
+     * @param p_item item
+     * @return lower and upper bound pairs or null
+     */
+    private static int[] shorthand( final String p_item )
+    {
+        switch ( p_item )
+        {
+            case "\\d":
+                return new int[]{'0', '9'};
+
+            case "\\w":
+                return new int[]{'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+
+            case "\\s":
+                return new int[]{'\t', '\r', ' ', ' '};
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * returns the complement of sorted ranges
+     *
+     * @param p_ranges sorted and merged ranges
+     * @return complement ranges
+     */
+    private static int[] complement( final int[] p_ranges )
+    {
+        final IntStream.Builder l_result = IntStream.builder();
+        int l_next = 0;
+
+        for ( int i = 0; i < p_ranges.length; i += 2 )
+        {
+            if ( p_ranges[i] > l_next )
+                l_result.add( l_next ).add( p_ranges[i] - 1 );
+            l_next = p_ranges[i + 1] + 1;
+        }
+
+        if ( l_next <= Character.MAX_CODE_POINT )
+            l_result.add( l_next ).add( Character.MAX_CODE_POINT );
+
+        return l_result.build().toArray();
+    }
+
+    /**
+     * decodes a single, optional escaped, character
+     *
+     * @param p_character character like a, \\n or \\u0041
+     * @return code point or -1
+     */
+    private static int codepoint( final String p_character )
+    {
+        if ( p_character.isEmpty() )
+            return -1;
+
+        if ( p_character.charAt( 0 ) != '\\' )
+            return p_character.length() == Character.charCount( p_character.codePointAt( 0 ) )
+                   ? p_character.codePointAt( 0 )
+                   : -1;
+
+        if ( ( p_character.length() > 2 ) && ( p_character.charAt( 1 ) == 'u' ) )
+            return CCommon.unicode( p_character.substring( 2 ) );
+
+        if ( p_character.length() != 2 )
+            return -1;
+
+        switch ( p_character.charAt( 1 ) )
+        {
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            default:
+                return Character.isLetterOrDigit( p_character.charAt( 1 ) ) ? -1 : p_character.charAt( 1 );
+        }
+    }
+
+    /**
+     * decodes the hex digits of an unicode escape
+     *
+     * @param p_hex four hex digits or hex digits in curly braces
+     * @return code point or -1
+     */
+    private static int unicode( final String p_hex )
+    {
+        final String l_hex = ( p_hex.startsWith( "{" ) ) && ( p_hex.endsWith( "}" ) )
+                             ? p_hex.substring( 1, p_hex.length() - 1 )
+                             : p_hex.length() == 4 ? p_hex : "";
+
+        try
+        {
+            final int l_codepoint = Integer.parseInt( l_hex, 16 );
+            return ( l_hex.charAt( 0 ) != '-' ) && ( l_hex.charAt( 0 ) != '+' ) && ( Character.isValidCodePoint( l_codepoint ) ) ? l_codepoint : -1;
+        }
+        catch ( final NumberFormatException l_exception )
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * returns the end index of a single character of a character set,
+     * the character can be an escape sequence
+     *
+     * @param p_body character set without brackets
+     * @param p_start start index
+     * @return end index (exclusive) or -1 if the escape sequence is malformed
+     */
+    private static int characterend( final String p_body, final int p_start )
+    {
+        if ( p_body.charAt( p_start ) != '\\' )
+            return p_start + Character.charCount( p_body.codePointAt( p_start ) );
+
+        if ( p_start + 1 >= p_body.length() )
+            return -1;
+
+        switch ( p_body.charAt( p_start + 1 ) )
+        {
+            case 'u':
+                if ( ( p_start + 2 < p_body.length() ) && ( p_body.charAt( p_start + 2 ) == '{' ) )
+                    return CCommon.blockend( p_body, p_start + 2 );
+                return p_start + 6 <= p_body.length() ? p_start + 6 : -1;
+
+            case 'p':
+            case 'P':
+                return ( p_start + 2 < p_body.length() ) && ( p_body.charAt( p_start + 2 ) == '{' )
+                       ? CCommon.blockend( p_body, p_start + 2 )
+                       : -1;
+
+            default:
+                return p_start + 2;
+        }
+    }
+
+    /**
+     * returns the end index of a curly-brace block
+     *
+     * @param p_body string
+     * @param p_start index of the opening brace
+     * @return end index (exclusive) or -1 if the block is not closed
+     */
+    private static int blockend( final String p_body, final int p_start )
+    {
+        final int l_end = p_body.indexOf( '}', p_start );
+        return l_end < 0 ? -1 : l_end + 1;
+    }
+
+    /**
+     * converts a regular expression into grammar elements
+     *
+     * @param p_value data string
+     * @return grammar element
+     */
+    private static IGrammarElement regularexpression( final String p_value )
+    {
         // try to compile string as regular expression pattern
         try
         {
@@ -156,11 +468,35 @@ public final class CCommon
         if ( p_comment == null )
             return null;
 
-        // remove CR, LF and tab
-        final CStringReplace l_documentation = new CStringReplace( p_comment ).replaceAll( "(\\t|\\n)+", " " ).replace( "\r", "" );
-        p_docuclean.forEach( i -> l_documentation.replaceAll( i, "" ) );
+        // replace runs of LF and tab by a space and remove CR
+        final StringBuilder l_whitespace = new StringBuilder( p_comment.length() );
+        for ( int i = 0; i < p_comment.length(); i++ )
+        {
+            final char l_char = p_comment.charAt( i );
+            if ( l_char == '\r' )
+                continue;
+
+            if ( ( l_char != '\t' ) && ( l_char != '\n' ) )
+                l_whitespace.append( l_char );
+            else if ( ( i == 0 ) || ( ( p_comment.charAt( i - 1 ) != '\t' ) && ( p_comment.charAt( i - 1 ) != '\n' ) ) )
+                l_whitespace.append( ' ' );
+        }
+
+        // user-defined cleaning expressions are compiled once
+        String l_documentation = l_whitespace.toString();
+        for ( final String l_expression : p_docuclean )
+            l_documentation = DOCUCLEAN.asMap().computeIfAbsent( l_expression, Pattern::compile ).matcher( l_documentation ).replaceAll( "" );
+
+        // remove doxygen stars and slashes
+        final StringBuilder l_result = new StringBuilder( l_documentation.length() );
+        for ( int i = 0; i < l_documentation.length(); i++ )
+        {
+            final char l_char = l_documentation.charAt( i );
+            if ( ( l_char != '*' ) && ( l_char != '/' ) )
+                l_result.append( l_char );
+        }
 
-        return l_documentation.replaceAll( "\\*", "" ).replaceAll( "\\/", "" ).get().trim();
+        return l_result.toString().trim();
     }
 
 }
@@ -24,6 +24,7 @@
 package de.flashpixx.rrd_antlr4.antlr;
 
 import java.text.MessageFormat;
+import java.util.Objects;
 
 
 /**
@@ -39,6 +40,10 @@ final class CGrammar implements IGrammarComplexElement
      * grammar documentation
      */
     private final String m_documentation;
+    /**
+     * structural hash
+     */
+    private final int m_hash;
 
     /**
      * ctor
@@ -50,6 +55,7 @@ final class CGrammar implements IGrammarComplexElement
     {
         m_id = p_id;
         m_documentation = p_documentation == null ? "" : p_documentation;
+        m_hash = Objects.hash( m_id, m_documentation );
     }
 
     @Override
@@ -64,16 +70,28 @@ final class CGrammar implements IGrammarComplexElement
         return m_documentation;
     }
 
+    @Override
+    public final <T, A> T accept( final IGrammarVisitor<T, A> p_visitor, final A p_argument )
+    {
+        return p_visitor.visitgrammar( this, p_argument );
+    }
+
     @Override
     public final int hashCode()
     {
-        return m_id.hashCode();
+        return m_hash;
     }
 
     @Override
     public final boolean equals( final Object p_object )
     {
-        return ( p_object == null ) && ( p_object instanceof IGrammarComplexElement ) && ( this.hashCode() == p_object.hashCode() );
+        if ( this == p_object )
+            return true;
+
+        return ( p_object != null )
+               && ( p_object instanceof CGrammar )
+               && ( Objects.equals( m_id, ( (CGrammar) p_object ).m_id ) )
+               && ( m_documentation.equals( ( (CGrammar) p_object ).m_documentation ) );
     }
 
     @Override
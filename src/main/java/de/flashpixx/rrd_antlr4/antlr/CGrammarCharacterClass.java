@@ -0,0 +1,249 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.antlr;
+
+import de.flashpixx.rrd_antlr4.CCommon;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+
+/**
+ * character class with sorted and merged code point ranges
+ */
+public final class CGrammarCharacterClass implements IGrammarCharacterClass
+{
+    /**
+     * code point ranges
+     */
+    private final int[] m_ranges;
+    /**
+     * cardinality
+     */
+    private final ECardinality m_cardinality;
+    /**
+     * structural hash
+     */
+    private final int m_hash;
+    /**
+     * matching category (lazy)
+     */
+    private EUnicodeCategory m_category;
+    /**
+     * flag that the category is matched
+     */
+    private volatile boolean m_categorymatched;
+
+    /**
+     * ctor
+     *
+     * @param p_ranges lower and upper bound pairs in any order
+     */
+    public CGrammarCharacterClass( final int... p_ranges )
+    {
+        this( ECardinality.NONE, p_ranges );
+    }
+
+    /**
+     * ctor
+     *
+     * @param p_cardinality cardinality
+     * @param p_ranges lower and upper bound pairs in any order
+     */
+    public CGrammarCharacterClass( final ECardinality p_cardinality, final int... p_ranges )
+    {
+        if ( ( p_ranges.length == 0 ) || ( p_ranges.length % 2 != 0 ) )
+            throw new IllegalArgumentException( CCommon.languagestring( this, "ranges" ) );
+
+        m_ranges = CGrammarCharacterClass.merge( p_ranges );
+        m_cardinality = p_cardinality;
+        m_hash = 31 * Arrays.hashCode( m_ranges ) + m_cardinality.ordinal();
+    }
+
+    @Override
+    public final int[] ranges()
+    {
+        return m_ranges.clone();
+    }
+
+    @Override
+    public final EUnicodeCategory category()
+    {
+        if ( !m_categorymatched )
+        {
+            m_category = EUnicodeCategory.match( m_ranges );
+            m_categorymatched = true;
+        }
+        return m_category;
+    }
+
+    @Override
+    public final String notation()
+    {
+        final StringBuilder l_notation = new StringBuilder( "[" );
+        for ( int i = 0; i < m_ranges.length; i += 2 )
+        {
+            CGrammarCharacterClass.character( l_notation, m_ranges[i] );
+            if ( m_ranges[i + 1] > m_ranges[i] + 1 )
+                l_notation.append( '-' );
+            if ( m_ranges[i + 1] > m_ranges[i] )
+                CGrammarCharacterClass.character( l_notation, m_ranges[i + 1] );
+        }
+        return l_notation.append( ']' ).toString();
+    }
+
+    @Override
+    public final ECardinality cardinality()
+    {
+        return m_cardinality;
+    }
+
+    @Override
+    public final IGrammarElement cardinality( final ECardinality p_cardinality )
+    {
+        return m_cardinality == p_cardinality
+               ? this
+               : new CGrammarCharacterClass( p_cardinality, m_ranges );
+    }
+
+    @Override
+    public final <T, A> T accept( final IGrammarVisitor<T, A> p_visitor, final A p_argument )
+    {
+        return p_visitor.visitcharacterclass( this, p_argument );
+    }
+
+    @Override
+    public final int hashCode()
+    {
+        return m_hash;
+    }
+
+    @Override
+    public final boolean equals( final Object p_object )
+    {
+        if ( this == p_object )
+            return true;
+
+        return ( p_object != null )
+               && ( p_object instanceof CGrammarCharacterClass )
+               && ( m_hash == p_object.hashCode() )
+               && ( m_cardinality == ( (CGrammarCharacterClass) p_object ).m_cardinality )
+               && ( Arrays.equals( m_ranges, ( (CGrammarCharacterClass) p_object ).m_ranges ) );
+    }
+
+    @Override
+    public final String toString()
+    {
+        return MessageFormat.format( "CharacterClass( {0} ){1}", this.notation(), m_cardinality ).trim();
+    }
+
+    /**
+     * sorts and merges overlapping and adjacent ranges
+     *
+     * @param p_ranges lower and upper bound pairs
+     * @return sorted and merged ranges
+     */
+    private static int[] merge( final int[] p_ranges )
+    {
+        final long[] l_sorted = new long[p_ranges.length / 2];
+        for ( int i = 0; i < l_sorted.length; i++ )
+        {
+            CGrammarCharacterClass.validate( p_ranges[2 * i], p_ranges[2 * i + 1] );
+            l_sorted[i] = ( (long) p_ranges[2 * i] << Integer.SIZE ) | p_ranges[2 * i + 1];
+        }
+        Arrays.sort( l_sorted );
+
+        final IntStream.Builder l_result = IntStream.builder();
+        int l_lower = (int) ( l_sorted[0] >>> Integer.SIZE );
+        int l_upper = (int) l_sorted[0];
+
+        for ( final long l_range : l_sorted )
+        {
+            final int l_from = (int) ( l_range >>> Integer.SIZE );
+            if ( l_from > l_upper + 1 )
+            {
+                l_result.add( l_lower ).add( l_upper );
+                l_lower = l_from;
+            }
+            l_upper = Math.max( l_upper, (int) l_range );
+        }
+
+        return l_result.add( l_lower ).add( l_upper ).build().toArray();
+    }
+
+    /**
+     * validates a range
+     *
+     * @param p_lower lower bound
+     * @param p_upper upper bound
+     */
+    private static void validate( final int p_lower, final int p_upper )
+    {
+        if ( ( p_lower < 0 ) || ( p_upper > Character.MAX_CODE_POINT ) || ( p_lower > p_upper ) )
+            throw new IllegalArgumentException( CCommon.languagestring( CGrammarCharacterClass.class, "invalidrange", p_lower, p_upper ) );
+    }
+
+    /**
+     * appends a code point in class notation, printable
+     * ASCII characters are used directly, all other
+     * characters are escaped
+     *
+     * @param p_notation notation builder
+     * @param p_codepoint code point
+     */
+    private static void character( final StringBuilder p_notation, final int p_codepoint )
+    {
+        switch ( p_codepoint )
+        {
+            case '\\':
+            case ']':
+            case '[':
+            case '-':
+            case '^':
+                p_notation.append( '\\' ).appendCodePoint( p_codepoint );
+                return;
+
+            case '\n':
+                p_notation.append( "\\n" );
+                return;
+
+            case '\r':
+                p_notation.append( "\\r" );
+                return;
+
+            case '\t':
+                p_notation.append( "\\t" );
+                return;
+
+            default:
+        }
+
+        if ( ( p_codepoint > ' ' ) && ( p_codepoint < 0x7F ) )
+            p_notation.appendCodePoint( p_codepoint );
+        else
+            p_notation.append( p_codepoint > 0xFFFF ? String.format( "\\u{%X}", p_codepoint ) : String.format( "\\u%04X", p_codepoint ) );
+    }
+
+}
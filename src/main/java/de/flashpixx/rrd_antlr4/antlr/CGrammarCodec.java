@@ -0,0 +1,512 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.antlr;
+
+import de.flashpixx.rrd_antlr4.CCommon;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * compact binary codec of grammar models, each element is
+ * written as type tag and strings are written once into a
+ * string table and referenced by index afterwards
+ */
+public final class CGrammarCodec
+{
+    /**
+     * version of the binary format
+     */
+    public static final int VERSION = 2;
+    /**
+     * string table of writing, string and index
+     */
+    private final Map<String, Integer> m_writetable = new HashMap<>();
+    /**
+     * string table of reading, index and string
+     */
+    private final List<String> m_readtable = new ArrayList<>();
+
+    /**
+     * ctor
+     */
+    private CGrammarCodec()
+    {
+    }
+
+    /**
+     * writes a grammar model
+     *
+     * @param p_model grammar model
+     * @param p_output output
+     * @throws IOException on IO errors or if the model contains an element which cannot be encoded
+     */
+    public static void write( final CGrammarModel p_model, final DataOutput p_output ) throws IOException
+    {
+        final CGrammarCodec l_codec = new CGrammarCodec();
+
+        l_codec.writeelement( p_model.grammar(), p_output );
+
+        writeinteger( p_model.rules().size(), p_output );
+        for ( final IGrammarComplexElement l_rule : p_model.rules() )
+            l_codec.writeelement( l_rule, p_output );
+
+        writeinteger( p_model.imports().size(), p_output );
+        for ( final String l_import : p_model.imports() )
+            l_codec.writestring( l_import, p_output );
+    }
+
+    /**
+     * reads a grammar model
+     *
+     * @param p_input input
+     * @return grammar model
+     * @throws IOException on IO errors or malformed data
+     */
+    public static CGrammarModel read( final DataInput p_input ) throws IOException
+    {
+        final CGrammarCodec l_codec = new CGrammarCodec();
+
+        final IGrammarComplexElement l_grammar = l_codec.readcomplex( p_input );
+
+        final int l_rulesize = readinteger( p_input );
+        final List<IGrammarComplexElement> l_rules = new ArrayList<>( l_rulesize );
+        for ( int i = 0; i < l_rulesize; i++ )
+            l_rules.add( l_codec.readcomplex( p_input ) );
+
+        final int l_importsize = readinteger( p_input );
+        final Set<String> l_imports = new LinkedHashSet<>();
+        for ( int i = 0; i < l_importsize; i++ )
+            l_imports.add( l_codec.readstring( p_input ) );
+
+        return new CGrammarModel( l_grammar, l_rules, l_imports );
+    }
+
+    /**
+     * writes a grammar element
+     *
+     * @param p_element element or null
+     * @param p_output output
+     * @throws IOException on IO errors
+     */
+    private void writeelement( final IGrammarElement p_element, final DataOutput p_output ) throws IOException
+    {
+        if ( p_element == null )
+        {
+            this.writetype( EType.NULL, null, p_output );
+            return;
+        }
+
+        if ( p_element instanceof CGrammar )
+        {
+            this.writetype( EType.GRAMMAR, p_element, p_output );
+            this.writestring( ( (CGrammar) p_element ).id(), p_output );
+            this.writestring( ( (CGrammar) p_element ).documentation(), p_output );
+            return;
+        }
+
+        if ( p_element instanceof CGrammarRule )
+        {
+            this.writetype( EType.RULE, p_element, p_output );
+            this.writestring( ( (CGrammarRule) p_element ).id(), p_output );
+            this.writestring( ( (CGrammarRule) p_element ).documentation(), p_output );
+            this.writeelement( ( (CGrammarRule) p_element ).children(), p_output );
+            return;
+        }
+
+        if ( p_element instanceof CGrammarNonTerminal )
+        {
+            this.writetype( EType.NONTERMINAL, p_element, p_output );
+            this.writestring( ( (CGrammarNonTerminal) p_element ).id(), p_output );
+            this.writestring( ( (CGrammarNonTerminal) p_element ).documentation(), p_output );
+            this.writeelement( ( (CGrammarNonTerminal) p_element ).children(), p_output );
+            return;
+        }
+
+        this.writeinner( p_element, p_output );
+    }
+
+    /**
+     * writes an inner grammar element of a rule
+     *
+     * @param p_element element
+     * @param p_output output
+     * @throws IOException on IO errors
+     */
+    private void writeinner( final IGrammarElement p_element, final DataOutput p_output ) throws IOException
+    {
+        if ( ( p_element instanceof CGrammarChoice ) || ( p_element instanceof CGrammarSequence ) )
+        {
+            this.writetype( p_element instanceof CGrammarChoice ? EType.CHOICE : EType.SEQUENCE, p_element, p_output );
+            writeinteger( ( (IGrammarCollection) p_element ).get().size(), p_output );
+            for ( final IGrammarElement l_child : ( (IGrammarCollection) p_element ).get() )
+                this.writeelement( l_child, p_output );
+            return;
+        }
+
+        if ( p_element instanceof CGrammarGroup )
+        {
+            this.writetype( EType.GROUP, p_element, p_output );
+            this.writeelement( ( (CGrammarGroup) p_element ).element(), p_output );
+            return;
+        }
+
+        if ( p_element instanceof CGrammarNegation )
+        {
+            this.writetype( EType.NEGATION, p_element, p_output );
+            this.writeelement( ( (CGrammarNegation) p_element ).inner(), p_output );
+            return;
+        }
+
+        if ( ( p_element instanceof CGrammarTerminalValue<?> ) && ( ( (CGrammarTerminalValue<?>) p_element ).isValueAssignableTo( String.class ) ) )
+        {
+            this.writetype( p_element instanceof CGrammarIdentifier ? EType.IDENTIFIER : EType.TERMINAL, p_element, p_output );
+            this.writestring( ( (CGrammarTerminalValue<?>) p_element ).<String>get(), p_output );
+            return;
+        }
+
+        if ( p_element instanceof CGrammarCharacterClass )
+        {
+            this.writetype( EType.CHARACTERCLASS, p_element, p_output );
+            writeranges( ( (CGrammarCharacterClass) p_element ).ranges(), p_output );
+            return;
+        }
+
+        throw new IOException( CCommon.languagestring( this, "unknownelement", p_element.getClass().getName() ) );
+    }
+
+    /**
+     * reads a complex element
+     *
+     * @param p_input input
+     * @return complex element
+     * @throws IOException on IO errors or malformed data
+     */
+    private IGrammarComplexElement readcomplex( final DataInput p_input ) throws IOException
+    {
+        final IGrammarElement l_element = this.readelement( p_input );
+        if ( !( l_element instanceof IGrammarComplexElement ) )
+            throw CGrammarCodec.malformed();
+        return (IGrammarComplexElement) l_element;
+    }
+
+    /**
+     * reads a grammar element
+     *
+     * @param p_input input
+     * @return element or null
+     * @throws IOException on IO errors or malformed data
+     */
+    private IGrammarElement readelement( final DataInput p_input ) throws IOException
+    {
+        final int l_type = p_input.readUnsignedByte();
+        if ( l_type >= EType.values().length )
+            throw CGrammarCodec.malformed();
+
+        final EType l_tag = EType.values()[l_type];
+        final IGrammarElement.ECardinality l_cardinality = l_tag.hascardinality() ? readcardinality( p_input ) : IGrammarElement.ECardinality.NONE;
+
+        switch ( l_tag )
+        {
+            case NULL:
+                return null;
+
+            case GRAMMAR:
+                return new CGrammar( this.readstring( p_input ), this.readstring( p_input ) );
+
+            case RULE:
+                return new CGrammarRule( this.readstring( p_input ), this.readstring( p_input ), this.readelement( p_input ) );
+
+            case NONTERMINAL:
+                return new CGrammarNonTerminal( this.readstring( p_input ), this.readstring( p_input ), l_cardinality, this.readelement( p_input ) );
+
+            case CHOICE:
+                return new CGrammarChoice( l_cardinality, this.readlist( p_input ) );
+
+            case SEQUENCE:
+                return new CGrammarSequence( l_cardinality, this.readlist( p_input ) );
+
+            case GROUP:
+                return new CGrammarGroup( l_cardinality, this.readelement( p_input ) );
+
+            case NEGATION:
+                return new CGrammarNegation( l_cardinality, this.readelement( p_input ) );
+
+            case IDENTIFIER:
+                return new CGrammarIdentifier( this.readstring( p_input ) ).cardinality( l_cardinality );
+
+            case TERMINAL:
+                return new CGrammarTerminalValue<>( l_cardinality, this.readstring( p_input ) );
+
+            case CHARACTERCLASS:
+                return new CGrammarCharacterClass( l_cardinality, readranges( p_input ) );
+
+            default:
+                throw CGrammarCodec.malformed();
+        }
+    }
+
+    /**
+     * reads a list of elements
+     *
+     * @param p_input input
+     * @return list of elements
+     * @throws IOException on IO errors or malformed data
+     */
+    private List<IGrammarElement> readlist( final DataInput p_input ) throws IOException
+    {
+        final int l_size = readinteger( p_input );
+        final List<IGrammarElement> l_list = new ArrayList<>( l_size );
+        for ( int i = 0; i < l_size; i++ )
+            l_list.add( this.readelement( p_input ) );
+        return l_list;
+    }
+
+    /**
+     * writes the type tag and the cardinality of an element
+     * if the type stores the cardinality
+     *
+     * @param p_type type
+     * @param p_element element
+     * @param p_output output
+     * @throws IOException on IO errors
+     */
+    private void writetype( final EType p_type, final IGrammarElement p_element, final DataOutput p_output ) throws IOException
+    {
+        p_output.writeByte( p_type.ordinal() );
+        if ( p_type.hascardinality() )
+            p_output.writeByte( p_element.cardinality().ordinal() );
+    }
+
+    /**
+     * reads a cardinality
+     *
+     * @param p_input input
+     * @return cardinality
+     * @throws IOException on IO errors or malformed data
+     */
+    private static IGrammarElement.ECardinality readcardinality( final DataInput p_input ) throws IOException
+    {
+        final int l_cardinality = p_input.readUnsignedByte();
+        if ( l_cardinality >= IGrammarElement.ECardinality.values().length )
+            throw CGrammarCodec.malformed();
+        return IGrammarElement.ECardinality.values()[l_cardinality];
+    }
+
+    /**
+     * writes a string, the string content is written on
+     * the first occurrence only, otherwise the table index
+     *
+     * @param p_string string
+     * @param p_output output
+     * @throws IOException on IO errors
+     */
+    private void writestring( final String p_string, final DataOutput p_output ) throws IOException
+    {
+        final Integer l_index = m_writetable.putIfAbsent( p_string, m_writetable.size() );
+        if ( l_index != null )
+        {
+            writeinteger( l_index, p_output );
+            return;
+        }
+
+        final byte[] l_bytes = p_string.getBytes( StandardCharsets.UTF_8 );
+        writeinteger( m_writetable.size() - 1, p_output );
+        writeinteger( l_bytes.length, p_output );
+        p_output.write( l_bytes );
+    }
+
+    /**
+     * reads a string
+     *
+     * @param p_input input
+     * @return string
+     * @throws IOException on IO errors or malformed data
+     */
+    private String readstring( final DataInput p_input ) throws IOException
+    {
+        final int l_index = readinteger( p_input );
+        if ( l_index < m_readtable.size() )
+            return m_readtable.get( l_index );
+        if ( l_index != m_readtable.size() )
+            throw CGrammarCodec.malformed();
+
+        final byte[] l_bytes = new byte[readinteger( p_input )];
+        p_input.readFully( l_bytes );
+
+        final String l_string = new String( l_bytes, StandardCharsets.UTF_8 );
+        m_readtable.add( l_string );
+        return l_string;
+    }
+
+    /**
+     * writes sorted code point ranges, each bound
+     * is stored as distance to the previous bound
+     *
+     * @param p_ranges sorted ranges
+     * @param p_output output
+     * @throws IOException on IO errors
+     */
+    private static void writeranges( final int[] p_ranges, final DataOutput p_output ) throws IOException
+    {
+        writeinteger( p_ranges.length, p_output );
+        int l_previous = 0;
+        for ( final int l_bound : p_ranges )
+        {
+            writeinteger( l_bound - l_previous, p_output );
+            l_previous = l_bound;
+        }
+    }
+
+    /**
+     * reads sorted code point ranges
+     *
+     * @param p_input input
+     * @return ranges
+     * @throws IOException on IO errors or malformed data
+     */
+    private static int[] readranges( final DataInput p_input ) throws IOException
+    {
+        final int[] l_ranges = new int[readinteger( p_input )];
+        if ( ( l_ranges.length == 0 ) || ( l_ranges.length % 2 != 0 ) )
+            throw CGrammarCodec.malformed();
+
+        int l_previous = 0;
+        for ( int i = 0; i < l_ranges.length; i++ )
+        {
+            l_ranges[i] = l_previous + readinteger( p_input );
+            if ( ( l_ranges[i] < l_previous ) || ( l_ranges[i] > Character.MAX_CODE_POINT ) )
+                throw CGrammarCodec.malformed();
+            l_previous = l_ranges[i];
+        }
+        return l_ranges;
+    }
+
+    /**
+     * writes a non-negative integer with variable length
+     *
+     * @param p_value value
+     * @param p_output output
+     * @throws IOException on IO errors
+     */
+    private static void writeinteger( final int p_value, final DataOutput p_output ) throws IOException
+    {
+        int l_value = p_value;
+        while ( ( l_value & ~0x7f ) != 0 )
+        {
+            p_output.writeByte( ( l_value & 0x7f ) | 0x80 );
+            l_value >>>= 7;
+        }
+        p_output.writeByte( l_value );
+    }
+
+    /**
+     * reads a non-negative integer with variable length
+     *
+     * @param p_input input
+     * @return value
+     * @throws IOException on IO errors or malformed data
+     */
+    private static int readinteger( final DataInput p_input ) throws IOException
+    {
+        int l_value = 0;
+        for ( int l_shift = 0; l_shift < Integer.SIZE; l_shift += 7 )
+        {
+            final int l_byte = p_input.readUnsignedByte();
+            l_value |= ( l_byte & 0x7f ) << l_shift;
+            if ( ( l_byte & 0x80 ) == 0 )
+            {
+                if ( l_value < 0 )
+                    throw CGrammarCodec.malformed();
+                return l_value;
+            }
+        }
+        throw CGrammarCodec.malformed();
+    }
+
+    /**
+     * creates the exception of malformed data
+     *
+     * @return exception
+     */
+    private static IOException malformed()
+    {
+        return new IOException( CCommon.languagestring( CGrammarCodec.class, "malformed" ) );
+    }
+
+
+    /**
+     * element type tags, the ordinal is written, so
+     * new types must be appended and the version increased
+     */
+    private enum EType
+    {
+        NULL( false ),
+        GRAMMAR( false ),
+        RULE( false ),
+        NONTERMINAL( true ),
+        CHOICE( true ),
+        SEQUENCE( true ),
+        GROUP( true ),
+        NEGATION( true ),
+        IDENTIFIER( true ),
+        TERMINAL( true ),
+        CHARACTERCLASS( true );
+
+        /**
+         * flag that the cardinality is stored
+         */
+        private final boolean m_cardinality;
+
+        /**
+         * ctor
+         *
+         * @param p_cardinality flag that the cardinality is stored
+         */
+        EType( final boolean p_cardinality )
+        {
+            m_cardinality = p_cardinality;
+        }
+
+        /**
+         * returns if the cardinality is stored
+         *
+         * @return cardinality flag
+         */
+        public final boolean hascardinality()
+        {
+            return m_cardinality;
+        }
+    }
+
+}
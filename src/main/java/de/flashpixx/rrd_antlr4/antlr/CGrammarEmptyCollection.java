@@ -30,7 +30,7 @@ import java.util.List;
 /**
  * empty grammar collection
  */
-final class CGrammarEmptyCollection implements IGrammarCollection
+final class CGrammarEmptyCollection implements IGrammarSequence
 {
     /**
      * singletone instance
@@ -63,16 +63,22 @@ final class CGrammarEmptyCollection implements IGrammarCollection
         return this;
     }
 
+    @Override
+    public final <T, A> T accept( final IGrammarVisitor<T, A> p_visitor, final A p_argument )
+    {
+        return p_visitor.visitsequence( this, p_argument );
+    }
+
     @Override
     public final int hashCode()
     {
-        return INSTANCE.hashCode();
+        return 0;
     }
 
     @Override
     public final boolean equals( final Object p_object )
     {
-        return ( p_object != null ) && ( p_object instanceof IGrammarCollection ) && ( this.hashCode() == p_object.hashCode() );
+        return p_object instanceof CGrammarEmptyCollection;
     }
 
     @Override
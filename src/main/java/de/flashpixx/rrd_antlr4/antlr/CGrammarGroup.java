@@ -41,7 +41,11 @@ public final class CGrammarGroup implements IGrammarGroup
     /**
      * cardinality
      */
-    private ECardinality m_cardinality;
+    private final ECardinality m_cardinality;
+    /**
+     * structural hash
+     */
+    private final int m_hash;
 
 
     /**
@@ -51,11 +55,7 @@ public final class CGrammarGroup implements IGrammarGroup
      */
     public CGrammarGroup( final IGrammarElement p_element )
     {
-        m_element = p_element;
-        m_cardinality = ECardinality.NONE;
-
-        if ( m_element == null )
-            throw new IllegalArgumentException( CCommon.languagestring( this, "empty" ) );
+        this( ECardinality.NONE, p_element );
     }
 
     /**
@@ -71,6 +71,8 @@ public final class CGrammarGroup implements IGrammarGroup
 
         if ( m_element == null )
             throw new IllegalArgumentException( CCommon.languagestring( this, "empty" ) );
+
+        m_hash = 31 * ( m_element.hashCode() + 46457 ) + m_cardinality.ordinal();
     }
 
     @Override
@@ -88,8 +90,9 @@ public final class CGrammarGroup implements IGrammarGroup
     @Override
     public final IGrammarElement cardinality( final ECardinality p_cardinality )
     {
-        m_cardinality = p_cardinality;
-        return this;
+        return m_cardinality == p_cardinality
+               ? this
+               : new CGrammarGroup( p_cardinality, m_element );
     }
 
     @Override
@@ -98,15 +101,28 @@ public final class CGrammarGroup implements IGrammarGroup
         return m_element;
     }
 
+    @Override
+    public final <T, A> T accept( final IGrammarVisitor<T, A> p_visitor, final A p_argument )
+    {
+        return p_visitor.visitgroup( this, p_argument );
+    }
+
     @Override
     public final int hashCode()
     {
-        return m_element.hashCode() + m_cardinality.hashCode();
+        return m_hash;
     }
 
     @Override
     public final boolean equals( final Object p_object )
     {
-        return ( p_object != null ) && ( p_object instanceof IGrammarGroup ) && ( this.hashCode() == p_object.hashCode() );
+        if ( this == p_object )
+            return true;
+
+        return ( p_object != null )
+               && ( p_object instanceof CGrammarGroup )
+               && ( m_hash == p_object.hashCode() )
+               && ( m_cardinality == ( (CGrammarGroup) p_object ).m_cardinality )
+               && ( m_element.equals( ( (CGrammarGroup) p_object ).m_element ) );
     }
 }
@@ -36,6 +36,25 @@ public final class CGrammarIdentifier extends CGrammarTerminalValue<String> impl
      */
     public CGrammarIdentifier( final String p_value )
     {
-        super( ECardinality.NONE, p_value );
+        this( ECardinality.NONE, p_value );
+    }
+
+    /**
+     * ctor
+     *
+     * @param p_cardinality cardinality
+     * @param p_value value
+     */
+    public CGrammarIdentifier( final ECardinality p_cardinality, final String p_value )
+    {
+        super( p_cardinality, p_value );
+    }
+
+    @Override
+    public final IGrammarElement cardinality( final ECardinality p_cardinality )
+    {
+        return this.cardinality() == p_cardinality
+               ? this
+               : new CGrammarIdentifier( p_cardinality, this.get() );
     }
 }
@@ -0,0 +1,319 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.antlr;
+
+import de.flashpixx.rrd_antlr4.CCommon;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+
+/**
+ * run-scoped interner of grammar elements, structurally
+ * equal subtrees are mapped to one canonical instance,
+ * the elements are immutable, so they can be shared
+ * between rules and grammars
+ *
+ * @note the interner is owned by the grammar resolver, so the
+ * canonical instances and the statistic are released with the
+ * run, rules and lexer rules are unique, so only their children
+ * are interned
+ */
+public final class CGrammarInterner implements IGrammarVisitor<IGrammarElement, Void>
+{
+    /**
+     * estimated object header size in bytes
+     */
+    private static final int HEADER = 12;
+    /**
+     * estimated reference size in bytes
+     */
+    private static final int REFERENCE = 4;
+    /**
+     * estimated string size without the character array
+     */
+    private static final int STRING = 24;
+    /**
+     * estimated array header size in bytes
+     */
+    private static final int ARRAY = 16;
+    /**
+     * object alignment in bytes
+     */
+    private static final int ALIGNMENT = 8;
+    /**
+     * map with canonical instances
+     */
+    private final ConcurrentMap<IGrammarElement, IGrammarElement> m_elements = new ConcurrentHashMap<>();
+    /**
+     * number of deduplicated instances
+     */
+    private final AtomicLong m_deduplicated = new AtomicLong();
+    /**
+     * estimated bytes of deduplicated instances
+     */
+    private final AtomicLong m_saved = new AtomicLong();
+
+    /**
+     * returns a model with canonical rule elements
+     *
+     * @param p_model grammar model
+     * @return model with the same grammar and imports
+     */
+    public final CGrammarModel intern( final CGrammarModel p_model )
+    {
+        return new CGrammarModel(
+            p_model.grammar(),
+            p_model.rules().stream().map( i -> (IGrammarComplexElement) i.accept( this, null ) ).collect( Collectors.toList() ),
+            p_model.imports()
+        );
+    }
+
+    /**
+     * returns the canonical instance of an element,
+     * the children are interned first
+     *
+     * @param p_element element or null
+     * @return canonical element or null
+     * @tparam T element type
+     */
+    @SuppressWarnings( "unchecked" )
+    public final <T extends IGrammarElement> T intern( final T p_element )
+    {
+        if ( p_element == null )
+            return null;
+
+        // canonical subtrees are shared, so they are not visited again
+        return m_elements.get( p_element ) == p_element
+               ? p_element
+               : (T) p_element.accept( this, null );
+    }
+
+    /**
+     * returns the statistic of the interner
+     *
+     * @return map with number of canonical and deduplicated
+     * elements, the estimated saved heap and the dedupe ratio
+     */
+    public final Map<String, Number> statistic()
+    {
+        final long l_unique = m_elements.size();
+        final long l_deduplicated = m_deduplicated.get();
+
+        final Map<String, Number> l_result = new LinkedHashMap<>();
+        l_result.put( CCommon.languagestring( this, "statisticcanonical" ), l_unique );
+        l_result.put( CCommon.languagestring( this, "statisticdeduplicated" ), l_deduplicated );
+        l_result.put( CCommon.languagestring( this, "statisticsaved" ), m_saved.get() );
+        l_result.put(
+            CCommon.languagestring( this, "statisticratio" ),
+            l_unique + l_deduplicated == 0 ? 0 : (double) l_deduplicated / ( l_unique + l_deduplicated )
+        );
+        return Collections.unmodifiableMap( l_result );
+    }
+
+    @Override
+    public final IGrammarElement visitgrammar( final IGrammarComplexElement p_element, final Void p_argument )
+    {
+        return p_element;
+    }
+
+    @Override
+    public final IGrammarElement visitrule( final IGrammarRule p_element, final Void p_argument )
+    {
+        final IGrammarElement l_children = this.intern( p_element.children() );
+        return l_children == p_element.children()
+               ? p_element
+               : new CGrammarRule( p_element.id(), p_element.documentation(), l_children );
+    }
+
+    @Override
+    public final IGrammarElement visitterminal( final IGrammarTerminal p_element, final Void p_argument )
+    {
+        final IGrammarElement l_children = this.intern( p_element.children() );
+        return l_children == p_element.children()
+               ? p_element
+               : new CGrammarNonTerminal( p_element.id(), p_element.documentation(), p_element.cardinality(), l_children );
+    }
+
+    @Override
+    public final IGrammarElement visitidentifier( final IGrammarIdentifier p_element, final Void p_argument )
+    {
+        return this.canonical( p_element );
+    }
+
+    @Override
+    public final IGrammarElement visitterminalvalue( final IGrammarSimpleElement<?> p_element, final Void p_argument )
+    {
+        return this.canonical( p_element );
+    }
+
+    @Override
+    public final IGrammarElement visitcharacterclass( final IGrammarCharacterClass p_element, final Void p_argument )
+    {
+        return this.canonical( p_element );
+    }
+
+    @Override
+    public final IGrammarElement visitnegation( final IGrammarNegation p_element, final Void p_argument )
+    {
+        final IGrammarElement l_inner = this.intern( p_element.inner() );
+        return this.canonical(
+            l_inner == p_element.inner()
+            ? p_element
+            : new CGrammarNegation( p_element.cardinality(), l_inner )
+        );
+    }
+
+    @Override
+    public final IGrammarElement visitgroup( final IGrammarGroup p_element, final Void p_argument )
+    {
+        final IGrammarElement l_element = this.intern( p_element.element() );
+        return this.canonical(
+            l_element == p_element.element()
+            ? p_element
+            : new CGrammarGroup( p_element.cardinality(), l_element )
+        );
+    }
+
+    @Override
+    public final IGrammarElement visitchoice( final IGrammarChoice p_element, final Void p_argument )
+    {
+        final List<IGrammarElement> l_elements = this.elements( p_element.get() );
+        return this.canonical(
+            l_elements == null
+            ? p_element
+            : new CGrammarChoice( p_element.cardinality(), l_elements )
+        );
+    }
+
+    @Override
+    public final IGrammarElement visitsequence( final IGrammarSequence p_element, final Void p_argument )
+    {
+        final List<IGrammarElement> l_elements = this.elements( p_element.get() );
+        return this.canonical(
+            l_elements == null
+            ? p_element
+            : new CGrammarSequence( p_element.cardinality(), l_elements )
+        );
+    }
+
+    /**
+     * interns the elements of a collection
+     *
+     * @param p_elements elements
+     * @return list with canonical elements or null if all elements are canonical already
+     */
+    private List<IGrammarElement> elements( final List<IGrammarElement> p_elements )
+    {
+        final List<IGrammarElement> l_elements = p_elements.stream().map( this::intern ).collect( Collectors.toList() );
+        for ( int i = 0; i < l_elements.size(); i++ )
+            if ( l_elements.get( i ) != p_elements.get( i ) )
+                return l_elements;
+        return null;
+    }
+
+    /**
+     * returns the canonical instance of an element with canonical children
+     *
+     * @param p_element element
+     * @return canonical element
+     */
+    private IGrammarElement canonical( final IGrammarElement p_element )
+    {
+        final IGrammarElement l_canonical = m_elements.putIfAbsent( p_element, p_element );
+        if ( ( l_canonical == null ) || ( l_canonical == p_element ) )
+            return p_element;
+
+        m_deduplicated.incrementAndGet();
+        m_saved.addAndGet( CGrammarInterner.size( p_element ) );
+        return l_canonical;
+    }
+
+    /**
+     * estimates the shallow size of a deduplicated element,
+     * children are not counted, because they are canonical
+     * already, the estimation uses compressed references
+     *
+     * @param p_element element
+     * @return size in bytes
+     */
+    private static long size( final IGrammarElement p_element )
+    {
+        if ( p_element instanceof IGrammarCollection )
+            // element, unmodifiable list wrapper, list and array
+            return CGrammarInterner.align( HEADER + 3 * REFERENCE )
+                   + CGrammarInterner.align( HEADER + REFERENCE )
+                   + CGrammarInterner.align( HEADER + 3 * REFERENCE )
+                   + CGrammarInterner.align( ARRAY + REFERENCE * ( (IGrammarCollection) p_element ).get().size() );
+
+        if ( p_element instanceof IGrammarCharacterClass )
+            return CGrammarInterner.align( HEADER + 4 * REFERENCE )
+                   + CGrammarInterner.align( ARRAY + Integer.BYTES * ( (IGrammarCharacterClass) p_element ).ranges().length );
+
+        if ( p_element instanceof IGrammarSimpleElement<?> )
+        {
+            final Object l_value = ( (IGrammarSimpleElement<?>) p_element ).get();
+            return CGrammarInterner.align( HEADER + 3 * REFERENCE )
+                   + ( l_value instanceof String ? CGrammarInterner.size( (String) l_value ) : 0 );
+        }
+
+        if ( p_element instanceof IGrammarComplexElement )
+            return CGrammarInterner.align( HEADER + 5 * REFERENCE )
+                   + CGrammarInterner.size( ( (IGrammarComplexElement) p_element ).id() )
+                   + CGrammarInterner.size( ( (IGrammarComplexElement) p_element ).documentation() );
+
+        return CGrammarInterner.align( HEADER + 3 * REFERENCE );
+    }
+
+    /**
+     * estimates the size of a string
+     *
+     * @param p_string string or null
+     * @return size in bytes
+     */
+    private static long size( final String p_string )
+    {
+        return p_string == null || p_string.isEmpty()
+               ? 0
+               : STRING + CGrammarInterner.align( ARRAY + p_string.length() );
+    }
+
+    /**
+     * aligns a size
+     *
+     * @param p_size size
+     * @return aligned size
+     */
+    private static long align( final long p_size )
+    {
+        return ( p_size + ALIGNMENT - 1 ) / ALIGNMENT * ALIGNMENT;
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.antlr;
+
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+
+/**
+ * visited model of a single grammar file, which
+ * is build once and can be shared by all templates
+ */
+public final class CGrammarModel
+{
+    /**
+     * grammar definition
+     */
+    private final IGrammarComplexElement m_grammar;
+    /**
+     * grammar rules in definition order
+     */
+    private final List<IGrammarComplexElement> m_rules;
+    /**
+     * names of the imported grammars
+     */
+    private final Set<String> m_imports;
+
+    /**
+     * ctor
+     *
+     * @param p_grammar grammar definition
+     * @param p_rules list with grammar rules
+     * @param p_imports set with grammar import names
+     */
+    CGrammarModel( final IGrammarComplexElement p_grammar, final List<IGrammarComplexElement> p_rules, final Set<String> p_imports )
+    {
+        m_grammar = p_grammar;
+        m_rules = Collections.unmodifiableList( p_rules );
+        m_imports = Collections.unmodifiableSet( p_imports );
+    }
+
+    /**
+     * returns the grammar definition
+     *
+     * @return grammar
+     */
+    public final IGrammarComplexElement grammar()
+    {
+        return m_grammar;
+    }
+
+    /**
+     * returns the grammar rules
+     *
+     * @return unmodifiable list with rules
+     */
+    public final List<IGrammarComplexElement> rules()
+    {
+        return m_rules;
+    }
+
+    /**
+     * returns the names of the imported grammars
+     *
+     * @return unmodifiable set with grammar names
+     */
+    public final Set<String> imports()
+    {
+        return m_imports;
+    }
+
+    /**
+     * returns a model with the same grammar and imports,
+     * which stores the rules in a flat table
+     *
+     * @return compact model
+     */
+    public final CGrammarModel compact()
+    {
+        return new CGrammarModel(
+            m_grammar,
+            CGrammarTable.of( m_rules ).elements().stream().map( i -> (IGrammarComplexElement) i ).collect( Collectors.toList() ),
+            m_imports
+        );
+    }
+
+    @Override
+    public final String toString()
+    {
+        return MessageFormat.format( "{0} {1} {2}", m_grammar, m_imports, m_rules );
+    }
+
+}
@@ -24,6 +24,7 @@
 package de.flashpixx.rrd_antlr4.antlr;
 
 import java.text.MessageFormat;
+import java.util.Objects;
 
 
 /**
@@ -38,7 +39,7 @@ public final class CGrammarNonTerminal implements IGrammarTerminal
     /**
      * cardinality
      */
-    private ECardinality m_cardinality;
+    private final ECardinality m_cardinality;
     /**
      * documentation string
      */
@@ -47,6 +48,10 @@ public final class CGrammarNonTerminal implements IGrammarTerminal
      * elements
      */
     private final IGrammarElement m_element;
+    /**
+     * structural hash
+     */
+    private final int m_hash;
 
     /**
      * ctor
@@ -76,6 +81,7 @@ public final class CGrammarNonTerminal implements IGrammarTerminal
         m_element = p_element;
         m_cardinality = p_cardinality;
         m_documentation = p_documentation == null ? "" : p_documentation;
+        m_hash = Objects.hash( m_id, m_documentation, m_element ) * 31 + m_cardinality.ordinal();
     }
 
     @Override
@@ -96,16 +102,31 @@ public final class CGrammarNonTerminal implements IGrammarTerminal
         return m_documentation;
     }
 
+    @Override
+    public final <T, A> T accept( final IGrammarVisitor<T, A> p_visitor, final A p_argument )
+    {
+        return p_visitor.visitterminal( this, p_argument );
+    }
+
     @Override
     public final int hashCode()
     {
-        return m_id.hashCode();
+        return m_hash;
     }
 
     @Override
     public final boolean equals( final Object p_object )
     {
-        return ( p_object != null ) && ( p_object instanceof IGrammarTerminal ) && ( this.hashCode() == p_object.hashCode() );
+        if ( this == p_object )
+            return true;
+
+        return ( p_object != null )
+               && ( p_object instanceof CGrammarNonTerminal )
+               && ( m_hash == p_object.hashCode() )
+               && ( m_cardinality == ( (CGrammarNonTerminal) p_object ).m_cardinality )
+               && ( Objects.equals( m_id, ( (CGrammarNonTerminal) p_object ).m_id ) )
+               && ( m_documentation.equals( ( (CGrammarNonTerminal) p_object ).m_documentation ) )
+               && ( Objects.equals( m_element, ( (CGrammarNonTerminal) p_object ).m_element ) );
     }
 
     @Override
@@ -129,7 +150,8 @@ public final class CGrammarNonTerminal implements IGrammarTerminal
     @Override
     public final IGrammarElement cardinality( final ECardinality p_cardinality )
     {
-        m_cardinality = p_cardinality;
-        return this;
+        return m_cardinality == p_cardinality
+               ? this
+               : new CGrammarNonTerminal( m_id, m_documentation, p_cardinality, m_element );
     }
 }
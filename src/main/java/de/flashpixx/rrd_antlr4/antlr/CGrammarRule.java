@@ -26,6 +26,7 @@ package de.flashpixx.rrd_antlr4.antlr;
 import de.flashpixx.rrd_antlr4.CCommon;
 
 import java.text.MessageFormat;
+import java.util.Objects;
 
 
 /**
@@ -45,6 +46,10 @@ public final class CGrammarRule implements IGrammarRule
      * elements
      */
     private final IGrammarElement m_element;
+    /**
+     * structural hash
+     */
+    private final int m_hash;
 
     /**
      * ctor
@@ -61,6 +66,8 @@ public final class CGrammarRule implements IGrammarRule
 
         if ( m_element == null )
             throw new IllegalArgumentException( CCommon.languagestring( this, "empty" ) );
+
+        m_hash = Objects.hash( m_id, m_documentation, m_element );
     }
 
 
@@ -78,16 +85,30 @@ public final class CGrammarRule implements IGrammarRule
 
 
 
+    @Override
+    public final <T, A> T accept( final IGrammarVisitor<T, A> p_visitor, final A p_argument )
+    {
+        return p_visitor.visitrule( this, p_argument );
+    }
+
     @Override
     public final int hashCode()
     {
-        return m_id.hashCode();
+        return m_hash;
     }
 
     @Override
     public final boolean equals( final Object p_object )
     {
-        return ( p_object != null ) && ( p_object instanceof IGrammarRule ) && ( this.hashCode() == p_object.hashCode() );
+        if ( this == p_object )
+            return true;
+
+        return ( p_object != null )
+               && ( p_object instanceof CGrammarRule )
+               && ( m_hash == p_object.hashCode() )
+               && ( Objects.equals( m_id, ( (CGrammarRule) p_object ).m_id ) )
+               && ( m_documentation.equals( ( (CGrammarRule) p_object ).m_documentation ) )
+               && ( m_element.equals( ( (CGrammarRule) p_object ).m_element ) );
     }
 
     @Override
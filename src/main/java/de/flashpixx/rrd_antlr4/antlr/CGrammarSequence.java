@@ -67,6 +67,18 @@ public final class CGrammarSequence extends IGrammarBaseCollection implements IG
         super( p_cardinality, p_data );
     }
 
+    @Override
+    protected final IGrammarElement create( final ECardinality p_cardinality, final List<IGrammarElement> p_data )
+    {
+        return new CGrammarSequence( p_cardinality, p_data );
+    }
+
+    @Override
+    public final <T, A> T accept( final IGrammarVisitor<T, A> p_visitor, final A p_argument )
+    {
+        return p_visitor.visitsequence( this, p_argument );
+    }
+
     @Override
     public final String toString()
     {
@@ -0,0 +1,933 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.antlr;
+
+import de.flashpixx.rrd_antlr4.CCommon;
+
+import java.text.MessageFormat;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+
+/**
+ * flat struct-of-arrays representation of grammar elements for
+ * huge grammars, each node is stored as row in primitive arrays
+ * and strings are stored once in a string table, structurally
+ * equal subtrees are stored once, the elements are returned as
+ * adapter views which implement the grammar element interfaces
+ *
+ * @note character classes are returned as element objects, because
+ * the notation is build lazy by the element
+ */
+public final class CGrammarTable
+{
+    /**
+     * number of bits of the cardinality within the type
+     */
+    private static final int CARDINALITYBITS = 2;
+    /**
+     * bit mask of the cardinality within the type
+     */
+    private static final int CARDINALITYMASK = ( 1 << CARDINALITYBITS ) - 1;
+    /**
+     * estimated array header size in bytes
+     */
+    private static final int ARRAY = 16;
+    /**
+     * estimated string size without the character array
+     */
+    private static final int STRING = 24;
+    /**
+     * node type, kind and cardinality ordinal
+     */
+    private final int[] m_type;
+    /**
+     * string index of the node, value of simple elements
+     * or ID of complex elements, -1 if not exists
+     */
+    private final int[] m_value;
+    /**
+     * offset of the node within the children or range array
+     */
+    private final int[] m_offset;
+    /**
+     * number of children or range bounds of the node
+     */
+    private final int[] m_length;
+    /**
+     * child nodes, -1 on a null child, complex elements store
+     * the string index of the documentation before the child
+     */
+    private final int[] m_children;
+    /**
+     * code point ranges of all character classes
+     */
+    private final int[] m_ranges;
+    /**
+     * string table
+     */
+    private final String[] m_strings;
+    /**
+     * root nodes
+     */
+    private final int[] m_roots;
+
+    /**
+     * ctor
+     *
+     * @param p_builder builder
+     */
+    private CGrammarTable( final CBuilder p_builder )
+    {
+        m_type = new int[p_builder.m_nodes.size()];
+        m_value = new int[m_type.length];
+        m_offset = new int[m_type.length];
+        m_length = new int[m_type.length];
+        m_children = new int[p_builder.m_children];
+        m_ranges = new int[p_builder.m_ranges];
+        m_strings = new String[p_builder.m_strings.size()];
+        p_builder.m_strings.forEach( ( i, j ) -> m_strings[j] = i );
+        m_roots = p_builder.m_roots.stream().mapToInt( Integer::intValue ).toArray();
+
+        int l_children = 0;
+        int l_ranges = 0;
+        for ( int i = 0; i < m_type.length; i++ )
+        {
+            final IGrammarElement l_element = p_builder.m_nodes.get( i );
+            final EKind l_kind = EKind.of( l_element );
+
+            m_type[i] = l_kind.ordinal() << CARDINALITYBITS | l_element.cardinality().ordinal();
+            m_value[i] = p_builder.string( l_kind.value( l_element ) );
+
+            if ( l_kind == EKind.CHARACTERCLASS )
+            {
+                final int[] l_bounds = ( (IGrammarCharacterClass) l_element ).ranges();
+                System.arraycopy( l_bounds, 0, m_ranges, l_ranges, l_bounds.length );
+                m_offset[i] = l_ranges;
+                m_length[i] = l_bounds.length;
+                l_ranges += l_bounds.length;
+                continue;
+            }
+
+            final List<IGrammarElement> l_childlist = l_kind.children( l_element );
+            m_offset[i] = l_children;
+            m_length[i] = l_childlist.size();
+            if ( l_kind.complex() )
+                m_children[l_children++] = p_builder.string( ( (IGrammarComplexElement) l_element ).documentation() );
+            for ( final IGrammarElement l_child : l_childlist )
+                m_children[l_children++] = l_child == null ? -1 : p_builder.m_index.get( l_child );
+        }
+    }
+
+    /**
+     * creates a table of elements
+     *
+     * @param p_elements list with root elements, e.g. rules
+     * @return table
+     */
+    public static CGrammarTable of( final List<? extends IGrammarElement> p_elements )
+    {
+        final CBuilder l_builder = new CBuilder();
+        p_elements.forEach( i -> l_builder.m_roots.add( l_builder.add( i ) ) );
+        return new CGrammarTable( l_builder );
+    }
+
+    /**
+     * returns the views of the root elements
+     *
+     * @return unmodifiable list with root elements
+     */
+    public final List<IGrammarElement> elements()
+    {
+        return Collections.unmodifiableList(
+            Arrays.stream( m_roots ).mapToObj( this::view ).collect( Collectors.toList() )
+        );
+    }
+
+    /**
+     * returns the number of nodes
+     *
+     * @return number of nodes
+     */
+    public final int size()
+    {
+        return m_type.length;
+    }
+
+    /**
+     * returns the estimated heap size of the table
+     *
+     * @return size in bytes
+     */
+    public final long bytes()
+    {
+        return 4L * ARRAY + Integer.BYTES * ( 4L * m_type.length + m_children.length + m_ranges.length + m_roots.length )
+               + ARRAY + (long) Integer.BYTES * m_strings.length
+               + Arrays.stream( m_strings ).mapToLong( i -> STRING + ARRAY + i.length() ).sum();
+    }
+
+    @Override
+    public final String toString()
+    {
+        return MessageFormat.format( "{0}", this.elements() );
+    }
+
+    /**
+     * returns the view of a node
+     *
+     * @param p_node node index
+     * @return view, element or null
+     */
+    private IGrammarElement view( final int p_node )
+    {
+        if ( p_node < 0 )
+            return null;
+
+        switch ( this.kind( p_node ) )
+        {
+            case TERMINAL:
+                return new CTerminal( p_node );
+
+            case IDENTIFIER:
+                return new CIdentifier( p_node );
+
+            case CHARACTERCLASS:
+                return this.element( p_node );
+
+            case CHOICE:
+                return new CChoice( p_node );
+
+            case SEQUENCE:
+                return new CSequence( p_node );
+
+            case GROUP:
+                return new CGroup( p_node );
+
+            case NEGATION:
+                return new CNegation( p_node );
+
+            case RULE:
+                return new CRule( p_node );
+
+            default:
+                return new CNonTerminal( p_node );
+        }
+    }
+
+    /**
+     * creates the element objects of a node
+     *
+     * @param p_node node index
+     * @return element or null
+     */
+    private IGrammarElement element( final int p_node )
+    {
+        if ( p_node < 0 )
+            return null;
+
+        final IGrammarElement.ECardinality l_cardinality = this.cardinality( p_node );
+        switch ( this.kind( p_node ) )
+        {
+            case TERMINAL:
+                return new CGrammarTerminalValue<>( l_cardinality, this.value( p_node ) );
+
+            case IDENTIFIER:
+                return new CGrammarIdentifier( l_cardinality, this.value( p_node ) );
+
+            case CHARACTERCLASS:
+                return new CGrammarCharacterClass( l_cardinality, Arrays.copyOfRange( m_ranges, m_offset[p_node], m_offset[p_node] + m_length[p_node] ) );
+
+            case CHOICE:
+                return new CGrammarChoice( l_cardinality, this.elements( p_node ) );
+
+            case SEQUENCE:
+                return new CGrammarSequence( l_cardinality, this.elements( p_node ) );
+
+            case GROUP:
+                return new CGrammarGroup( l_cardinality, this.element( m_children[m_offset[p_node]] ) );
+
+            case NEGATION:
+                return new CGrammarNegation( l_cardinality, this.element( m_children[m_offset[p_node]] ) );
+
+            case RULE:
+                return new CGrammarRule( this.value( p_node ), this.documentation( p_node ), this.element( m_children[m_offset[p_node] + 1] ) );
+
+            default:
+                return new CGrammarNonTerminal(
+                    this.value( p_node ), this.documentation( p_node ), l_cardinality, this.element( m_children[m_offset[p_node] + 1] )
+                );
+        }
+    }
+
+    /**
+     * creates the element objects of the children of a collection node
+     *
+     * @param p_node node index
+     * @return list with elements
+     */
+    private List<IGrammarElement> elements( final int p_node )
+    {
+        return IntStream.range( m_offset[p_node], m_offset[p_node] + m_length[p_node] )
+                        .mapToObj( i -> this.element( m_children[i] ) )
+                        .collect( Collectors.toList() );
+    }
+
+    /**
+     * returns the kind of a node
+     *
+     * @param p_node node index
+     * @return kind
+     */
+    private EKind kind( final int p_node )
+    {
+        return EKind.values()[m_type[p_node] >>> CARDINALITYBITS];
+    }
+
+    /**
+     * returns the cardinality of a node
+     *
+     * @param p_node node index
+     * @return cardinality
+     */
+    private IGrammarElement.ECardinality cardinality( final int p_node )
+    {
+        return IGrammarElement.ECardinality.values()[m_type[p_node] & CARDINALITYMASK];
+    }
+
+    /**
+     * returns the string value of a node
+     *
+     * @param p_node node index
+     * @return string or null
+     */
+    private String value( final int p_node )
+    {
+        return m_value[p_node] < 0 ? null : m_strings[m_value[p_node]];
+    }
+
+    /**
+     * returns the documentation of a complex node
+     *
+     * @param p_node node index
+     * @return documentation or null
+     */
+    private String documentation( final int p_node )
+    {
+        final int l_index = m_children[m_offset[p_node]];
+        return l_index < 0 ? null : m_strings[l_index];
+    }
+
+
+    /**
+     * builder of the table, collects the nodes in post-order
+     */
+    private static final class CBuilder
+    {
+        /**
+         * nodes
+         */
+        private final List<IGrammarElement> m_nodes = new ArrayList<>();
+        /**
+         * node index of each structural distinct element
+         */
+        private final Map<IGrammarElement, Integer> m_index = new HashMap<>();
+        /**
+         * string table with index
+         */
+        private final Map<String, Integer> m_strings = new HashMap<>();
+        /**
+         * root nodes
+         */
+        private final List<Integer> m_roots = new ArrayList<>();
+        /**
+         * number of child entries
+         */
+        private int m_children;
+        /**
+         * number of range bounds
+         */
+        private int m_ranges;
+
+        /**
+         * adds an element and all children
+         *
+         * @param p_element element
+         * @return node index
+         */
+        private int add( final IGrammarElement p_element )
+        {
+            final Integer l_index = m_index.get( p_element );
+            if ( l_index != null )
+                return l_index;
+
+            final EKind l_kind = EKind.of( p_element );
+            this.string( l_kind.value( p_element ) );
+
+            if ( l_kind == EKind.CHARACTERCLASS )
+                m_ranges += ( (IGrammarCharacterClass) p_element ).ranges().length;
+            else
+            {
+                final List<IGrammarElement> l_children = l_kind.children( p_element );
+                l_children.stream().filter( i -> i != null ).forEach( this::add );
+                m_children += l_children.size();
+                if ( l_kind.complex() )
+                {
+                    this.string( ( (IGrammarComplexElement) p_element ).documentation() );
+                    m_children++;
+                }
+            }
+
+            m_index.put( p_element, m_nodes.size() );
+            m_nodes.add( p_element );
+            return m_nodes.size() - 1;
+        }
+
+        /**
+         * returns the index of a string and
+         * adds it to the string table if needed
+         *
+         * @param p_string string or null
+         * @return index or -1 on null
+         */
+        private int string( final String p_string )
+        {
+            return p_string == null
+                   ? -1
+                   : m_strings.computeIfAbsent( p_string, i -> m_strings.size() );
+        }
+    }
+
+
+    /**
+     * node kinds
+     */
+    private enum EKind
+    {
+        TERMINAL( false ),
+        IDENTIFIER( false ),
+        CHARACTERCLASS( false ),
+        CHOICE( false ),
+        SEQUENCE( false ),
+        GROUP( false ),
+        NEGATION( false ),
+        RULE( true ),
+        NONTERMINAL( true );
+
+        /**
+         * complex element with ID and documentation
+         */
+        private final boolean m_complex;
+
+        /**
+         * ctor
+         *
+         * @param p_complex complex element
+         */
+        EKind( final boolean p_complex )
+        {
+            m_complex = p_complex;
+        }
+
+        /**
+         * returns the kind of an element
+         *
+         * @param p_element element
+         * @return kind
+         */
+        public static EKind of( final IGrammarElement p_element )
+        {
+            if ( p_element instanceof IGrammarIdentifier )
+                return IDENTIFIER;
+
+            if ( ( p_element instanceof IGrammarSimpleElement<?> ) && ( ( (IGrammarSimpleElement<?>) p_element ).isValueAssignableTo( String.class ) ) )
+                return TERMINAL;
+
+            if ( p_element instanceof IGrammarCharacterClass )
+                return CHARACTERCLASS;
+
+            if ( p_element instanceof IGrammarChoice )
+                return CHOICE;
+
+            if ( p_element instanceof IGrammarSequence )
+                return SEQUENCE;
+
+            return EKind.ofstructure( p_element );
+        }
+
+        /**
+         * returns the kind of a structure element
+         *
+         * @param p_element element
+         * @return kind
+         */
+        private static EKind ofstructure( final IGrammarElement p_element )
+        {
+            if ( p_element instanceof IGrammarGroup )
+                return GROUP;
+
+            if ( p_element instanceof IGrammarNegation )
+                return NEGATION;
+
+            if ( p_element instanceof IGrammarRule )
+                return RULE;
+
+            if ( p_element instanceof IGrammarTerminal )
+                return NONTERMINAL;
+
+            throw new IllegalArgumentException(
+                CCommon.languagestring( CGrammarTable.class, "unknownelement", p_element == null ? null : p_element.getClass().getName() )
+            );
+        }
+
+        /**
+         * returns if the kind is a complex element
+         *
+         * @return complex flag
+         */
+        public final boolean complex()
+        {
+            return m_complex;
+        }
+
+        /**
+         * returns the string value of an element
+         *
+         * @param p_element element
+         * @return value, ID or null
+         */
+        public final String value( final IGrammarElement p_element )
+        {
+            if ( m_complex )
+                return ( (IGrammarComplexElement) p_element ).id();
+
+            return ( this == TERMINAL ) || ( this == IDENTIFIER )
+                   ? ( (IGrammarSimpleElement<?>) p_element ).<String>get()
+                   : null;
+        }
+
+        /**
+         * returns the children of an element
+         *
+         * @param p_element element
+         * @return list with children, can contain null
+         */
+        public final List<IGrammarElement> children( final IGrammarElement p_element )
+        {
+            switch ( this )
+            {
+                case CHOICE:
+                case SEQUENCE:
+                    return ( (IGrammarCollection) p_element ).get();
+
+                case GROUP:
+                    return Collections.singletonList( ( (IGrammarGroup) p_element ).element() );
+
+                case NEGATION:
+                    return Collections.singletonList( ( (IGrammarNegation) p_element ).inner() );
+
+                case RULE:
+                    return Collections.singletonList( ( (IGrammarRule) p_element ).children() );
+
+                case NONTERMINAL:
+                    return Collections.singletonList( ( (IGrammarTerminal) p_element ).children() );
+
+                default:
+                    return Collections.emptyList();
+            }
+        }
+    }
+
+
+    /**
+     * base view of a node, views are equal if they
+     * reference the same node of the same table
+     */
+    private abstract class IView implements IGrammarElement
+    {
+        /**
+         * node index
+         */
+        protected final int m_node;
+
+        /**
+         * ctor
+         *
+         * @param p_node node index
+         */
+        protected IView( final int p_node )
+        {
+            m_node = p_node;
+        }
+
+        @Override
+        public final ECardinality cardinality()
+        {
+            return CGrammarTable.this.cardinality( m_node );
+        }
+
+        @Override
+        public final IGrammarElement cardinality( final ECardinality p_cardinality )
+        {
+            return this.cardinality() == p_cardinality
+                   ? this
+                   : CGrammarTable.this.element( m_node ).cardinality( p_cardinality );
+        }
+
+        @Override
+        public final int hashCode()
+        {
+            return 31 * System.identityHashCode( CGrammarTable.this ) + m_node;
+        }
+
+        @Override
+        public final boolean equals( final Object p_object )
+        {
+            return ( p_object != null )
+                   && ( this.getClass().equals( p_object.getClass() ) )
+                   && ( this.table() == ( (IView) p_object ).table() )
+                   && ( m_node == ( (IView) p_object ).m_node );
+        }
+
+        @Override
+        public final String toString()
+        {
+            return CGrammarTable.this.element( m_node ).toString();
+        }
+
+        /**
+         * returns the table of the view
+         *
+         * @return table
+         */
+        private CGrammarTable table()
+        {
+            return CGrammarTable.this;
+        }
+
+        /**
+         * returns the view of a child
+         *
+         * @param p_index child index
+         * @return view
+         */
+        protected final IGrammarElement child( final int p_index )
+        {
+            return CGrammarTable.this.view( m_children[m_offset[m_node] + p_index] );
+        }
+    }
+
+
+    /**
+     * view of a terminal value
+     */
+    private class CTerminal extends IView implements IGrammarSimpleElement<String>
+    {
+        /**
+         * ctor
+         *
+         * @param p_node node index
+         */
+        CTerminal( final int p_node )
+        {
+            super( p_node );
+        }
+
+        @Override
+        public <T, A> T accept( final IGrammarVisitor<T, A> p_visitor, final A p_argument )
+        {
+            return p_visitor.visitterminalvalue( this, p_argument );
+        }
+
+        @Override
+        @SuppressWarnings( "unchecked" )
+        public final <N> N get()
+        {
+            return (N) CGrammarTable.this.value( m_node );
+        }
+
+        @Override
+        public final boolean isValueAssignableTo( final Class<?>... p_class )
+        {
+            return Arrays.stream( p_class ).anyMatch( i -> i.isAssignableFrom( String.class ) );
+        }
+    }
+
+
+    /**
+     * view of an identifier
+     */
+    private final class CIdentifier extends CTerminal implements IGrammarIdentifier
+    {
+        /**
+         * ctor
+         *
+         * @param p_node node index
+         */
+        CIdentifier( final int p_node )
+        {
+            super( p_node );
+        }
+
+        @Override
+        public final <T, A> T accept( final IGrammarVisitor<T, A> p_visitor, final A p_argument )
+        {
+            return p_visitor.visitidentifier( this, p_argument );
+        }
+    }
+
+
+    /**
+     * view of a collection
+     */
+    private abstract class ICollection extends IView implements IGrammarCollection
+    {
+        /**
+         * ctor
+         *
+         * @param p_node node index
+         */
+        protected ICollection( final int p_node )
+        {
+            super( p_node );
+        }
+
+        @Override
+        public final List<IGrammarElement> get()
+        {
+            return new AbstractList<IGrammarElement>()
+            {
+                @Override
+                public final IGrammarElement get( final int p_index )
+                {
+                    if ( ( p_index < 0 ) || ( p_index >= this.size() ) )
+                        throw new IndexOutOfBoundsException( String.valueOf( p_index ) );
+                    return ICollection.this.child( p_index );
+                }
+
+                @Override
+                public final int size()
+                {
+                    return m_length[m_node];
+                }
+            };
+        }
+    }
+
+
+    /**
+     * view of a choice
+     */
+    private final class CChoice extends ICollection implements IGrammarChoice
+    {
+        /**
+         * ctor
+         *
+         * @param p_node node index
+         */
+        CChoice( final int p_node )
+        {
+            super( p_node );
+        }
+
+        @Override
+        public final <T, A> T accept( final IGrammarVisitor<T, A> p_visitor, final A p_argument )
+        {
+            return p_visitor.visitchoice( this, p_argument );
+        }
+    }
+
+
+    /**
+     * view of a sequence
+     */
+    private final class CSequence extends ICollection implements IGrammarSequence
+    {
+        /**
+         * ctor
+         *
+         * @param p_node node index
+         */
+        CSequence( final int p_node )
+        {
+            super( p_node );
+        }
+
+        @Override
+        public final <T, A> T accept( final IGrammarVisitor<T, A> p_visitor, final A p_argument )
+        {
+            return p_visitor.visitsequence( this, p_argument );
+        }
+    }
+
+
+    /**
+     * view of a group
+     */
+    private final class CGroup extends IView implements IGrammarGroup
+    {
+        /**
+         * ctor
+         *
+         * @param p_node node index
+         */
+        CGroup( final int p_node )
+        {
+            super( p_node );
+        }
+
+        @Override
+        public final <T, A> T accept( final IGrammarVisitor<T, A> p_visitor, final A p_argument )
+        {
+            return p_visitor.visitgroup( this, p_argument );
+        }
+
+        @Override
+        public final IGrammarElement element()
+        {
+            return this.child( 0 );
+        }
+    }
+
+
+    /**
+     * view of a negation
+     */
+    private final class CNegation extends IView implements IGrammarNegation
+    {
+        /**
+         * ctor
+         *
+         * @param p_node node index
+         */
+        CNegation( final int p_node )
+        {
+            super( p_node );
+        }
+
+        @Override
+        public final <T, A> T accept( final IGrammarVisitor<T, A> p_visitor, final A p_argument )
+        {
+            return p_visitor.visitnegation( this, p_argument );
+        }
+
+        @Override
+        public final IGrammarElement inner()
+        {
+            return this.child( 0 );
+        }
+    }
+
+
+    /**
+     * view of a complex element
+     */
+    private abstract class IComplex extends IView implements IGrammarComplexElement
+    {
+        /**
+         * ctor
+         *
+         * @param p_node node index
+         */
+        protected IComplex( final int p_node )
+        {
+            super( p_node );
+        }
+
+        @Override
+        public final String id()
+        {
+            return CGrammarTable.this.value( m_node );
+        }
+
+        @Override
+        public final String documentation()
+        {
+            return CGrammarTable.this.documentation( m_node );
+        }
+
+        /**
+         * returns the child element
+         *
+         * @return element
+         */
+        public final IGrammarElement children()
+        {
+            return this.child( 1 );
+        }
+    }
+
+
+    /**
+     * view of a rule
+     */
+    private final class CRule extends IComplex implements IGrammarRule
+    {
+        /**
+         * ctor
+         *
+         * @param p_node node index
+         */
+        CRule( final int p_node )
+        {
+            super( p_node );
+        }
+
+        @Override
+        public final <T, A> T accept( final IGrammarVisitor<T, A> p_visitor, final A p_argument )
+        {
+            return p_visitor.visitrule( this, p_argument );
+        }
+    }
+
+
+    /**
+     * view of a non-terminal
+     */
+    private final class CNonTerminal extends IComplex implements IGrammarTerminal
+    {
+        /**
+         * ctor
+         *
+         * @param p_node node index
+         */
+        CNonTerminal( final int p_node )
+        {
+            super( p_node );
+        }
+
+        @Override
+        public final <T, A> T accept( final IGrammarVisitor<T, A> p_visitor, final A p_argument )
+        {
+            return p_visitor.visitterminal( this, p_argument );
+        }
+    }
+
+}
@@ -41,7 +41,11 @@ public class CGrammarTerminalValue<T> implements IGrammarSimpleElement<T>
     /**
      * cardinality
      */
-    private ECardinality m_cardinality;
+    private final ECardinality m_cardinality;
+    /**
+     * structural hash
+     */
+    private final int m_hash;
 
     /**
      * ctor
@@ -66,6 +70,8 @@ public class CGrammarTerminalValue<T> implements IGrammarSimpleElement<T>
 
         if ( m_value == null )
             throw new IllegalArgumentException( CCommon.languagestring( CGrammarTerminalValue.class, "empty" ) );
+
+        m_hash = 31 * ( 31 * this.getClass().getName().hashCode() + m_value.hashCode() ) + m_cardinality.ordinal();
     }
 
     @Override
@@ -75,16 +81,32 @@ public class CGrammarTerminalValue<T> implements IGrammarSimpleElement<T>
         return (N) m_value;
     }
 
+    @Override
+    public final <R, A> R accept( final IGrammarVisitor<R, A> p_visitor, final A p_argument )
+    {
+        // identifiers are terminal values too, so they are dispatched here
+        return this instanceof IGrammarIdentifier
+               ? p_visitor.visitidentifier( (IGrammarIdentifier) this, p_argument )
+               : p_visitor.visitterminalvalue( this, p_argument );
+    }
+
     @Override
     public final int hashCode()
     {
-        return m_value.hashCode();
+        return m_hash;
     }
 
     @Override
     public final boolean equals( final Object p_object )
     {
-        return ( p_object != null ) && ( p_object instanceof IGrammarSimpleElement<?> ) && ( m_value.hashCode() == p_object.hashCode() );
+        if ( this == p_object )
+            return true;
+
+        return ( p_object != null )
+               && ( this.getClass().equals( p_object.getClass() ) )
+               && ( m_hash == p_object.hashCode() )
+               && ( m_cardinality == ( (CGrammarTerminalValue<?>) p_object ).m_cardinality )
+               && ( m_value.equals( ( (CGrammarTerminalValue<?>) p_object ).m_value ) );
     }
 
     @Override
@@ -96,7 +118,7 @@ public class CGrammarTerminalValue<T> implements IGrammarSimpleElement<T>
     @Override
     public final boolean isValueAssignableTo( final Class<?>... p_class )
     {
-        return m_value == null || Arrays.stream( p_class ).anyMatch( i -> i.isAssignableFrom( m_value.getClass() ) );
+        return Arrays.stream( p_class ).anyMatch( i -> i.isAssignableFrom( m_value.getClass() ) );
     }
 
     @Override
@@ -106,9 +128,10 @@ public class CGrammarTerminalValue<T> implements IGrammarSimpleElement<T>
     }
 
     @Override
-    public final IGrammarElement cardinality( final ECardinality p_cardinality )
+    public IGrammarElement cardinality( final ECardinality p_cardinality )
     {
-        m_cardinality = p_cardinality;
-        return this;
+        return m_cardinality == p_cardinality
+               ? this
+               : new CGrammarTerminalValue<>( p_cardinality, m_value );
     }
 }
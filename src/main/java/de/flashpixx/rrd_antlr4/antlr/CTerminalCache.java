@@ -0,0 +1,126 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.antlr;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import de.flashpixx.rrd_antlr4.CCommon;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * run-wide cache of terminal conversions, key is the language
+ * and the element text, because the conversion can contain
+ * language depend strings, the cached elements are immutable,
+ * so they can be shared
+ */
+public final class CTerminalCache
+{
+    /**
+     * maximum number of cached terminal conversions
+     */
+    private static final int SIZE = 4096;
+    /**
+     * cache of terminal conversions
+     */
+    private static final Cache<Pair<Locale, String>, IGrammarElement> TERMINALS = CacheBuilder.newBuilder()
+                                                                                              .maximumSize( SIZE )
+                                                                                              .recordStats()
+                                                                                              .build();
+    /**
+     * statistic of the cache on the last reset
+     */
+    private static volatile CacheStats s_reset = TERMINALS.stats();
+
+    /**
+     * ctor
+     */
+    private CTerminalCache()
+    {
+    }
+
+    /**
+     * returns a cached terminal conversion
+     *
+     * @param p_value data string
+     * @return element or null
+     */
+    static IGrammarElement get( final String p_value )
+    {
+        return TERMINALS.getIfPresent( CTerminalCache.key( p_value ) );
+    }
+
+    /**
+     * adds a terminal conversion
+     *
+     * @param p_value data string
+     * @param p_element element
+     */
+    static void put( final String p_value, final IGrammarElement p_element )
+    {
+        TERMINALS.put( CTerminalCache.key( p_value ), p_element );
+    }
+
+    /**
+     * returns the statistic of the cache since the last reset
+     *
+     * @return map with number of hits, misses and evictions
+     */
+    public static Map<String, Number> statistic()
+    {
+        final CacheStats l_statistic = TERMINALS.stats().minus( s_reset );
+        final Map<String, Number> l_result = new LinkedHashMap<>();
+        l_result.put( CCommon.languagestring( CTerminalCache.class, "statistichit" ), l_statistic.hitCount() );
+        l_result.put( CCommon.languagestring( CTerminalCache.class, "statisticmiss" ), l_statistic.missCount() );
+        l_result.put( CCommon.languagestring( CTerminalCache.class, "statisticeviction" ), l_statistic.evictionCount() );
+        return Collections.unmodifiableMap( l_result );
+    }
+
+    /**
+     * resets the statistic, the cached elements are kept
+     */
+    public static void reset()
+    {
+        s_reset = TERMINALS.stats();
+    }
+
+    /**
+     * returns the cache key
+     *
+     * @param p_value data string
+     * @return pair of the current language and the data string
+     */
+    private static Pair<Locale, String> key( final String p_value )
+    {
+        return new ImmutablePair<>( Locale.getDefault(), p_value );
+    }
+
+}
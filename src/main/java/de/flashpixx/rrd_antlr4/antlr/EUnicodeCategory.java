@@ -0,0 +1,228 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.antlr;
+
+import de.flashpixx.rrd_antlr4.CCommon;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+
+/**
+ * unicode general categories, which are
+ * used to expand and to name character classes
+ */
+public enum EUnicodeCategory
+{
+    LETTER( "L", Character.UPPERCASE_LETTER, Character.LOWERCASE_LETTER, Character.TITLECASE_LETTER, Character.MODIFIER_LETTER, Character.OTHER_LETTER ),
+    UPPERCASELETTER( "Lu", Character.UPPERCASE_LETTER ),
+    LOWERCASELETTER( "Ll", Character.LOWERCASE_LETTER ),
+    TITLECASELETTER( "Lt", Character.TITLECASE_LETTER ),
+    MODIFIERLETTER( "Lm", Character.MODIFIER_LETTER ),
+    OTHERLETTER( "Lo", Character.OTHER_LETTER ),
+    MARK( "M", Character.NON_SPACING_MARK, Character.ENCLOSING_MARK, Character.COMBINING_SPACING_MARK ),
+    NUMBER( "N", Character.DECIMAL_DIGIT_NUMBER, Character.LETTER_NUMBER, Character.OTHER_NUMBER ),
+    DECIMALDIGIT( "Nd", Character.DECIMAL_DIGIT_NUMBER ),
+    PUNCTUATION(
+        "P",
+        Character.DASH_PUNCTUATION, Character.START_PUNCTUATION, Character.END_PUNCTUATION, Character.CONNECTOR_PUNCTUATION,
+        Character.OTHER_PUNCTUATION, Character.INITIAL_QUOTE_PUNCTUATION, Character.FINAL_QUOTE_PUNCTUATION
+    ),
+    SYMBOL( "S", Character.MATH_SYMBOL, Character.CURRENCY_SYMBOL, Character.MODIFIER_SYMBOL, Character.OTHER_SYMBOL ),
+    SEPARATOR( "Z", Character.SPACE_SEPARATOR, Character.LINE_SEPARATOR, Character.PARAGRAPH_SEPARATOR );
+
+    /**
+     * last code point of the basic multilingual plane
+     */
+    private static final int BMP = 0xFFFF;
+    /**
+     * sorted code point ranges of each category
+     */
+    private static final Map<EUnicodeCategory, int[]> RANGES = Collections.unmodifiableMap( EUnicodeCategory.build() );
+    /**
+     * sorted code point ranges of each category within the basic multilingual plane
+     */
+    private static final Map<EUnicodeCategory, int[]> RANGESBMP = Collections.unmodifiableMap( EUnicodeCategory.bmp() );
+
+    /**
+     * property name
+     */
+    private final String m_name;
+    /**
+     * bit mask of the character types
+     */
+    private final int m_types;
+
+    /**
+     * ctor
+     *
+     * @param p_name property name
+     * @param p_types character types
+     */
+    EUnicodeCategory( final String p_name, final byte... p_types )
+    {
+        int l_types = 0;
+        for ( final byte l_type : p_types )
+            l_types |= 1 << l_type;
+
+        m_name = p_name;
+        m_types = l_types;
+    }
+
+    /**
+     * returns the code point ranges
+     *
+     * @return sorted array with lower and upper bound pairs
+     */
+    public final int[] ranges()
+    {
+        return RANGES.get( this ).clone();
+    }
+
+    /**
+     * returns the readable name of the category
+     *
+     * @return translated name
+     */
+    public final String description()
+    {
+        switch ( this )
+        {
+            case LETTER:
+                return CCommon.languagestring( this, "letter" );
+            case UPPERCASELETTER:
+                return CCommon.languagestring( this, "uppercaseletter" );
+            case LOWERCASELETTER:
+                return CCommon.languagestring( this, "lowercaseletter" );
+            case TITLECASELETTER:
+                return CCommon.languagestring( this, "titlecaseletter" );
+            case MODIFIERLETTER:
+                return CCommon.languagestring( this, "modifierletter" );
+            case OTHERLETTER:
+                return CCommon.languagestring( this, "otherletter" );
+            case MARK:
+                return CCommon.languagestring( this, "mark" );
+            case NUMBER:
+                return CCommon.languagestring( this, "number" );
+            case DECIMALDIGIT:
+                return CCommon.languagestring( this, "decimaldigit" );
+            case PUNCTUATION:
+                return CCommon.languagestring( this, "punctuation" );
+            case SYMBOL:
+                return CCommon.languagestring( this, "symbol" );
+            default:
+                return CCommon.languagestring( this, "separator" );
+        }
+    }
+
+    /**
+     * returns the category of a property name
+     *
+     * @param p_name property name e.g. Lu
+     * @return category or null if the name is unknown
+     */
+    public static EUnicodeCategory of( final String p_name )
+    {
+        return Arrays.stream( EUnicodeCategory.values() )
+                     .filter( i -> i.m_name.equals( p_name ) )
+                     .findFirst()
+                     .orElse( null );
+    }
+
+    /**
+     * returns the category, which is equal to the ranges,
+     * ranges within the basic multilingual plane are also
+     * compared with the category part of this plane
+     *
+     * @param p_ranges sorted and merged code point ranges
+     * @return category or null
+     */
+    public static EUnicodeCategory match( final int[] p_ranges )
+    {
+        if ( p_ranges.length == 0 )
+            return null;
+
+        final boolean l_bmp = p_ranges[p_ranges.length - 1] <= BMP;
+        return Arrays.stream( EUnicodeCategory.values() )
+                     .filter( i -> Arrays.equals( p_ranges, RANGES.get( i ) ) || ( l_bmp && Arrays.equals( p_ranges, RANGESBMP.get( i ) ) ) )
+                     .findFirst()
+                     .orElse( null );
+    }
+
+    /**
+     * builds the ranges of all categories within a single pass over all code points
+     *
+     * @return map with ranges
+     */
+    private static Map<EUnicodeCategory, int[]> build()
+    {
+        final EUnicodeCategory[] l_categories = EUnicodeCategory.values();
+        final IntStream.Builder[] l_ranges = new IntStream.Builder[l_categories.length];
+        final int[] l_start = new int[l_categories.length];
+        Arrays.fill( l_start, -1 );
+        IntStream.range( 0, l_categories.length ).forEach( i -> l_ranges[i] = IntStream.builder() );
+
+        for ( int i = 0; i <= Character.MAX_CODE_POINT + 1; i++ )
+        {
+            final int l_type = i <= Character.MAX_CODE_POINT ? 1 << Character.getType( i ) : 0;
+            for ( int j = 0; j < l_categories.length; j++ )
+            {
+                final boolean l_member = ( l_categories[j].m_types & l_type ) != 0;
+                if ( l_member && ( l_start[j] < 0 ) )
+                    l_start[j] = i;
+
+                if ( !l_member && ( l_start[j] >= 0 ) )
+                {
+                    l_ranges[j].add( l_start[j] ).add( i - 1 );
+                    l_start[j] = -1;
+                }
+            }
+        }
+
+        final Map<EUnicodeCategory, int[]> l_result = new EnumMap<>( EUnicodeCategory.class );
+        IntStream.range( 0, l_categories.length ).forEach( i -> l_result.put( l_categories[i], l_ranges[i].build().toArray() ) );
+        return l_result;
+    }
+
+    /**
+     * cuts the ranges of all categories at the end of the basic multilingual plane
+     *
+     * @return map with ranges
+     */
+    private static Map<EUnicodeCategory, int[]> bmp()
+    {
+        final Map<EUnicodeCategory, int[]> l_result = new EnumMap<>( EUnicodeCategory.class );
+        RANGES.forEach( ( k, v ) -> {
+            final IntStream.Builder l_ranges = IntStream.builder();
+            for ( int i = 0; ( i < v.length ) && ( v[i] <= BMP ); i += 2 )
+                l_ranges.add( v[i] ).add( Math.min( v[i + 1], BMP ) );
+            l_result.put( k, l_ranges.build().toArray() );
+        } );
+        return l_result;
+    }
+
+}
@@ -43,7 +43,11 @@ public abstract class IGrammarBaseCollection implements IGrammarCollection
     /**
      * cardinality
      */
-    protected ECardinality m_cardinality;
+    protected final ECardinality m_cardinality;
+    /**
+     * structural hash
+     */
+    private final int m_hash;
 
 
     /**
@@ -60,6 +64,7 @@ public abstract class IGrammarBaseCollection implements IGrammarCollection
 
         m_data = Collections.unmodifiableList( p_data.stream().filter( i -> i != null ).collect( Collectors.toList() ) );
         m_cardinality = p_cardinality;
+        m_hash = 31 * ( 31 * this.getClass().getName().hashCode() + m_data.hashCode() ) + m_cardinality.ordinal();
     }
 
     @Override
@@ -77,19 +82,36 @@ public abstract class IGrammarBaseCollection implements IGrammarCollection
     @Override
     public final IGrammarElement cardinality( final ECardinality p_cardinality )
     {
-        m_cardinality = p_cardinality;
-        return this;
+        return m_cardinality == p_cardinality
+               ? this
+               : this.create( p_cardinality, m_data );
     }
 
     @Override
     public final int hashCode()
     {
-        return m_cardinality.hashCode() + m_data.stream().mapToInt( i -> i.hashCode() ).sum();
+        return m_hash;
     }
 
     @Override
     public final boolean equals( final Object p_object )
     {
-        return ( p_object != null ) && ( p_object instanceof IGrammarCollection ) && this.hashCode() == p_object.hashCode();
+        if ( this == p_object )
+            return true;
+
+        return ( p_object != null )
+               && ( this.getClass().equals( p_object.getClass() ) )
+               && ( m_hash == p_object.hashCode() )
+               && ( m_cardinality == ( (IGrammarBaseCollection) p_object ).m_cardinality )
+               && ( m_data.equals( ( (IGrammarBaseCollection) p_object ).m_data ) );
     }
+
+    /**
+     * creates a new collection of the same type
+     *
+     * @param p_cardinality cardinality
+     * @param p_data data
+     * @return collection
+     */
+    protected abstract IGrammarElement create( final ECardinality p_cardinality, final List<IGrammarElement> p_data );
 }
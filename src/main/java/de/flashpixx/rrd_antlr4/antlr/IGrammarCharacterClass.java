@@ -21,82 +21,34 @@
  * @endcond
  */
 
-package de.flashpixx.rrd_antlr4;
-
-import java.util.regex.Matcher;
-
+package de.flashpixx.rrd_antlr4.antlr;
 
 /**
- * class for replacing string content
+ * character class element with sorted and merged code point ranges
  */
-public final class CStringReplace
+public interface IGrammarCharacterClass extends IGrammarElement
 {
-    /**
-     * string data
-     */
-    private String m_data;
-
-    /**
-     * ctor
-     *
-     * @param p_data input data
-     */
-    public CStringReplace( final String p_data )
-    {
-        m_data = p_data;
-    }
 
     /**
-     * replaces the content
+     * returns the code point ranges
      *
-     * @param p_search source
-     * @param p_replace target
-     * @return object reference
+     * @return sorted array with lower and upper bound pairs
      */
-    public final CStringReplace replaceAll( final String p_search, final String p_replace )
-    {
-        m_data = m_data.replaceAll( p_search, Matcher.quoteReplacement( p_replace ) );
-        return this;
-    }
+    int[] ranges();
 
     /**
-     * replace a char sequence
+     * returns the unicode category, which
+     * is equal to the character class
      *
-     * @param p_search search char sequence
-     * @param p_replace replace char sequence
-     * @return object reference
+     * @return category or null
      */
-    public final CStringReplace replace( final CharSequence p_search, final CharSequence p_replace )
-    {
-        m_data = m_data.replace( p_search, p_replace );
-        return this;
-    }
+    EUnicodeCategory category();
 
     /**
-     * returns the data
+     * returns the compact notation of the ranges
      *
-     * @return string
+     * @return string like [a-z0-9]
      */
-    public final String get()
-    {
-        return m_data;
-    }
-
-    @Override
-    public final int hashCode()
-    {
-        return m_data.hashCode();
-    }
-
-    @Override
-    public final boolean equals( final Object p_object )
-    {
-        return ( p_object != null ) && ( p_object instanceof CStringReplace ) && ( m_data.hashCode() == p_object.hashCode() );
-    }
+    String notation();
 
-    @Override
-    public final String toString()
-    {
-        return m_data;
-    }
 }
@@ -36,13 +36,26 @@ public interface IGrammarElement
     ECardinality cardinality();
 
     /**
-     * changes the cardinality
+     * returns the element with another cardinality,
+     * elements are immutable, so a new element is created
      *
      * @param p_cardinality cardinality value
-     * @return self reference
+     * @return element with the cardinality, self reference if the cardinality is equal
      */
     IGrammarElement cardinality( final ECardinality p_cardinality );
 
+    /**
+     * accepts a visitor and calls the
+     * visitor method of the element type
+     *
+     * @param p_visitor visitor
+     * @param p_argument argument which is passed to the visitor
+     * @return result of the visitor
+     * @tparam T return type
+     * @tparam A argument type
+     */
+    <T, A> T accept( final IGrammarVisitor<T, A> p_visitor, final A p_argument );
+
     /**
      * enum define cardinalities
      */
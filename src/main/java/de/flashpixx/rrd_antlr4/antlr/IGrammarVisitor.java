@@ -0,0 +1,126 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.antlr;
+
+/**
+ * visitor of grammar elements, each element calls
+ * the method of its type on accepting the visitor
+ *
+ * @tparam T return type
+ * @tparam A argument type, e.g. an output
+ */
+public interface IGrammarVisitor<T, A>
+{
+
+    /**
+     * visits a grammar definition
+     *
+     * @param p_element grammar element
+     * @param p_argument argument
+     * @return result
+     */
+    T visitgrammar( final IGrammarComplexElement p_element, final A p_argument );
+
+    /**
+     * visits a rule
+     *
+     * @param p_element rule element
+     * @param p_argument argument
+     * @return result
+     */
+    T visitrule( final IGrammarRule p_element, final A p_argument );
+
+    /**
+     * visits a terminal with an inner element
+     *
+     * @param p_element terminal element
+     * @param p_argument argument
+     * @return result
+     */
+    T visitterminal( final IGrammarTerminal p_element, final A p_argument );
+
+    /**
+     * visits an identifier
+     *
+     * @param p_element identifier element
+     * @param p_argument argument
+     * @return result
+     */
+    T visitidentifier( final IGrammarIdentifier p_element, final A p_argument );
+
+    /**
+     * visits a terminal value
+     *
+     * @param p_element terminal value element
+     * @param p_argument argument
+     * @return result
+     */
+    T visitterminalvalue( final IGrammarSimpleElement<?> p_element, final A p_argument );
+
+    /**
+     * visits a character class
+     *
+     * @param p_element character class element
+     * @param p_argument argument
+     * @return result
+     */
+    T visitcharacterclass( final IGrammarCharacterClass p_element, final A p_argument );
+
+    /**
+     * visits a negation
+     *
+     * @param p_element negation element
+     * @param p_argument argument
+     * @return result
+     */
+    T visitnegation( final IGrammarNegation p_element, final A p_argument );
+
+    /**
+     * visits a group
+     *
+     * @param p_element group element
+     * @param p_argument argument
+     * @return result
+     */
+    T visitgroup( final IGrammarGroup p_element, final A p_argument );
+
+    /**
+     * visits a choice
+     *
+     * @param p_element choice element
+     * @param p_argument argument
+     * @return result
+     */
+    T visitchoice( final IGrammarChoice p_element, final A p_argument );
+
+    /**
+     * visits a sequence
+     *
+     * @param p_element sequence element
+     * @param p_argument argument
+     * @return result
+     */
+    T visitsequence( final IGrammarSequence p_element, final A p_argument );
+
+}
@@ -0,0 +1,439 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.engine;
+
+import de.flashpixx.rrd_antlr4.CCommon;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * build-state manifest of an output directory, the manifest stores for each
+ * grammar file the content hashes of the grammar and all transitive imports
+ * and the produced output files, so unchanged grammar files can be skipped
+ */
+public final class CBuildManifest
+{
+    /**
+     * file header with format version
+     */
+    private static final String HEADER = "rrd-antlr4-manifest\t1";
+    /**
+     * separator of a line
+     */
+    private static final String SEPARATOR = "\t";
+    /**
+     * line type of the configuration fingerprint
+     */
+    private static final String CONFIGURATION = "configuration";
+    /**
+     * line type of a grammar
+     */
+    private static final String GRAMMAR = "grammar";
+    /**
+     * line type of an input file
+     */
+    private static final String INPUT = "input";
+    /**
+     * line type of an output file
+     */
+    private static final String OUTPUT = "output";
+    /**
+     * manifest file
+     */
+    private final Path m_file;
+    /**
+     * fingerprint of the configuration
+     */
+    private final String m_configuration;
+    /**
+     * entries, key is the canonical path of the grammar file
+     */
+    private final Map<Path, CEntry> m_entries = new ConcurrentHashMap<>();
+    /**
+     * canonical paths of the grammar files, which are used since the last write,
+     * entries of all other grammar files are dropped on writing
+     */
+    private final Set<Path> m_used = ConcurrentHashMap.newKeySet();
+
+    /**
+     * ctor - reads an existing manifest, the manifest is
+     * ignored if it is not readable or the configuration
+     * fingerprint is changed
+     *
+     * @param p_file manifest file
+     * @param p_configuration fingerprint of the configuration
+     */
+    public CBuildManifest( final File p_file, final String p_configuration )
+    {
+        m_file = p_file.toPath();
+        m_configuration = p_configuration;
+
+        if ( Files.isRegularFile( m_file ) )
+            try
+            {
+                this.read();
+            }
+            catch ( final IOException | RuntimeException l_exception )
+            {
+                m_entries.clear();
+            }
+    }
+
+    /**
+     * checks if a grammar file is up-to-date, all input
+     * files must be unchanged and all output files must exist
+     *
+     * @param p_grammar grammar file
+     * @return up-to-date flag
+     */
+    public final boolean uptodate( final File p_grammar )
+    {
+        try
+        {
+            final CEntry l_entry = m_entries.get( this.use( p_grammar.toPath().toRealPath() ) );
+            return ( l_entry != null ) && ( l_entry.uptodate() );
+        }
+        catch ( final IOException l_exception )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * checks if a grammar file depends on any of the given files, the grammar
+     * file itself and all transitive imports are checked, a grammar without
+     * state depends on all files
+     *
+     * @param p_grammar grammar file
+     * @param p_files canonical paths of files
+     * @return dependency flag
+     */
+    public final boolean dependson( final File p_grammar, final Collection<Path> p_files )
+    {
+        try
+        {
+            final CEntry l_entry = m_entries.get( this.use( p_grammar.toPath().toRealPath() ) );
+            return ( l_entry == null ) || ( l_entry.inputs().keySet().stream().anyMatch( p_files::contains ) );
+        }
+        catch ( final IOException l_exception )
+        {
+            return true;
+        }
+    }
+
+    /**
+     * stores the state of a successfully generated grammar file
+     *
+     * @param p_grammar grammar file
+     * @param p_inputs canonical path and content hash of the grammar and all transitive imports
+     * @param p_outputs output files
+     * @return self reference
+     * @throws IOException if the path of the grammar file cannot be resolved
+     */
+    public final CBuildManifest put( final File p_grammar, final Map<Path, String> p_inputs, final Collection<Path> p_outputs ) throws IOException
+    {
+        m_entries.put( this.use( this.path( p_grammar ) ), new CEntry( p_inputs, p_outputs ) );
+        return this;
+    }
+
+    /**
+     * removes the state of a grammar file
+     *
+     * @param p_grammar grammar file
+     * @return self reference
+     * @throws IOException if the path of the grammar file cannot be resolved
+     */
+    public final CBuildManifest remove( final File p_grammar ) throws IOException
+    {
+        m_entries.remove( this.path( p_grammar ) );
+        return this;
+    }
+
+    /**
+     * writes the manifest, the manifest is written into a
+     * temporary file which is moved atomically, entries of grammar
+     * files which are not used since the last write, e.g. deleted
+     * or renamed grammar files, are dropped
+     *
+     * @return self reference
+     * @throws IOException on IO errors
+     */
+    public final CBuildManifest write() throws IOException
+    {
+        m_entries.keySet().retainAll( m_used );
+        m_used.clear();
+
+        try
+        {
+            final Path l_directory = m_file.toAbsolutePath().getParent();
+            Files.createDirectories( l_directory );
+
+            final Path l_temporary = Files.createTempFile( l_directory, m_file.getFileName().toString(), ".tmp" );
+            try
+            {
+                this.write( l_temporary );
+                CBuildManifest.move( l_temporary, m_file );
+            }
+            finally
+            {
+                Files.deleteIfExists( l_temporary );
+            }
+        }
+        catch ( final IOException l_exception )
+        {
+            throw new IOException( CCommon.languagestring( this, "writeerror", m_file, l_exception.getMessage() ), l_exception );
+        }
+
+        return this;
+    }
+
+    /**
+     * returns the canonical path of a grammar file
+     *
+     * @param p_grammar grammar file
+     * @return canonical path
+     * @throws IOException if the path cannot be resolved
+     */
+    private Path path( final File p_grammar ) throws IOException
+    {
+        try
+        {
+            return p_grammar.toPath().toRealPath();
+        }
+        catch ( final IOException l_exception )
+        {
+            throw new IOException( CCommon.languagestring( this, "stateerror", p_grammar, l_exception.getMessage() ), l_exception );
+        }
+    }
+
+    /**
+     * marks a grammar file as used
+     *
+     * @param p_grammar canonical path of the grammar file
+     * @return canonical path
+     */
+    private Path use( final Path p_grammar )
+    {
+        m_used.add( p_grammar );
+        return p_grammar;
+    }
+
+    /**
+     * moves a file atomically if possible
+     *
+     * @param p_source source file
+     * @param p_target target file
+     * @throws IOException on IO errors
+     */
+    private static void move( final Path p_source, final Path p_target ) throws IOException
+    {
+        try
+        {
+            Files.move( p_source, p_target, StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( final AtomicMoveNotSupportedException l_exception )
+        {
+            Files.move( p_source, p_target, StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+
+    /**
+     * writes the entries into a file
+     *
+     * @param p_file file
+     * @throws IOException on IO errors
+     */
+    private void write( final Path p_file ) throws IOException
+    {
+        try ( final BufferedWriter l_writer = Files.newBufferedWriter( p_file, StandardCharsets.UTF_8 ) )
+        {
+            l_writer.write( HEADER );
+            l_writer.newLine();
+            l_writer.write( CONFIGURATION + SEPARATOR + m_configuration );
+            l_writer.newLine();
+
+            for ( final Map.Entry<Path, CEntry> l_grammar : m_entries.entrySet() )
+            {
+                l_writer.write( GRAMMAR + SEPARATOR + l_grammar.getKey() );
+                l_writer.newLine();
+
+                for ( final Map.Entry<Path, String> l_input : l_grammar.getValue().inputs().entrySet() )
+                {
+                    l_writer.write( INPUT + SEPARATOR + l_input.getValue() + SEPARATOR + l_input.getKey() );
+                    l_writer.newLine();
+                }
+
+                for ( final Path l_output : l_grammar.getValue().outputs() )
+                {
+                    l_writer.write( OUTPUT + SEPARATOR + l_output );
+                    l_writer.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * reads the manifest file
+     *
+     * @throws IOException on IO errors
+     */
+    private void read() throws IOException
+    {
+        try ( final BufferedReader l_reader = Files.newBufferedReader( m_file, StandardCharsets.UTF_8 ) )
+        {
+            if ( ( !HEADER.equals( l_reader.readLine() ) ) || ( !( CONFIGURATION + SEPARATOR + m_configuration ).equals( l_reader.readLine() ) ) )
+                return;
+
+            Path l_grammar = null;
+            Map<Path, String> l_inputs = new HashMap<>();
+            List<Path> l_outputs = new ArrayList<>();
+
+            for ( String l_line = l_reader.readLine(); l_line != null; l_line = l_reader.readLine() )
+            {
+                final String[] l_values = l_line.split( SEPARATOR, 3 );
+                switch ( l_values[0] )
+                {
+                    case GRAMMAR:
+                        if ( l_grammar != null )
+                            m_entries.put( l_grammar, new CEntry( l_inputs, l_outputs ) );
+                        l_grammar = Paths.get( l_values[1] );
+                        l_inputs = new HashMap<>();
+                        l_outputs = new ArrayList<>();
+                        break;
+
+                    case INPUT:
+                        l_inputs.put( Paths.get( l_values[2] ), l_values[1] );
+                        break;
+
+                    case OUTPUT:
+                        l_outputs.add( Paths.get( l_values[1] ) );
+                        break;
+
+                    default:
+                        throw new IOException( l_line );
+                }
+            }
+
+            if ( l_grammar != null )
+                m_entries.put( l_grammar, new CEntry( l_inputs, l_outputs ) );
+        }
+    }
+
+
+    /**
+     * state of a grammar file
+     */
+    private static final class CEntry
+    {
+        /**
+         * canonical path and content hash of the grammar and all transitive imports
+         */
+        private final Map<Path, String> m_inputs;
+        /**
+         * output files
+         */
+        private final Collection<Path> m_outputs;
+
+        /**
+         * ctor
+         *
+         * @param p_inputs canonical path and content hash of the grammar and all transitive imports
+         * @param p_outputs output files
+         */
+        CEntry( final Map<Path, String> p_inputs, final Collection<Path> p_outputs )
+        {
+            m_inputs = Collections.unmodifiableMap( new HashMap<>( p_inputs ) );
+            m_outputs = Collections.unmodifiableList( new ArrayList<>( p_outputs ) );
+        }
+
+        /**
+         * returns the input files
+         *
+         * @return map with canonical path and content hash
+         */
+        final Map<Path, String> inputs()
+        {
+            return m_inputs;
+        }
+
+        /**
+         * returns the output files
+         *
+         * @return output files
+         */
+        final Collection<Path> outputs()
+        {
+            return m_outputs;
+        }
+
+        /**
+         * checks if all inputs are unchanged and all outputs exist
+         *
+         * @return up-to-date flag
+         */
+        final boolean uptodate()
+        {
+            return ( !m_inputs.isEmpty() )
+                   && ( m_outputs.stream().allMatch( Files::isRegularFile ) )
+                   && ( m_inputs.entrySet().stream().allMatch( i -> CEntry.hash( i.getKey() ).equals( i.getValue() ) ) );
+        }
+
+        /**
+         * returns the current content hash of a file
+         *
+         * @param p_file file
+         * @return hash or empty string if the file is not readable
+         */
+        private static String hash( final Path p_file )
+        {
+            try
+            {
+                return CGrammarLoader.hash( CGrammarLoader.read( p_file ) );
+            }
+            catch ( final IOException l_exception )
+            {
+                return "";
+            }
+        }
+    }
+
+}
@@ -24,24 +24,27 @@
 package de.flashpixx.rrd_antlr4.engine;
 
 import de.flashpixx.rrd_antlr4.CCommon;
-import de.flashpixx.rrd_antlr4.antlr.ANTLRv4Lexer;
-import de.flashpixx.rrd_antlr4.antlr.ANTLRv4Parser;
-import de.flashpixx.rrd_antlr4.antlr.CASTVisitorAntLR;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarModel;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarComplexElement;
 import de.flashpixx.rrd_antlr4.engine.template.ETemplate;
 import de.flashpixx.rrd_antlr4.engine.template.ITemplate;
-import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CommonTokenStream;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -58,89 +61,157 @@ public final class CEngine
      * @param p_baseoutputdirectory base output directory
      * @param p_outputdirectory output directory - relative to base output directory
      * @param p_grammar grammar input file
-     * @param p_docuclean set with documentation clean regex
-     * @param p_imports map with grammar imported grammar files
-     * @param p_templates exporting templates  @return list with error messages
-     * @return list with error messages
+     * @param p_resolver run-scoped grammar resolver
+     * @param p_templates exporting templates
+     * @param p_sharedassets write static files once into a shared asset directory of each template
+     * @return result with error messages, input and output files
      * @throws IOException on IO error
      */
-    public Collection<String> generate( final File p_baseoutputdirectory, final File p_outputdirectory, final File p_grammar, final Set<String> p_docuclean,
-                                        final Map<String, File> p_imports, final Set<ETemplate> p_templates
+    public CResult generate( final File p_baseoutputdirectory, final File p_outputdirectory, final File p_grammar,
+                             final CGrammarResolver p_resolver, final Set<ETemplate> p_templates, final boolean p_sharedassets
     ) throws IOException
     {
-        return p_templates
+        // the shared asset directory is on the same level as the grammar output directories, so a grammar must not write into it
+        final Path l_output = p_outputdirectory.toPath().normalize();
+        if ( p_sharedassets && ( l_output.getNameCount() > 0 ) && ( l_output.getName( 0 ).toString().equalsIgnoreCase( ITemplate.ASSETS ) ) )
+            return new CResult(
+                Collections.singletonList( CCommon.languagestring( this, "assetcollision", p_outputdirectory, ITemplate.ASSETS ) ),
+                Collections.emptyMap(),
+                Collections.emptyList()
+            );
+
+        // lexing, parsing and visiting is done once, all templates share the model
+        final List<String> l_errors = new LinkedList<>();
+        final Map<Path, String> l_inputs = new HashMap<>();
+        final List<CGrammarModel> l_models = p_resolver.resolve( p_grammar, l_errors, l_inputs );
+        if ( !l_errors.isEmpty() )
+            return new CResult( l_errors, l_inputs, Collections.emptyList() );
+
+        final Queue<Path> l_outputs = new ConcurrentLinkedQueue<>();
+        final List<String> l_messages = p_templates
                 .parallelStream()
 
                 // create template
-                .map( ETemplate::generate )
+                .map( i -> i.generate( p_sharedassets ? p_baseoutputdirectory : null ) )
 
                 // create output directory if not exists
                 .flatMap( i ->
                 {
-                    try
+                    // the template is closed on errors too, so no temporary files are left
+                    try ( final ITemplate l_template = i )
                     {
-                        final Path l_directory = Files.createDirectories( CCommon.outputdirectory( p_baseoutputdirectory, i, p_outputdirectory ) );
+                        final Path l_directory = Files.createDirectories( CCommon.outputdirectory( p_baseoutputdirectory, l_template, p_outputdirectory ) );
 
                         // run exporting process
-                        i.preprocess( l_directory );
-                        final Collection<String> l_errors = this.parse( p_grammar, p_docuclean, p_imports, i );
-                        if ( !l_errors.isEmpty() )
-                            return l_errors.stream();
+                        l_template.preprocess( l_directory );
+                        l_models.forEach( j -> CEngine.render( j, l_template ) );
+                        l_template.postprocess( l_directory );
+
+                        try ( final Stream<Path> l_files = Files.walk( l_directory ) )
+                        {
+                            l_files.filter( Files::isRegularFile ).forEach( l_outputs::add );
+                        }
 
-                        i.postprocess( l_directory );
+                        // shared assets are outputs of each grammar, so missing assets are written again
+                        final Path l_assets = CCommon.outputdirectory( p_baseoutputdirectory, l_template, new File( ITemplate.ASSETS ) );
+                        if ( p_sharedassets && ( Files.isDirectory( l_assets ) ) )
+                            try ( final Stream<Path> l_files = Files.walk( l_assets ) )
+                            {
+                                l_files.filter( Files::isRegularFile ).forEach( l_outputs::add );
+                            }
                         return Stream.<String>of();
                     }
                     catch ( final URISyntaxException | IOException l_exception )
                     {
                         return Stream.of( l_exception.getMessage() );
                     }
+                    catch ( final UncheckedIOException l_exception )
+                    {
+                        return Stream.of( l_exception.getCause().getMessage() );
+                    }
                 } )
 
                 // collect error messages
                 .collect( Collectors.toList() );
+
+        return new CResult( l_messages, l_inputs, new ArrayList<>( l_outputs ) );
     }
 
 
     /**
-     * runs parsing process with recursive descent of a grammar file
-     *
-     * @param p_grammar grammar file
-     * @param p_docuclean set with documentation clean regex
-     * @param p_imports map with grammar imported grammar files
-     * @param p_template template which will be passend
-     * @return colleciton with error messages
+     * pushes a grammar model into a template
      *
-     * @throws IOException thrown on IO errors
+     * @param p_model grammar model
+     * @param p_template template
      */
-    private Collection<String> parse( final File p_grammar, final Set<String> p_docuclean, final Map<String, File> p_imports, final ITemplate p_template )
-    throws IOException
+    private static void render( final CGrammarModel p_model, final ITemplate p_template )
     {
-        // lexing and parsing the input grammar file
-        final CASTVisitorAntLR l_visitor = new CASTVisitorAntLR( p_template, p_docuclean );
-        l_visitor.visit(
-                new ANTLRv4Parser(
-                        new CommonTokenStream(
-                                new ANTLRv4Lexer(
-                                        new ANTLRInputStream( new FileInputStream( p_grammar ) )
-                                )
-                        )
-                ).grammarSpec()
-        );
-
-        return l_visitor.getGrammarImports().stream()
-                        .map( i -> p_imports.get( i.get() ) )
-                        .filter( Objects::nonNull )
-                        .flatMap( i ->
-                        {
-                            try
-                            {
-                                return this.parse( i, p_docuclean, p_imports, p_template ).stream();
-                            }
-                            catch ( final IOException l_exception )
-                            {
-                                return Stream.of( l_exception.getMessage() );
-                            }
-                        } ).collect( Collectors.toList() );
+        final IGrammarComplexElement l_grammar = p_template.grammar( p_model.grammar() );
+        p_model.rules().forEach( i -> p_template.element( l_grammar, i ) );
+    }
+
+
+    /**
+     * result of a generator call
+     */
+    public static final class CResult
+    {
+        /**
+         * error messages
+         */
+        private final Collection<String> m_messages;
+        /**
+         * canonical path and content hash of the grammar and all transitive imports
+         */
+        private final Map<Path, String> m_inputs;
+        /**
+         * files of the output directories
+         */
+        private final Collection<Path> m_outputs;
+
+        /**
+         * ctor
+         *
+         * @param p_messages error messages
+         * @param p_inputs canonical path and content hash of the grammar and all transitive imports
+         * @param p_outputs files of the output directories
+         */
+        private CResult( final Collection<String> p_messages, final Map<Path, String> p_inputs, final Collection<Path> p_outputs )
+        {
+            m_messages = Collections.unmodifiableCollection( p_messages );
+            m_inputs = Collections.unmodifiableMap( p_inputs );
+            m_outputs = Collections.unmodifiableCollection( p_outputs );
+        }
+
+        /**
+         * returns the error messages
+         *
+         * @return error messages
+         */
+        public final Collection<String> messages()
+        {
+            return m_messages;
+        }
+
+        /**
+         * returns the input files
+         *
+         * @return map with canonical path and content hash of the grammar and all transitive imports
+         */
+        public final Map<Path, String> inputs()
+        {
+            return m_inputs;
+        }
+
+        /**
+         * returns the output files
+         *
+         * @return files of the output directories
+         */
+        public final Collection<Path> outputs()
+        {
+            return m_outputs;
+        }
     }
 
 }
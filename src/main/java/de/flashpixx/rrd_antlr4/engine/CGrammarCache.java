@@ -0,0 +1,210 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.engine;
+
+import com.google.common.hash.Hashing;
+import de.flashpixx.rrd_antlr4.CCommon;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarCodec;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarModel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * persistent cache of grammar models, each model is stored in a
+ * binary file, which name is build of the grammar content hash,
+ * the documentation clean set, the language and the tool version
+ */
+public final class CGrammarCache
+{
+    /**
+     * file header
+     */
+    private static final int MAGIC = 0x52524441;
+    /**
+     * file extension of a cache entry
+     */
+    private static final String EXTENSION = ".model";
+    /**
+     * cache directory
+     */
+    private final Path m_directory;
+    /**
+     * salt of the cache key with all values
+     * which change the model besides the grammar
+     */
+    private final String m_salt;
+
+    /**
+     * ctor
+     *
+     * @param p_directory cache directory
+     * @param p_docuclean set with documentation clean regex
+     */
+    public CGrammarCache( final File p_directory, final Set<String> p_docuclean )
+    {
+        m_directory = p_directory.toPath();
+        m_salt = Stream.concat(
+            Stream.of(
+                CCommon.configuration().getString( "version" ),
+                CCommon.configuration().getString( "buildcommit" ),
+                String.valueOf( CGrammarCodec.VERSION ),
+                Locale.getDefault().toLanguageTag()
+            ),
+            p_docuclean.stream().sorted()
+        ).collect( Collectors.joining( "\n" ) );
+    }
+
+    /**
+     * returns a cached model
+     *
+     * @param p_hash content hash of the grammar
+     * @return model or null if the model is not cached or not readable
+     */
+    public final CGrammarModel get( final String p_hash )
+    {
+        final Path l_file = this.file( p_hash );
+        if ( !Files.isRegularFile( l_file ) )
+            return null;
+
+        try ( final DataInputStream l_input = new DataInputStream( new BufferedInputStream( Files.newInputStream( l_file ) ) ) )
+        {
+            return ( l_input.readInt() == MAGIC ) && ( l_input.readInt() == CGrammarCodec.VERSION )
+                   ? CGrammarCodec.read( l_input )
+                   : null;
+        }
+        catch ( final IOException l_exception )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * stores a model, the model is written into a temporary
+     * file which is moved atomically, so concurrent writers
+     * and readers see always a complete file
+     *
+     * @param p_hash content hash of the grammar
+     * @param p_model model
+     * @return self reference
+     * @throws IOException on write errors, the cache is still usable
+     */
+    public final CGrammarCache put( final String p_hash, final CGrammarModel p_model ) throws IOException
+    {
+        try
+        {
+            this.write( p_hash, p_model );
+        }
+        catch ( final IOException l_exception )
+        {
+            throw new IOException( CCommon.languagestring( this, "writeerror", m_directory, l_exception.getMessage() ), l_exception );
+        }
+
+        return this;
+    }
+
+    /**
+     * writes a model into a temporary file and moves it to the cache file
+     *
+     * @param p_hash content hash of the grammar
+     * @param p_model model
+     * @throws IOException on IO errors
+     */
+    private void write( final String p_hash, final CGrammarModel p_model ) throws IOException
+    {
+        Files.createDirectories( m_directory );
+        final Path l_temporary = Files.createTempFile( m_directory, p_hash, ".tmp" );
+        try
+        {
+            CGrammarCache.write( l_temporary, p_model );
+            CGrammarCache.move( l_temporary, this.file( p_hash ) );
+        }
+        finally
+        {
+            Files.deleteIfExists( l_temporary );
+        }
+    }
+
+    /**
+     * writes a model into a file
+     *
+     * @param p_file file
+     * @param p_model model
+     * @throws IOException on IO errors
+     */
+    private static void write( final Path p_file, final CGrammarModel p_model ) throws IOException
+    {
+        try ( final DataOutputStream l_output = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( p_file ) ) ) )
+        {
+            l_output.writeInt( MAGIC );
+            l_output.writeInt( CGrammarCodec.VERSION );
+            CGrammarCodec.write( p_model, l_output );
+        }
+    }
+
+    /**
+     * returns the cache file of a grammar
+     *
+     * @param p_hash content hash of the grammar
+     * @return file path
+     */
+    private Path file( final String p_hash )
+    {
+        return m_directory.resolve( Hashing.sha256().hashString( m_salt + "\n" + p_hash, StandardCharsets.UTF_8 ).toString() + EXTENSION );
+    }
+
+    /**
+     * moves a file atomically if possible
+     *
+     * @param p_source source file
+     * @param p_target target file
+     * @throws IOException on IO errors
+     */
+    private static void move( final Path p_source, final Path p_target ) throws IOException
+    {
+        try
+        {
+            Files.move( p_source, p_target, StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( final AtomicMoveNotSupportedException l_exception )
+        {
+            Files.move( p_source, p_target, StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+
+}
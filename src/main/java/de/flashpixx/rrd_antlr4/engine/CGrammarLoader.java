@@ -0,0 +1,124 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.engine;
+
+import com.google.common.hash.Hashing;
+import org.antlr.v4.runtime.CodePointBuffer;
+import org.antlr.v4.runtime.CodePointCharStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * loader of grammar files, the file content is read
+ * with NIO and the file handle is always released
+ */
+public final class CGrammarLoader
+{
+    /**
+     * charset of grammar files
+     */
+    public static final Charset CHARSET = StandardCharsets.UTF_8;
+    /**
+     * file size in bytes above the file is memory-mapped
+     * instead of read into the heap
+     */
+    private static final long MAPPINGSIZE = 256 * 1024;
+
+    /**
+     * ctor
+     */
+    private CGrammarLoader()
+    {
+    }
+
+    /**
+     * reads the content of a grammar file, large files are
+     * memory-mapped, small files are read directly
+     *
+     * @param p_path grammar file
+     * @return read-only buffer with the file content
+     *
+     * @throws IOException on IO errors
+     */
+    public static ByteBuffer read( final Path p_path ) throws IOException
+    {
+        try ( final FileChannel l_channel = FileChannel.open( p_path, StandardOpenOption.READ ) )
+        {
+            final long l_size = l_channel.size();
+            if ( l_size > MAPPINGSIZE )
+                return l_channel.map( FileChannel.MapMode.READ_ONLY, 0, l_size );
+
+            final ByteBuffer l_buffer = ByteBuffer.allocate( (int) l_size );
+            int l_read = 0;
+            while ( ( l_buffer.hasRemaining() ) && ( l_read >= 0 ) )
+                l_read = l_channel.read( l_buffer );
+
+            l_buffer.flip();
+            return l_buffer.asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * returns the content hash of a grammar file
+     *
+     * @param p_content file content
+     * @return hash string
+     */
+    public static String hash( final ByteBuffer p_content )
+    {
+        return Hashing.sha256().hashBytes( p_content.duplicate() ).toString();
+    }
+
+    /**
+     * decodes the content of a grammar file once into a char stream
+     *
+     * @param p_content file content
+     * @param p_source source name of the stream
+     * @return char stream
+     *
+     * @throws CharacterCodingException on malformed content
+     */
+    public static CodePointCharStream decode( final ByteBuffer p_content, final String p_source ) throws CharacterCodingException
+    {
+        final CharBuffer l_chars = CHARSET.newDecoder()
+                                          .onMalformedInput( CodingErrorAction.REPORT )
+                                          .onUnmappableCharacter( CodingErrorAction.REPORT )
+                                          .decode( p_content.duplicate() );
+
+        final CodePointBuffer.Builder l_buffer = CodePointBuffer.builder( l_chars.remaining() );
+        l_buffer.append( l_chars );
+        return CodePointCharStream.fromBuffer( l_buffer.build(), p_source );
+    }
+
+}
@@ -0,0 +1,459 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.engine;
+
+import de.flashpixx.rrd_antlr4.CCommon;
+import de.flashpixx.rrd_antlr4.antlr.ANTLRv4Lexer;
+import de.flashpixx.rrd_antlr4.antlr.ANTLRv4Parser;
+import de.flashpixx.rrd_antlr4.antlr.CASTVisitorAntLR;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarInterner;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarModel;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+
+/**
+ * run-scoped resolver of grammar files and their imports,
+ * each grammar file is parsed at most once and the model
+ * is shared with all importers
+ */
+public final class CGrammarResolver
+{
+    /**
+     * number of rules from which the rules of a
+     * model are stored in a flat table
+     */
+    private static final int COMPACTRULES = 10000;
+    /**
+     * map with grammar imported grammar files
+     */
+    private final Map<String, File> m_imports;
+    /**
+     * set with documentation clean regex
+     */
+    private final Set<String> m_docuclean;
+    /**
+     * persistent model cache or null
+     */
+    private final CGrammarCache m_cache;
+    /**
+     * parsed grammar files, key is the canonical path
+     */
+    private final ConcurrentMap<Path, CEntry> m_models = new ConcurrentHashMap<>();
+    /**
+     * interner of the model elements
+     */
+    private final CGrammarInterner m_interner = new CGrammarInterner();
+    /**
+     * number of parsed grammar files
+     */
+    private final AtomicLong m_parsed = new AtomicLong();
+    /**
+     * number of grammar files which are parsed in full LL mode after SLL mode has failed
+     */
+    private final AtomicLong m_fallback = new AtomicLong();
+    /**
+     * number of grammar files which are read from the persistent cache
+     */
+    private final AtomicLong m_cachehit = new AtomicLong();
+    /**
+     * number of grammar files which are stored in a flat table
+     */
+    private final AtomicLong m_compact = new AtomicLong();
+    /**
+     * warnings, which do not fail a grammar file
+     */
+    private final Queue<String> m_warnings = new ConcurrentLinkedQueue<>();
+
+    /**
+     * ctor
+     *
+     * @param p_imports map with grammar imported grammar files
+     * @param p_docuclean set with documentation clean regex
+     * @param p_cache persistent model cache or null
+     */
+    public CGrammarResolver( final Map<String, File> p_imports, final Set<String> p_docuclean, final CGrammarCache p_cache )
+    {
+        m_imports = p_imports;
+        m_docuclean = p_docuclean;
+        m_cache = p_cache;
+    }
+
+    /**
+     * resolves a grammar file and all transitive imports
+     *
+     * @param p_grammar grammar file
+     * @param p_errors collection with error messages of the imports
+     * @return list with the grammar model and all models of the imports in depth-first order
+     *
+     * @throws IOException thrown on IO errors of the grammar file
+     */
+    public final List<CGrammarModel> resolve( final File p_grammar, final Collection<String> p_errors ) throws IOException
+    {
+        return this.resolve( p_grammar, p_errors, new HashMap<>() );
+    }
+
+    /**
+     * resolves a grammar file and all transitive imports
+     *
+     * @param p_grammar grammar file
+     * @param p_errors collection with error messages of the imports
+     * @param p_files map which is filled with the canonical path and content hash of the grammar file and all transitive imports
+     * @return list with the grammar model and all models of the imports in depth-first order
+     *
+     * @throws IOException thrown on IO errors of the grammar file
+     */
+    public final List<CGrammarModel> resolve( final File p_grammar, final Collection<String> p_errors, final Map<Path, String> p_files ) throws IOException
+    {
+        final Path l_path = p_grammar.toPath().toRealPath();
+        final List<CGrammarModel> l_models = new ArrayList<>();
+        final Set<Path> l_visited = new HashSet<>();
+        this.resolve( l_path, this.model( l_path ), new LinkedHashSet<>( Collections.singleton( l_path ) ), l_visited, l_models, p_errors );
+
+        l_visited.forEach( i -> p_files.put( i, m_models.get( i ).hash() ) );
+        return l_models;
+    }
+
+    /**
+     * returns the parsing statistic
+     *
+     * @return map with number of parsed grammar files, number of full LL fallbacks and the interner statistic
+     */
+    public final Map<String, Number> statistic()
+    {
+        final Map<String, Number> l_statistic = new LinkedHashMap<>();
+        l_statistic.put( CCommon.languagestring( this, "statisticparsed" ), m_parsed.get() );
+        l_statistic.put( CCommon.languagestring( this, "statisticfallback" ), m_fallback.get() );
+        l_statistic.put( CCommon.languagestring( this, "statisticcachehit" ), m_cachehit.get() );
+        l_statistic.put( CCommon.languagestring( this, "statisticcompact" ), m_compact.get() );
+        l_statistic.putAll( m_interner.statistic() );
+        return Collections.unmodifiableMap( l_statistic );
+    }
+
+    /**
+     * returns and removes the warnings, e.g. write
+     * errors of the persistent model cache
+     *
+     * @return list with warning messages
+     */
+    public final List<String> warnings()
+    {
+        final List<String> l_warnings = new ArrayList<>();
+        for ( String l_warning = m_warnings.poll(); l_warning != null; l_warning = m_warnings.poll() )
+            l_warnings.add( l_warning );
+        return l_warnings;
+    }
+
+    /**
+     * depth-first descent of the import graph
+     *
+     * @param p_path canonical path of the grammar
+     * @param p_model model of the grammar
+     * @param p_chain current import chain for cycle detection
+     * @param p_visited already visited grammar files
+     * @param p_models result model list
+     * @param p_errors error messages
+     */
+    private void resolve( final Path p_path, final CGrammarModel p_model, final Set<Path> p_chain, final Set<Path> p_visited,
+                          final List<CGrammarModel> p_models, final Collection<String> p_errors
+    )
+    {
+        if ( !p_visited.add( p_path ) )
+            return;
+
+        p_models.add( p_model );
+        p_model.imports().stream()
+               .map( m_imports::get )
+               .filter( Objects::nonNull )
+               .forEach( i ->
+               {
+                   try
+                   {
+                       final Path l_path = i.toPath().toRealPath();
+                       if ( p_chain.contains( l_path ) )
+                       {
+                           p_errors.add( CCommon.languagestring(
+                               this, "cycle",
+                               p_chain.stream().map( j -> j.getFileName().toString() ).collect( Collectors.joining( " -> " ) ) + " -> " + l_path.getFileName()
+                           ) );
+                           return;
+                       }
+
+                       p_chain.add( l_path );
+                       this.resolve( l_path, this.model( l_path ), p_chain, p_visited, p_models, p_errors );
+                       p_chain.remove( l_path );
+                   }
+                   catch ( final IOException l_exception )
+                   {
+                       p_errors.add( l_exception.getMessage() );
+                   }
+               } );
+    }
+
+    /**
+     * returns the model of a grammar file, the file
+     * is parsed only if the content has been changed
+     *
+     * @param p_path canonical path
+     * @return grammar model
+     *
+     * @throws IOException on IO errors
+     */
+    private CGrammarModel model( final Path p_path ) throws IOException
+    {
+        final ByteBuffer l_content = CGrammarLoader.read( p_path );
+        final String l_hash = CGrammarLoader.hash( l_content );
+
+        return m_models.compute(
+            p_path,
+            ( k, v ) -> ( v != null ) && ( v.hash().equals( l_hash ) ) ? v : new CEntry( l_hash, () -> this.load( l_content, l_hash, p_path.toString() ) )
+        ).get();
+    }
+
+    /**
+     * loads the model from the persistent cache or parses the content,
+     * the elements are interned and the rules of huge models are stored
+     * in a flat table
+     *
+     * @note the table is built from the complete model, so it reduces
+     * the heap of the models which are kept for the importers, but not
+     * the peak heap while a single model is parsed
+     *
+     * @param p_content file content
+     * @param p_hash content hash
+     * @param p_source source name
+     * @return grammar model
+     *
+     * @throws IOException on decoding errors
+     */
+    private CGrammarModel load( final ByteBuffer p_content, final String p_hash, final String p_source ) throws IOException
+    {
+        CGrammarModel l_model = m_cache == null ? null : m_cache.get( p_hash );
+        if ( l_model == null )
+            l_model = this.parse( p_content, p_hash, p_source );
+        else
+            m_cachehit.incrementAndGet();
+
+        l_model = m_interner.intern( l_model );
+        if ( l_model.rules().size() < COMPACTRULES )
+            return l_model;
+
+        m_compact.incrementAndGet();
+        return l_model.compact();
+    }
+
+    /**
+     * lexing, parsing and visiting of grammar content, the
+     * content is parsed with SLL prediction first and is
+     * parsed again with full LL prediction only if SLL fails,
+     * models without lexer and parser errors are stored in the cache,
+     * so a cached model never hides a diagnostic
+     *
+     * @param p_content file content
+     * @param p_hash content hash
+     * @param p_source source name
+     * @return grammar model
+     *
+     * @throws IOException on decoding errors
+     */
+    private CGrammarModel parse( final ByteBuffer p_content, final String p_hash, final String p_source ) throws IOException
+    {
+        m_parsed.incrementAndGet();
+
+        // the lexer reports errors on the console and counts them, tokens are buffered, so they are counted once
+        final CErrorCounter l_lexererror = new CErrorCounter();
+        final ANTLRv4Lexer l_lexer = new ANTLRv4Lexer( CGrammarLoader.decode( p_content, p_source ) );
+        l_lexer.addErrorListener( l_lexererror );
+
+        final CommonTokenStream l_tokens = new CommonTokenStream( l_lexer );
+        final ANTLRv4Parser l_parser = new ANTLRv4Parser( l_tokens );
+        l_parser.getInterpreter().setPredictionMode( PredictionMode.SLL );
+        l_parser.removeErrorListeners();
+        l_parser.setErrorHandler( new BailErrorStrategy() );
+
+        ANTLRv4Parser.GrammarSpecContext l_tree;
+        try
+        {
+            l_tree = l_parser.grammarSpec();
+        }
+        catch ( final ParseCancellationException l_exception )
+        {
+            // SLL fails on syntax errors and on real LL conflicts, so the full LL run reports the errors like a single-stage parser
+            m_fallback.incrementAndGet();
+            l_tokens.seek( 0 );
+            l_parser.reset();
+            l_parser.addErrorListener( ConsoleErrorListener.INSTANCE );
+            l_parser.setErrorHandler( new DefaultErrorStrategy() );
+            l_parser.getInterpreter().setPredictionMode( PredictionMode.LL );
+            l_tree = l_parser.grammarSpec();
+        }
+
+        final CASTVisitorAntLR l_visitor = new CASTVisitorAntLR( m_docuclean );
+        l_visitor.visit( l_tree );
+
+        final CGrammarModel l_model = l_visitor.model();
+        if ( ( m_cache == null ) || ( l_parser.getNumberOfSyntaxErrors() > 0 ) || ( l_lexererror.count() > 0 ) )
+            return l_model;
+
+        // the cache is optional, so write errors are warnings only
+        try
+        {
+            m_cache.put( p_hash, l_model );
+        }
+        catch ( final IOException l_exception )
+        {
+            m_warnings.add( l_exception.getMessage() );
+        }
+        return l_model;
+    }
+
+
+    /**
+     * error listener, which counts the errors
+     */
+    private static final class CErrorCounter extends BaseErrorListener
+    {
+        /**
+         * number of errors
+         */
+        private int m_count;
+
+        @Override
+        public final void syntaxError( final Recognizer<?, ?> p_recognizer, final Object p_symbol, final int p_line, final int p_position,
+                                       final String p_message, final RecognitionException p_exception
+        )
+        {
+            m_count++;
+        }
+
+        /**
+         * returns the number of errors
+         *
+         * @return number of errors
+         */
+        final int count()
+        {
+            return m_count;
+        }
+    }
+
+
+    /**
+     * cache entry of a parsed grammar file
+     */
+    private static final class CEntry
+    {
+        /**
+         * content hash
+         */
+        private final String m_hash;
+        /**
+         * parsing task, which is run at most once
+         */
+        private final FutureTask<CGrammarModel> m_task;
+
+        /**
+         * ctor
+         *
+         * @param p_hash content hash
+         * @param p_parser parsing function
+         */
+        CEntry( final String p_hash, final Callable<CGrammarModel> p_parser )
+        {
+            m_hash = p_hash;
+            m_task = new FutureTask<>( p_parser );
+        }
+
+        /**
+         * returns the content hash
+         *
+         * @return hash
+         */
+        final String hash()
+        {
+            return m_hash;
+        }
+
+        /**
+         * returns the model and parses the content on the first call,
+         * concurrent callers wait for the result
+         *
+         * @return grammar model
+         *
+         * @throws IOException on parsing errors
+         */
+        final CGrammarModel get() throws IOException
+        {
+            m_task.run();
+            try
+            {
+                return m_task.get();
+            }
+            catch ( final InterruptedException l_exception )
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException( l_exception );
+            }
+            catch ( final ExecutionException l_exception )
+            {
+                if ( l_exception.getCause() instanceof IOException )
+                    throw (IOException) l_exception.getCause();
+                throw new IOException( l_exception.getCause() );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,280 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.engine.template;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import de.flashpixx.rrd_antlr4.CCommon;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * checksum-aware writer of static template files, the resource
+ * content is read once from the classpath and kept in memory,
+ * a target with equal size and hash is skipped, otherwise the
+ * target is copied by the file channel from the last written
+ * copy if both are on the same file store or written from memory
+ *
+ * @note targets are never hard linked, so a file which is changed
+ * in one output directory does not change the other outputs, a
+ * target is written into a temporary file and moved, so that
+ * concurrent templates never read a partial file
+ */
+public final class CAssetWriter
+{
+    /**
+     * cached resources, key is the resource path
+     */
+    private static final Map<String, CAsset> RESOURCES = new ConcurrentHashMap<>();
+    /**
+     * number of written bytes
+     */
+    private static final AtomicLong WRITTEN = new AtomicLong();
+    /**
+     * number of copied bytes
+     */
+    private static final AtomicLong COPIED = new AtomicLong();
+    /**
+     * number of skipped bytes
+     */
+    private static final AtomicLong SKIPPED = new AtomicLong();
+
+    /**
+     * ctor
+     */
+    private CAssetWriter()
+    {
+    }
+
+    /**
+     * writes a resource file into the target file
+     *
+     * @param p_resource resource path
+     * @param p_target target file
+     * @throws IOException on IO error
+     * @throws URISyntaxException on URL syntax error
+     */
+    public static void write( final String p_resource, final Path p_target ) throws IOException, URISyntaxException
+    {
+        final CAsset l_asset = CAssetWriter.asset( p_resource );
+        if ( l_asset.identical( p_target ) )
+        {
+            SKIPPED.addAndGet( l_asset.m_content.length );
+            return;
+        }
+
+        // temporary file is not created by Files.createTempFile, because it restricts the permissions
+        Files.createDirectories( p_target.getParent() );
+        final Path l_temporary = p_target.resolveSibling( p_target.getFileName() + "." + UUID.randomUUID() + ".tmp" );
+        try
+        {
+            if ( CAssetWriter.copy( l_asset, l_temporary ) )
+                COPIED.addAndGet( l_asset.m_content.length );
+            else
+                WRITTEN.addAndGet( l_asset.m_content.length );
+
+            CAssetWriter.move( l_temporary, p_target );
+            l_asset.m_copy = p_target;
+        }
+        finally
+        {
+            Files.deleteIfExists( l_temporary );
+        }
+    }
+
+    /**
+     * returns the statistic of the asset writer since the last reset
+     *
+     * @return map with number of cached resources and
+     * the written, copied and skipped bytes
+     */
+    public static Map<String, Number> statistic()
+    {
+        final Map<String, Number> l_result = new LinkedHashMap<>();
+        l_result.put( CCommon.languagestring( CAssetWriter.class, "statisticcached" ), RESOURCES.size() );
+        l_result.put( CCommon.languagestring( CAssetWriter.class, "statisticwritten" ), WRITTEN.get() );
+        l_result.put( CCommon.languagestring( CAssetWriter.class, "statisticcopied" ), COPIED.get() );
+        l_result.put( CCommon.languagestring( CAssetWriter.class, "statisticskipped" ), SKIPPED.get() );
+        return Collections.unmodifiableMap( l_result );
+    }
+
+    /**
+     * resets the byte counters of the statistic, the cached resources are kept
+     */
+    public static void reset()
+    {
+        WRITTEN.set( 0 );
+        COPIED.set( 0 );
+        SKIPPED.set( 0 );
+    }
+
+    /**
+     * returns the cached resource
+     *
+     * @param p_resource resource path
+     * @return asset
+     * @throws IOException on IO error
+     * @throws URISyntaxException on URL syntax error
+     */
+    private static CAsset asset( final String p_resource ) throws IOException, URISyntaxException
+    {
+        final CAsset l_asset = RESOURCES.get( p_resource );
+        if ( l_asset != null )
+            return l_asset;
+
+        try ( final InputStream l_stream = CCommon.resourceurl( p_resource ).openStream() )
+        {
+            final CAsset l_new = new CAsset( IOUtils.toByteArray( l_stream ) );
+            final CAsset l_existing = RESOURCES.putIfAbsent( p_resource, l_new );
+            return l_existing == null ? l_new : l_existing;
+        }
+    }
+
+    /**
+     * moves the temporary file atomically to the target, if the file
+     * system does not support atomic moves, the target is replaced
+     *
+     * @param p_source source file
+     * @param p_target target file
+     * @throws IOException on IO error
+     */
+    private static void move( final Path p_source, final Path p_target ) throws IOException
+    {
+        try
+        {
+            Files.move( p_source, p_target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( final AtomicMoveNotSupportedException l_exception )
+        {
+            Files.move( p_source, p_target, StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+
+    /**
+     * writes the content into the temporary file, the file
+     * is copied from the last written copy if it is on the
+     * same file store, otherwise the content is written
+     * from memory
+     *
+     * @param p_asset asset
+     * @param p_temporary temporary file, which does not exist
+     * @return true if the file is copied
+     * @throws IOException on IO error
+     */
+    private static boolean copy( final CAsset p_asset, final Path p_temporary ) throws IOException
+    {
+        final Path l_copy = p_asset.m_copy;
+        if ( ( l_copy != null ) && ( Files.isRegularFile( l_copy ) ) && ( Files.size( l_copy ) == p_asset.m_content.length )
+             && ( Files.getFileStore( l_copy ).equals( Files.getFileStore( p_temporary.getParent() ) ) ) )
+        {
+            try (
+                final FileChannel l_input = FileChannel.open( l_copy, StandardOpenOption.READ );
+                final FileChannel l_output = FileChannel.open( p_temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE )
+            )
+            {
+                long l_position = 0;
+                while ( l_position < p_asset.m_content.length )
+                    l_position += l_input.transferTo( l_position, p_asset.m_content.length - l_position, l_output );
+            }
+            return true;
+        }
+
+        try ( final FileChannel l_output = FileChannel.open( p_temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE ) )
+        {
+            final ByteBuffer l_buffer = ByteBuffer.wrap( p_asset.m_content );
+            while ( l_buffer.hasRemaining() )
+                l_output.write( l_buffer );
+        }
+        return false;
+    }
+
+
+    /**
+     * cached resource
+     */
+    private static final class CAsset
+    {
+        /**
+         * content
+         */
+        private final byte[] m_content;
+        /**
+         * hash of the content
+         */
+        private final HashCode m_hash;
+        /**
+         * last written copy
+         */
+        private volatile Path m_copy;
+
+        /**
+         * ctor
+         *
+         * @param p_content content
+         */
+        CAsset( final byte[] p_content )
+        {
+            m_content = p_content;
+            m_hash = Hashing.sha256().hashBytes( p_content );
+        }
+
+        /**
+         * checks if the target has the same content,
+         * the size is checked first, the last
+         * written copy is not hashed again
+         *
+         * @param p_target target file
+         * @return equality
+         * @throws IOException on IO error
+         */
+        final boolean identical( final Path p_target ) throws IOException
+        {
+            if ( ( !Files.isRegularFile( p_target ) ) || ( Files.size( p_target ) != m_content.length ) )
+                return false;
+
+            final Path l_copy = m_copy;
+            return ( ( l_copy != null ) && ( Files.exists( l_copy ) ) && ( Files.isSameFile( l_copy, p_target ) ) )
+                   || ( MoreFiles.asByteSource( p_target ).hash( Hashing.sha256() ).equals( m_hash ) );
+        }
+    }
+
+}
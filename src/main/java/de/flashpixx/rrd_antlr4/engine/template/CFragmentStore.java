@@ -0,0 +1,399 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.engine.template;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+
+/**
+ * sorted store of rendered rule fragments, fragments are
+ * buffered in memory up to a size limit, on reaching the
+ * limit the buffer is sorted and spilled into a temporary
+ * segment file, on walking the buffer and all segments are
+ * merged, so the memory is bounded by the limit and one
+ * fragment per segment independent of the grammar size
+ */
+public final class CFragmentStore implements Closeable
+{
+    /**
+     * default number of buffered characters
+     */
+    public static final int SPILLSIZE = 4 * 1024 * 1024;
+    /**
+     * order of the fragments, grammar and rule case-insensitive,
+     * on equal ignoring case by the case and on equal keys
+     * by the insert sequence
+     */
+    private static final Comparator<CFragment> ORDER = Comparator.<CFragment, String>comparing( i -> i.m_grammar, String.CASE_INSENSITIVE_ORDER )
+                                                                 .thenComparing( i -> i.m_grammar )
+                                                                 .thenComparing( i -> i.m_rule, String.CASE_INSENSITIVE_ORDER )
+                                                                 .thenComparing( i -> i.m_rule )
+                                                                 .thenComparingLong( i -> i.m_sequence );
+    /**
+     * number of buffered characters until spilling
+     */
+    private final long m_spillsize;
+    /**
+     * buffered fragments
+     */
+    private final List<CFragment> m_buffer = new ArrayList<>();
+    /**
+     * spilled segment files
+     */
+    private final List<Path> m_segments = new ArrayList<>();
+    /**
+     * number of buffered characters
+     */
+    private long m_buffered;
+    /**
+     * insert sequence
+     */
+    private long m_sequence;
+
+    /**
+     * ctor
+     */
+    public CFragmentStore()
+    {
+        this( SPILLSIZE );
+    }
+
+    /**
+     * ctor
+     *
+     * @param p_spillsize number of buffered characters until spilling
+     */
+    public CFragmentStore( final long p_spillsize )
+    {
+        m_spillsize = p_spillsize;
+    }
+
+    /**
+     * adds a fragment, a fragment with the same
+     * grammar and rule overwrites the previous one
+     *
+     * @param p_grammar grammar name
+     * @param p_rule rule name
+     * @param p_fragment rendered fragment
+     * @throws IOException on spilling error
+     */
+    public final void put( final String p_grammar, final String p_rule, final String p_fragment ) throws IOException
+    {
+        m_buffer.add( new CFragment( p_grammar, p_rule, p_fragment, m_sequence++ ) );
+        m_buffered += p_grammar.length() + p_rule.length() + p_fragment.length();
+
+        if ( m_buffered >= m_spillsize )
+            this.spill();
+    }
+
+    /**
+     * number of spilled segments
+     *
+     * @return segment number
+     */
+    public final int segments()
+    {
+        return m_segments.size();
+    }
+
+    /**
+     * walks over all fragments sorted by grammar and rule
+     *
+     * @param p_walker walker, which is called on each fragment
+     * @param p_output output
+     * @param p_separator separator between the grammars
+     * @throws IOException on reading or writing error
+     */
+    public final void walk( final IWalker p_walker, final Writer p_output, final String p_separator ) throws IOException
+    {
+        final List<DataInputStream> l_streams = new ArrayList<>();
+        try
+        {
+            m_buffer.sort( ORDER );
+            final List<Iterator<CFragment>> l_iterators = new ArrayList<>();
+            l_iterators.add( m_buffer.iterator() );
+            for ( final Path l_path : m_segments )
+            {
+                final DataInputStream l_stream = new DataInputStream( new BufferedInputStream( Files.newInputStream( l_path ) ) );
+                l_streams.add( l_stream );
+                l_iterators.add( new CSegment( l_stream ) );
+            }
+
+            final PeekingIterator<CFragment> l_fragments = Iterators.peekingIterator( Iterators.mergeSorted( l_iterators, ORDER ) );
+            String l_grammar = null;
+            boolean l_first = true;
+            while ( l_fragments.hasNext() )
+            {
+                final CFragment l_fragment = l_fragments.next();
+
+                // a later fragment with the same key overwrites
+                if ( ( l_fragments.hasNext() ) && ( l_fragment.samekey( l_fragments.peek() ) ) )
+                    continue;
+
+                if ( !l_fragment.m_grammar.equals( l_grammar ) )
+                {
+                    if ( l_grammar != null )
+                        p_output.write( p_separator );
+                    l_grammar = l_fragment.m_grammar;
+                    l_first = true;
+                }
+
+                p_walker.accept( l_fragment, l_first, ( !l_fragments.hasNext() ) || ( !l_fragments.peek().m_grammar.equals( l_grammar ) ) );
+                l_first = false;
+            }
+        }
+        catch ( final UncheckedIOException l_exception )
+        {
+            throw l_exception.getCause();
+        }
+        finally
+        {
+            for ( final DataInputStream l_stream : l_streams )
+                l_stream.close();
+        }
+    }
+
+    @Override
+    public final void close() throws IOException
+    {
+        m_buffer.clear();
+        m_buffered = 0;
+
+        for ( final Path l_path : m_segments )
+            Files.deleteIfExists( l_path );
+        m_segments.clear();
+    }
+
+    /**
+     * sorts the buffer and writes it into a segment file
+     *
+     * @throws IOException on writing error
+     */
+    private void spill() throws IOException
+    {
+        m_buffer.sort( ORDER );
+
+        final Path l_segment = Files.createTempFile( "rrd-antlr4", ".segment" );
+        m_segments.add( l_segment );
+        // segments of a store, which is not closed because the process is terminated, are removed on exit
+        l_segment.toFile().deleteOnExit();
+        try ( final DataOutputStream l_stream = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( l_segment ) ) ) )
+        {
+            l_stream.writeInt( m_buffer.size() );
+            for ( final CFragment l_item : m_buffer )
+            {
+                final byte[] l_fragment = l_item.m_fragment.getBytes( StandardCharsets.UTF_8 );
+                l_stream.writeUTF( l_item.m_grammar );
+                l_stream.writeUTF( l_item.m_rule );
+                l_stream.writeLong( l_item.m_sequence );
+                l_stream.writeInt( l_fragment.length );
+                l_stream.write( l_fragment );
+            }
+        }
+
+        m_buffer.clear();
+        m_buffered = 0;
+    }
+
+
+    /**
+     * walker of the fragments
+     */
+    @FunctionalInterface
+    public interface IWalker
+    {
+        /**
+         * is called on each fragment
+         *
+         * @param p_fragment fragment
+         * @param p_first first fragment of the grammar
+         * @param p_last last fragment of the grammar
+         * @throws IOException on writing error
+         */
+        void accept( final CFragment p_fragment, final boolean p_first, final boolean p_last ) throws IOException;
+    }
+
+
+    /**
+     * rendered fragment of a rule
+     */
+    public static final class CFragment
+    {
+        /**
+         * grammar name
+         */
+        private final String m_grammar;
+        /**
+         * rule name
+         */
+        private final String m_rule;
+        /**
+         * rendered fragment
+         */
+        private final String m_fragment;
+        /**
+         * insert sequence
+         */
+        private final long m_sequence;
+
+        /**
+         * ctor
+         *
+         * @param p_grammar grammar name
+         * @param p_rule rule name
+         * @param p_fragment rendered fragment
+         * @param p_sequence insert sequence
+         */
+        private CFragment( final String p_grammar, final String p_rule, final String p_fragment, final long p_sequence )
+        {
+            m_grammar = p_grammar;
+            m_rule = p_rule;
+            m_fragment = p_fragment;
+            m_sequence = p_sequence;
+        }
+
+        /**
+         * returns the grammar name
+         *
+         * @return grammar name
+         */
+        public final String grammar()
+        {
+            return m_grammar;
+        }
+
+        /**
+         * returns the rule name
+         *
+         * @return rule name
+         */
+        public final String rule()
+        {
+            return m_rule;
+        }
+
+        /**
+         * returns the rendered fragment
+         *
+         * @return fragment
+         */
+        public final String fragment()
+        {
+            return m_fragment;
+        }
+
+        /**
+         * checks if grammar and rule are equal
+         *
+         * @param p_fragment other fragment
+         * @return equality
+         */
+        private boolean samekey( final CFragment p_fragment )
+        {
+            return m_grammar.equals( p_fragment.m_grammar ) && m_rule.equals( p_fragment.m_rule );
+        }
+
+        @Override
+        public final String toString()
+        {
+            return m_grammar + "." + m_rule;
+        }
+    }
+
+
+    /**
+     * sequential reader of a segment file
+     */
+    private static final class CSegment implements Iterator<CFragment>
+    {
+        /**
+         * input stream
+         */
+        private final DataInputStream m_stream;
+        /**
+         * number of remaining fragments
+         */
+        private int m_remaining;
+
+        /**
+         * ctor
+         *
+         * @param p_stream input stream
+         * @throws IOException on reading error
+         */
+        CSegment( final DataInputStream p_stream ) throws IOException
+        {
+            m_stream = p_stream;
+            m_remaining = p_stream.readInt();
+        }
+
+        @Override
+        public final boolean hasNext()
+        {
+            return m_remaining > 0;
+        }
+
+        @Override
+        public final CFragment next()
+        {
+            if ( m_remaining <= 0 )
+                throw new NoSuchElementException();
+
+            try
+            {
+                final String l_grammar = m_stream.readUTF();
+                final String l_rule = m_stream.readUTF();
+                final long l_sequence = m_stream.readLong();
+                final byte[] l_fragment = new byte[m_stream.readInt()];
+                m_stream.readFully( l_fragment );
+
+                m_remaining--;
+                return new CFragment( l_grammar, l_rule, new String( l_fragment, StandardCharsets.UTF_8 ), l_sequence );
+            }
+            catch ( final IOException l_exception )
+            {
+                throw new UncheckedIOException( l_exception );
+            }
+        }
+    }
+
+}
@@ -23,9 +23,9 @@
 
 package de.flashpixx.rrd_antlr4.engine.template;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
+import com.google.common.collect.ImmutableMap;
 import de.flashpixx.rrd_antlr4.CCommon;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarCharacterClass;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarChoice;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarCollection;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarComplexElement;
@@ -34,18 +34,20 @@ import de.flashpixx.rrd_antlr4.antlr.IGrammarGroup;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarIdentifier;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarSimpleElement;
 import org.apache.commons.lang3.StringEscapeUtils;
-import org.apache.commons.lang3.StringUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.Objects;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 
 /**
@@ -53,14 +55,44 @@ import java.util.stream.IntStream;
  */
 final class CHTML extends IBaseTemplate
 {
+    /**
+     * static JavaScript and CSS files
+     */
+    private static final List<String> ASSETS = Collections.unmodifiableList( Arrays.asList(
+        "layout.css",
+        "action.js",
+        "lib/jquery/dist/jquery.min.js",
+        "lib/tether/dist/js/tether.min.js",
+        "lib/bootstrap/dist/js/bootstrap.min.js",
+        "lib/bootstrap/dist/css/bootstrap.min.css",
+        "lib/railroad-diagrams/railroad-diagrams.css"
+    ) );
+    /**
+     * JavaScript files, which render the diagrams and the rule
+     * list in the browser, the SVG output does not need them
+     */
+    private static final List<String> DIAGRAMSCRIPTS = Collections.unmodifiableList( Arrays.asList(
+        "lib/railroad-diagrams/railroad-diagrams.js",
+        "diagram.js"
+    ) );
+    /**
+     * shared asset directory or null
+     * if the assets are copied into each output directory
+     */
+    private final Path m_assets;
+    /**
+     * railroad layout for static SVG diagrams or null
+     * if the diagrams are created by JavaScript
+     */
+    private final CRailroad m_railroad;
     /**
      * main grammar
      */
     private IGrammarComplexElement m_grammar;
     /**
-     * rules table
+     * rendered rules
      */
-    private final Table<String, String, String> m_rules = HashBasedTable.create();
+    private final CFragmentStore m_rules = new CFragmentStore();
 
     /**
      * ctor
@@ -69,7 +101,21 @@ final class CHTML extends IBaseTemplate
      */
     CHTML( final String p_name )
     {
-        super( p_name, "index.htm" );
+        this( p_name, null, false );
+    }
+
+    /**
+     * ctor
+     *
+     * @param p_name template name
+     * @param p_baseoutputdirectory base output directory for shared assets or null
+     * @param p_svg diagrams are written as static SVG
+     */
+    CHTML( final String p_name, final File p_baseoutputdirectory, final boolean p_svg )
+    {
+        super( p_name, "html", "index.htm" );
+        m_railroad = p_svg ? new CRailroad( CCommon.languagestring( this, "htmlnegation" ) ) : null;
+        m_assets = p_baseoutputdirectory == null ? null : Paths.get( p_baseoutputdirectory.toString(), this.name(), ITemplate.ASSETS );
     }
 
     @Override
@@ -80,78 +126,57 @@ final class CHTML extends IBaseTemplate
     @Override
     public final void postprocess( final Path p_output ) throws IOException, URISyntaxException
     {
-        // copy JavaScript and CSS elements
-        this.copy( "index.htm", p_output );
-        this.copy( "layout.css", p_output );
-        this.copy( "action.js", p_output );
-        this.copy( "lib/jquery/dist/jquery.min.js", p_output );
-        this.copy( "lib/tether/dist/js/tether.min.js", p_output );
-        this.copy( "lib/bootstrap/dist/js/bootstrap.min.js", p_output );
-        this.copy( "lib/bootstrap/dist/css/bootstrap.min.css", p_output );
-        this.copy( "lib/railroad-diagrams/railroad-diagrams.css", p_output );
-        this.copy( "lib/railroad-diagrams/railroad-diagrams.js", p_output );
-
-        // replace content
-        this.replace(
-                new File( p_output.toString(), "/index.htm" ),
-
-                // set HTML language code
-                "%language%", Locale.getDefault().getLanguage(),
-
-                // set HTML title
-                "%title%", CCommon.languagestring( this, "htmltitle", m_grammar.id() ),
-
-                // set grammar documentation
-                "%grammardocumentation%", m_grammar.documentation(),
-
-                // set menu with rule list
-                "%rulelist%", StringUtils.join(
-                        m_rules.rowMap().entrySet().stream().sorted( ( n, m ) -> n.getKey().compareToIgnoreCase( m.getKey() ) )
-                               .map( i -> MessageFormat.format(
-                                       "<div class=\"rulelist\" id=\"list_{0}\">\n"
-                                       + "<h5 data-ruleset=\"rules_{0}\" class=\"grammarlisthead\">{0}</h5>\n"
-                                       + "<ul class=\"nav sidebar-nav\">\n{1}</ul>\n"
-                                       + "</div>",
-                                       i.getKey(),
-                                       StringUtils.join(
-                                               i.getValue().keySet().stream()
-                                                .sorted( String::compareToIgnoreCase )
-                                                .map( j -> MessageFormat.format( "<li><a href=\"#{0}\">{1}</a></li>\n", CHTML.linkhash( j ),
-                                                                                 j.toLowerCase()
-                                                ) )
-                                                .collect( Collectors.toList() ),
-                                               ""
-                                       )
-                                     )
-                               )
-                               .collect( Collectors.toList() ),
-                        "\n\n"
-                ),
-
-                // set rules of diagrams
-                "%rules%", StringUtils.join(
-                        m_rules.rowMap().entrySet().stream().sorted( ( n, m ) -> n.getKey().compareToIgnoreCase( m.getKey() ) )
-                               .map( i -> MessageFormat.format(
-                                       "<div class=\"ruleelements\" id=\"rules_{0}\">"
-                                       + "<h2>{0}</h2>"
-                                       + "\n{1}\n"
-                                       + "</div>",
-                                       i.getKey(),
-                                       StringUtils.join(
-                                               i.getValue().entrySet().stream()
-                                                .sorted( ( n, m ) -> n.getKey().compareToIgnoreCase( m.getKey() ) )
-                                                .map( Map.Entry::getValue )
-                                                .collect( Collectors.toList() ),
-                                               "\n"
-                                       ).trim()
-                                     )
-                               )
-                               .collect( Collectors.toList() ),
-                        "\n\n"
-                )
+        // copy JavaScript and CSS elements into the output or the shared directory
+        for ( final String l_asset : ASSETS )
+            this.copy( l_asset, m_assets == null ? p_output : m_assets );
+        if ( m_railroad == null )
+            for ( final String l_asset : DIAGRAMSCRIPTS )
+                this.copy( l_asset, m_assets == null ? p_output : m_assets );
+
+        // write index with content
+        this.write(
+                "index.htm",
+                p_output,
+                ImmutableMap.<String, CTemplateFile.ISlot>builder()
+                        // set relative path of the assets
+                        .put( "%assets%", i -> i.write( this.assets( p_output ) ) )
+
+                        // set diagram scripts, which are not needed by static SVG diagrams
+                        .put(
+                            "%diagramscripts%",
+                            i -> i.write(
+                                m_railroad != null
+                                ? ""
+                                : DIAGRAMSCRIPTS.stream()
+                                                .map( j -> MessageFormat.format( "<script src = \"{0}{1}\" defer></script >", this.assets( p_output ), j ) )
+                                                .collect( Collectors.joining( "\n    " ) )
+                            )
+                        )
+
+                        // set HTML language code
+                        .put( "%language%", i -> i.write( Locale.getDefault().getLanguage() ) )
+
+                        // set HTML title
+                        .put( "%title%", i -> i.write( CCommon.languagestring( this, "htmltitle", m_grammar.id() ) ) )
+
+                        // set grammar documentation
+                        .put( "%grammardocumentation%", i -> i.write( m_grammar.documentation() ) )
+
+                        // set menu with rule list
+                        .put( "%rulelist%", i -> m_rules.walk( ( j, k, l ) -> this.rulelist( j, k, l, i ), i, "\n\n" ) )
+
+                        // set rules of diagrams
+                        .put( "%rules%", i -> m_rules.walk( ( j, k, l ) -> CHTML.rules( j, k, l, i ), i, "\n\n" ) )
+                        .build()
         );
     }
 
+    @Override
+    public final void close() throws IOException
+    {
+        m_rules.close();
+    }
+
     @Override
     public final IGrammarComplexElement grammar( final IGrammarComplexElement p_grammar )
     {
@@ -165,115 +190,262 @@ final class CHTML extends IBaseTemplate
     @Override
     public final IGrammarComplexElement element( final IGrammarComplexElement p_grammar, final IGrammarComplexElement p_element )
     {
-        m_rules.put(
-                p_grammar.id(),
-                p_element.id(),
-                MessageFormat.format(
-                        "<div class=\"ruledetail\">"
-                        + "<a name=\"{0}\"></a>"
-                        + "<h5>{1}</h5>"
-                        + "<p>{2}</p>"
-                        + "<p><script>"
-                        + "var l_rrd = Diagram({3}).toSVG();"
-                        + "l_rrd.id = \"svg_{0}\";"
-                        + "var l_script = document.getElementsByTagName(\"script\");"
-                        + "l_script[l_script.length - 1].parentNode.appendChild(l_rrd);"
-                        + "</script></p>"
-                        + "</div>",
-                        CHTML.linkhash( p_element.id() ),
-                        p_element.id(),
-                        p_element.documentation(),
-                        this.map( p_element )
-                )
-        );
+        final String l_hash = CHTML.linkhash( p_element.id() );
+        final StringBuilder l_output = new StringBuilder()
+            .append( "<div class=\"ruledetail\"><a name=\"" ).append( l_hash ).append( "\"></a>" )
+            .append( "<h5>" ).append( p_element.id() ).append( "</h5>" )
+            .append( "<p>" ).append( p_element.documentation() ).append( "</p>" );
 
+        if ( m_railroad == null )
+        {
+            // the diagram definition is inert JSON data, it is built by the diagram script if it becomes visible
+            l_output.append( "<p class=\"diagram\" data-diagram=\"svg_" ).append( l_hash ).append( "\"><script type=\"application/json\">[\"Diagram\"" );
+            final int l_start = l_output.length();
+            l_output.append( ", " );
+            this.map( p_element, l_output );
+            if ( l_output.length() == l_start + 2 )
+                l_output.setLength( l_start );
+            l_output.append( "]</script></p></div>" );
+        }
+        else
+        {
+            l_output.append( "<p>" );
+            m_railroad.diagram( p_element, "svg_" + l_hash, l_output );
+            l_output.append( "</p></div>" );
+        }
+
+        try
+        {
+            m_rules.put( p_grammar.id(), p_element.id(), l_output.toString() );
+        }
+        catch ( final IOException l_exception )
+        {
+            throw new UncheckedIOException( l_exception );
+        }
         return p_element;
     }
 
 
     @Override
-    protected final String group( final IGrammarGroup p_element )
+    protected final void group( final IGrammarGroup p_element, final StringBuilder p_output )
     {
-        return MessageFormat.format( "({0})", this.map( p_element.element() ) );
+        this.map( p_element.element(), p_output );
     }
 
     @Override
-    protected final String choice( final IGrammarChoice p_element )
+    protected final void choice( final IGrammarChoice p_element, final StringBuilder p_output )
     {
-        final String l_child = StringUtils.join(
-                IntStream
-                        .range( 0, p_element.get().size() )
-                        .boxed()
-                        .map( i -> this.map( p_element.get().get( i ) ) )
-                        .filter( Objects::nonNull )
-                        .collect( Collectors.toList() ),
-                ", "
-        );
+        if ( p_element.get().size() == 1 )
+        {
+            this.map( p_element.get(), ", ", p_output );
+            return;
+        }
 
-        return p_element.get().size() == 1 ? l_child : MessageFormat.format( "Choice({0}, {1})", 0, l_child );
+        p_output.append( "[\"Choice\", 0" );
+        this.arguments( p_element.get(), p_output );
+        p_output.append( ']' );
     }
 
     @Override
-    protected final String sequence( final IGrammarCollection p_element )
+    protected final void sequence( final IGrammarCollection p_element, final StringBuilder p_output )
     {
-        final String l_child = StringUtils.join(
-                p_element.get().stream()
-                         .map( this::map )
-                         .filter( Objects::nonNull )
-                         .collect( Collectors.toList() ),
-                ", "
-        );
+        if ( p_element.get().size() == 1 )
+        {
+            this.map( p_element.get(), ", ", p_output );
+            return;
+        }
 
-        return p_element.get().size() == 1 ? l_child : MessageFormat.format( "Sequence({0})", l_child );
+        p_output.append( "[\"Sequence\"" );
+        this.arguments( p_element.get(), p_output );
+        p_output.append( ']' );
     }
 
     @Override
-    protected final String terminalvalue( final IGrammarSimpleElement<?> p_element )
+    protected final void terminalvalue( final IGrammarSimpleElement<?> p_element, final StringBuilder p_output )
     {
-        return MessageFormat.format(
-                "Terminal(''{0}'', ''#{1}'')",
-                StringEscapeUtils.escapeEcmaScript( CHTML.removequotes( p_element.get() ) ),
-                CHTML.linkhash( p_element.get() )
-        );
+        CHTML.writeterminal( StringEscapeUtils.escapeJson( CHTML.removequotes( p_element.get() ) ), p_element.get(), p_output );
     }
 
     @Override
-    protected final String nonterminal( final IGrammarIdentifier p_element )
+    protected final void characterclass( final IGrammarCharacterClass p_element, final StringBuilder p_output )
     {
-        return MessageFormat.format(
-                "NonTerminal(''{0}'', ''#{1}'')",
-                CHTML.removequotes( p_element.get() ),
-                CHTML.linkhash( p_element.get() )
+        CHTML.writeterminal(
+            StringEscapeUtils.escapeJson(
+                p_element.category() == null
+                ? p_element.notation()
+                : p_element.category().description()
+            ),
+            null,
+            p_output
         );
     }
 
     @Override
-    protected final String negation( final IGrammarElement p_element )
+    protected final void nonterminal( final IGrammarIdentifier p_element, final StringBuilder p_output )
     {
-        return MessageFormat.format(
-                "Sequence( Comment(''{0}''), {1} )",
-                StringEscapeUtils.escapeEcmaScript( CCommon.languagestring( this, "htmlnegation" ) ),
-                this.map( p_element )
-        );
+        p_output.append( "[\"NonTerminal\", \"" ).append( StringEscapeUtils.escapeJson( CHTML.removequotes( p_element.get() ) ) )
+                .append( "\", \"#" ).append( CHTML.linkhash( p_element.get() ) ).append( "\"]" );
     }
 
     @Override
-    protected final String cardinality( final IGrammarElement.ECardinality p_cardinality, final String p_element )
+    protected final void negation( final IGrammarElement p_element, final StringBuilder p_output )
+    {
+        p_output.append( "[\"Sequence\", [\"Comment\", \"" ).append( StringEscapeUtils.escapeJson( CCommon.languagestring( this, "htmlnegation" ) ) ).append( "\"], " );
+        this.map( p_element, p_output );
+        p_output.append( ']' );
+    }
+
+    @Override
+    protected final void opencardinality( final IGrammarElement.ECardinality p_cardinality, final StringBuilder p_output )
     {
         switch ( p_cardinality )
         {
             case OPTIONAL:
-                return MessageFormat.format( "Optional({0})", p_element );
+                p_output.append( "[\"Optional\", " );
+                break;
 
             case ZEROORMORE:
-                return MessageFormat.format( "ZeroOrMore({0})", p_element );
+                p_output.append( "[\"ZeroOrMore\", " );
+                break;
 
             case ONEORMORE:
-                return MessageFormat.format( "OneOrMore({0})", p_element );
+                p_output.append( "[\"OneOrMore\", " );
+                break;
 
             default:
-                return p_element;
         }
     }
 
+    @Override
+    protected final void closecardinality( final IGrammarElement.ECardinality p_cardinality, final StringBuilder p_output, final int p_start )
+    {
+        if ( p_cardinality != IGrammarElement.ECardinality.NONE )
+            p_output.append( ']' );
+    }
+
+    /**
+     * returns the link prefix of the assets
+     *
+     * @param p_output output directory
+     * @return empty string or relative path to the shared assets with trailing slash
+     */
+    private String assets( final Path p_output )
+    {
+        return m_assets == null
+               ? ""
+               : p_output.toAbsolutePath().normalize().relativize( m_assets.toAbsolutePath().normalize() ).toString().replace( File.separatorChar, '/' ) + "/";
+    }
+
+    /**
+     * writes an entry of the rule list
+     *
+     * @param p_fragment rule fragment
+     * @param p_first first rule of the grammar
+     * @param p_last last rule of the grammar
+     * @param p_output output
+     * @throws IOException on writing error
+     */
+    private void rulelist( final CFragmentStore.CFragment p_fragment, final boolean p_first, final boolean p_last, final Writer p_output ) throws IOException
+    {
+        // the SVG pages work without scripts, so the entries are written as plain list items
+        if ( m_railroad != null )
+        {
+            p_output.write(
+                p_first
+                ? MessageFormat.format(
+                    "<div class=\"rulelist\" id=\"list_{0}\">\n"
+                    + "<h5 data-ruleset=\"rules_{0}\" class=\"grammarlisthead\">{0}</h5>\n"
+                    + "<ul class=\"nav sidebar-nav\">\n",
+                    p_fragment.grammar()
+                )
+                : "\n"
+            );
+
+            p_output.write( MessageFormat.format(
+                "<li><a href=\"#{0}\">{1}</a></li>",
+                CHTML.linkhash( p_fragment.rule() ), StringEscapeUtils.escapeHtml4( p_fragment.rule().toLowerCase() )
+            ) );
+
+            if ( p_last )
+                p_output.write( "\n</ul>\n</div>" );
+            return;
+        }
+
+        // the entries are written as data, the action script creates only the visible list items
+        p_output.write(
+            p_first
+            ? MessageFormat.format(
+                "<div class=\"rulelist\" id=\"list_{0}\">\n"
+                + "<h5 data-ruleset=\"rules_{0}\" class=\"grammarlisthead\">{0}</h5>\n"
+                + "<ul class=\"nav sidebar-nav\"></ul>\n"
+                + "<script type=\"application/json\">[\n",
+                p_fragment.grammar()
+            )
+            : ",\n"
+        );
+
+        p_output.write( MessageFormat.format(
+            "[\"{0}\", \"{1}\"]",
+            CHTML.linkhash( p_fragment.rule() ), StringEscapeUtils.escapeJson( p_fragment.rule().toLowerCase() )
+        ) );
+
+        if ( p_last )
+            p_output.write( "\n]</script>\n</div>" );
+    }
+
+    /**
+     * writes a rule diagram
+     *
+     * @param p_fragment rule fragment
+     * @param p_first first rule of the grammar
+     * @param p_last last rule of the grammar
+     * @param p_output output
+     * @throws IOException on writing error
+     */
+    private static void rules( final CFragmentStore.CFragment p_fragment, final boolean p_first, final boolean p_last, final Writer p_output ) throws IOException
+    {
+        p_output.write(
+            p_first
+            ? MessageFormat.format( "<div class=\"ruleelements\" id=\"rules_{0}\"><h2>{0}</h2>\n", p_fragment.grammar() )
+            : "\n"
+        );
+
+        p_output.write( p_fragment.fragment() );
+
+        if ( p_last )
+            p_output.write( "\n</div>" );
+    }
+
+    /**
+     * writes the elements as arguments of a diagram
+     * constructor, each argument is prefixed by a comma,
+     * so an empty list writes nothing
+     *
+     * @param p_elements elements
+     * @param p_output output
+     */
+    private void arguments( final List<IGrammarElement> p_elements, final StringBuilder p_output )
+    {
+        if ( p_elements.isEmpty() )
+            return;
+
+        p_output.append( ", " );
+        this.map( p_elements, ", ", p_output );
+    }
+
+    /**
+     * writes a terminal
+     *
+     * @param p_text escaped text
+     * @param p_link link value or null if the terminal has no anchor
+     * @param p_output output
+     */
+    private static void writeterminal( final String p_text, final String p_link, final StringBuilder p_output )
+    {
+        p_output.append( "[\"Terminal\", \"" ).append( p_text );
+        if ( p_link != null )
+            p_output.append( "\", \"#" ).append( CHTML.linkhash( p_link ) );
+        p_output.append( "\"]" );
+    }
+
 }
@@ -23,9 +23,9 @@
 
 package de.flashpixx.rrd_antlr4.engine.template;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
+import com.google.common.collect.ImmutableMap;
 import de.flashpixx.rrd_antlr4.CCommon;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarCharacterClass;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarChoice;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarCollection;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarComplexElement;
@@ -33,15 +33,13 @@ import de.flashpixx.rrd_antlr4.antlr.IGrammarElement;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarGroup;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarIdentifier;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarSimpleElement;
-import org.apache.commons.lang3.StringUtils;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.text.MessageFormat;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 
 
@@ -55,9 +53,9 @@ final class CLaTeXSyntax extends IBaseTemplate
      */
     private IGrammarComplexElement m_grammar;
     /**
-     * rules table for text representation
+     * rendered rules for text representation
      */
-    private final Table<String, String, String> m_rules = HashBasedTable.create();
+    private final CFragmentStore m_rules = new CFragmentStore();
 
     /**
      * ctor
@@ -80,42 +78,29 @@ final class CLaTeXSyntax extends IBaseTemplate
     @Override
     public final void postprocess( final Path p_output ) throws IOException, URISyntaxException
     {
-        this.copy( "index.tex", p_output );
-
-        // replace content
-        this.replace(
-                new File( p_output.toString(), "/index.tex" ),
-
-                // set title
-                "-grammartitle-", CCommon.languagestring( this, "section", m_grammar.id() ),
-
-                // set grammar documentation
-                "-grammardocumentation-", m_grammar.documentation(),
-
-                // set text rules
-                "-rules-", StringUtils.join(
-                        m_rules.rowMap().entrySet().stream().sorted( ( n, m ) -> n.getKey().compareToIgnoreCase( m.getKey() ) )
-                               .map( i -> MessageFormat.format(
-                                       "\\subsection*'{'{0}'}'\n"
-                                       + "\\begin'{'grammar'}'"
-                                       + "\n{1}\n"
-                                       + "\\end'{'grammar'}'",
-                                       CCommon.languagestring( this, "subsectiongrammar", i.getKey() ),
-                                       StringUtils.join(
-                                               i.getValue().entrySet().stream()
-                                                .sorted( ( n, m ) -> n.getKey().compareToIgnoreCase( m.getKey() ) )
-                                                .map( Map.Entry::getValue )
-                                                .collect( Collectors.toList() ),
-                                               "\n"
-                                       ).trim()
-                                     )
-                               )
-                               .collect( Collectors.toList() ),
-                        "\n\n"
+        // write index with content
+        this.write(
+                "index.tex",
+                p_output,
+                ImmutableMap.<String, CTemplateFile.ISlot>of(
+                        // set title
+                        "-grammartitle-", i -> i.write( CCommon.languagestring( this, "section", m_grammar.id() ) ),
+
+                        // set grammar documentation
+                        "-grammardocumentation-", i -> i.write( m_grammar.documentation() ),
+
+                        // set text rules
+                        "-rules-", i -> m_rules.walk( ( j, k, l ) -> this.rules( j, k, l, i ), i, "\n\n" )
                 )
         );
     }
 
+    @Override
+    public final void close() throws IOException
+    {
+        m_rules.close();
+    }
+
     @Override
     public final IGrammarComplexElement grammar( final IGrammarComplexElement p_grammar )
     {
@@ -129,98 +114,205 @@ final class CLaTeXSyntax extends IBaseTemplate
     @Override
     public final IGrammarComplexElement element( final IGrammarComplexElement p_grammar, final IGrammarComplexElement p_element )
     {
-        m_rules.put(
-                p_grammar.id(),
-                p_element.id(),
-                MessageFormat.format(
-                        "<{0}> ::= {1}\n",
-                        p_element.id(),
-                        this.map( p_element )
-                )
-        );
+        final StringBuilder l_output = new StringBuilder().append( '<' ).append( p_element.id() ).append( "> ::= " );
+        this.map( p_element, l_output );
+
+        try
+        {
+            m_rules.put( p_grammar.id(), p_element.id(), l_output.append( '\n' ).toString() );
+        }
+        catch ( final IOException l_exception )
+        {
+            throw new UncheckedIOException( l_exception );
+        }
         return p_element;
     }
 
     @Override
-    protected final String cardinality( final IGrammarElement.ECardinality p_cardinality, final String p_element )
+    protected final void opencardinality( final IGrammarElement.ECardinality p_cardinality, final StringBuilder p_output )
     {
-        switch ( p_cardinality )
-        {
-            case OPTIONAL:
-                return MessageFormat.format( "{0}{1}", p_element, "?" ).trim();
+    }
 
-            case ZEROORMORE:
-                return MessageFormat.format( "{0}{1}", p_element, "*" ).trim();
+    @Override
+    protected final void closecardinality( final IGrammarElement.ECardinality p_cardinality, final StringBuilder p_output, final int p_start )
+    {
+        if ( p_cardinality == IGrammarElement.ECardinality.NONE )
+            return;
 
-            case ONEORMORE:
-                return MessageFormat.format( "{0}{1}", p_element, "+" ).trim();
+        p_output.append( p_cardinality );
+        CLaTeXSyntax.trim( p_output, p_start );
+    }
 
-            default:
-                return p_element;
-        }
+    @Override
+    protected final void sequence( final IGrammarCollection p_element, final StringBuilder p_output )
+    {
+        final boolean l_bracket = p_element.get().size() != 1;
+        if ( l_bracket )
+            p_output.append( "[ " );
+
+        final int l_start = p_output.length();
+        this.map( p_element.get(), " ", p_output );
+        CLaTeXSyntax.trim( p_output, l_start );
+
+        if ( l_bracket )
+            p_output.append( " ]" );
     }
 
     @Override
-    protected final String sequence( final IGrammarCollection p_element )
+    protected final void choice( final IGrammarChoice p_element, final StringBuilder p_output )
     {
-        final String l_child = StringUtils.join( p_element.get().stream().map( this::map ).collect( Collectors.toList() ), " " ).trim();
-        return p_element.get().size() == 1 ? l_child : MessageFormat.format( "[ {0} ]", l_child );
+        this.map( p_element.get(), " \\alt ", p_output );
     }
 
     @Override
-    protected final String choice( final IGrammarChoice p_element )
+    protected final void group( final IGrammarGroup p_element, final StringBuilder p_output )
     {
-        return StringUtils.join(
-                p_element.get().stream()
-                         .map( this::map )
-                         .collect( Collectors.toList() ),
-                " \\alt "
-        );
+        p_output.append( "[ " );
+        this.map( p_element.element(), p_output );
+        p_output.append( " ]" );
     }
 
     @Override
-    protected final String group( final IGrammarGroup p_element )
+    protected final void terminalvalue( final IGrammarSimpleElement<?> p_element, final StringBuilder p_output )
     {
-        return MessageFormat.format( "[ {0} ]", this.map( p_element.element() ) );
+        p_output.append( '`' );
+        CLaTeXSyntax.escapelatex( p_element.get(), p_output );
+        p_output.append( '\'' );
     }
 
     @Override
-    protected final String terminalvalue( final IGrammarSimpleElement<?> p_element )
+    protected final void characterclass( final IGrammarCharacterClass p_element, final StringBuilder p_output )
     {
-        return MessageFormat.format( "`{0}''", CLaTeXSyntax.escapelatex( p_element.get() ) );
+        if ( p_element.category() == null )
+        {
+            p_output.append( '`' );
+            CLaTeXSyntax.escapelatex( p_element.notation(), p_output );
+            p_output.append( '\'' );
+            return;
+        }
+
+        p_output.append( "\\textit{" );
+        CLaTeXSyntax.escapelatex( p_element.category().description(), p_output );
+        p_output.append( '}' );
     }
 
     @Override
-    protected final String nonterminal( final IGrammarIdentifier p_element )
+    protected final void nonterminal( final IGrammarIdentifier p_element, final StringBuilder p_output )
     {
-        return MessageFormat.format( "<{0}>", CLaTeXSyntax.removequotes( p_element.get() ) );
+        p_output.append( '<' ).append( CLaTeXSyntax.removequotes( p_element.get() ) ).append( '>' );
     }
 
     @Override
-    protected final String negation( final IGrammarElement p_element )
+    protected final void negation( final IGrammarElement p_element, final StringBuilder p_output )
     {
-        return MessageFormat.format( "(\\textit'{'{0}'}' {1})", CCommon.languagestring( this, "latexnegation" ), this.map( p_element ) ).trim();
+        p_output.append( "(\\textit{" ).append( CCommon.languagestring( this, "latexnegation" ) ).append( "} " );
+        this.map( p_element, p_output );
+        p_output.append( ')' );
+    }
+
+    /**
+     * writes a rule within the grammar environment
+     *
+     * @param p_fragment rule fragment
+     * @param p_first first rule of the grammar
+     * @param p_last last rule of the grammar
+     * @param p_output output
+     * @throws IOException on writing error
+     */
+    private void rules( final CFragmentStore.CFragment p_fragment, final boolean p_first, final boolean p_last, final Writer p_output ) throws IOException
+    {
+        p_output.write(
+            p_first
+            ? MessageFormat.format(
+                "\\subsection*'{'{0}'}'\n"
+                + "\\begin'{'grammar'}'\n",
+                CCommon.languagestring( this, "subsectiongrammar", p_fragment.grammar() )
+            )
+            : "\n"
+        );
+
+        if ( !p_last )
+        {
+            p_output.write( p_fragment.fragment() );
+            return;
+        }
+
+        // trailing whitespaces of the last rule are removed like String.trim
+        final String l_fragment = p_fragment.fragment();
+        int l_end = l_fragment.length();
+        while ( ( l_end > 0 ) && ( l_fragment.charAt( l_end - 1 ) <= ' ' ) )
+            l_end--;
+
+        p_output.write( l_fragment, 0, l_end );
+        p_output.write( "\n\\end{grammar}" );
+    }
+
+    /**
+     * removes leading and trailing whitespaces of
+     * the output from a start position like String.trim
+     *
+     * @param p_output output
+     * @param p_start start position
+     */
+    private static void trim( final StringBuilder p_output, final int p_start )
+    {
+        int l_end = p_output.length();
+        while ( ( l_end > p_start ) && ( p_output.charAt( l_end - 1 ) <= ' ' ) )
+            l_end--;
+        p_output.setLength( l_end );
+
+        int l_begin = p_start;
+        while ( ( l_begin < l_end ) && ( p_output.charAt( l_begin ) <= ' ' ) )
+            l_begin++;
+        p_output.delete( p_start, l_begin );
     }
 
     /**
      * escape string with correct LaTeX definition
      *
      * @param p_string input string
-     * @return escaped string
-     * @warning replace uses character sequences / replaceAll regexp string sequences, so use the correct escaping sequence
+     * @param p_output output
      * @see https://en.wikibooks.org/wiki/LaTeX/Special_Characters#Other_symbols
+     * @note ", ~ and ^ are replaced by the syntax package itself
      */
-    private static String escapelatex( final String p_string )
-    {
-        // ", ~ and ^ are replaced by the syntax package itself
-        return CLaTeXSyntax.removequotes( p_string )
-                    .replaceAll( "\\\\",          "\\\\textbackslash " )
-                    .replaceAll( "([\\$\\#&%_])", "\\\\$1" )
-                    .replaceAll( "<",             "\\\\textless " )
-                    .replaceAll( ">",             "\\\\textgreater " )
-                    .replaceAll( "\\{",           "\\\\{" )
-                    .replaceAll( "\\}",           "\\\\}" )
-                    .replaceAll( "\\|",           "\\\\vline\\\\xspace" );
+    private static void escapelatex( final String p_string, final StringBuilder p_output )
+    {
+        final String l_string = CLaTeXSyntax.removequotes( p_string );
+        for ( int i = 0; i < l_string.length(); i++ )
+        {
+            final char l_char = l_string.charAt( i );
+            switch ( l_char )
+            {
+                case '\\':
+                    p_output.append( "\\textbackslash " );
+                    break;
+
+                case '$':
+                case '#':
+                case '&':
+                case '%':
+                case '_':
+                case '{':
+                case '}':
+                    p_output.append( '\\' ).append( l_char );
+                    break;
+
+                case '<':
+                    p_output.append( "\\textless " );
+                    break;
+
+                case '>':
+                    p_output.append( "\\textgreater " );
+                    break;
+
+                case '|':
+                    p_output.append( "\\vline\\xspace" );
+                    break;
+
+                default:
+                    p_output.append( l_char );
+            }
+        }
     }
 
 }
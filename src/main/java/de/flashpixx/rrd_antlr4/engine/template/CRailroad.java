@@ -0,0 +1,875 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.engine.template;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.xml.XmlEscapers;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarCharacterClass;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarChoice;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarComplexElement;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarElement;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarGroup;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarIdentifier;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarNegation;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarRule;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarSequence;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarSimpleElement;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarTerminal;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarVisitor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+
+/**
+ * railroad diagram layout and SVG writer, the layout follows
+ * the railroad-diagrams.js library, so that static diagrams
+ * look like the diagrams, which are created by the browser,
+ * each element is converted into a layout item, which knows
+ * its size, and the items are written top-down into SVG
+ *
+ * @see https://github.com/tabatkins/railroad-diagrams
+ */
+final class CRailroad implements IGrammarVisitor<CRailroad.IItem, Void>
+{
+    /**
+     * vertical separation between items
+     */
+    private static final double VERTICALSEPARATION = 8;
+    /**
+     * radius of the arcs
+     */
+    private static final double ARCRADIUS = 10;
+    /**
+     * width of a character
+     */
+    private static final double CHARWIDTH = 8.5;
+    /**
+     * width of a character within a comment
+     */
+    private static final double COMMENTCHARWIDTH = 7;
+    /**
+     * horizontal space around items, which needs space
+     */
+    private static final double SPACE = 10;
+    /**
+     * padding of the diagram
+     */
+    private static final double PADDING = 20;
+    /**
+     * maximum number of cached layout items
+     */
+    private static final int LAYOUTCACHESIZE = 8192;
+    /**
+     * comment of a negation
+     */
+    private final String m_negation;
+    /**
+     * cache of layout items, key is the structural element,
+     * the items are immutable, so they can be shared, rules,
+     * lexer rules and the grammar are unique, so they are not
+     * cached and do not evict shareable subtrees
+     */
+    private final Cache<IGrammarElement, IItem> m_items = CacheBuilder.newBuilder()
+                                                                      .maximumSize( LAYOUTCACHESIZE )
+                                                                      .build();
+
+    /**
+     * ctor
+     *
+     * @param p_negation comment of a negation
+     */
+    CRailroad( final String p_negation )
+    {
+        m_negation = p_negation;
+    }
+
+    /**
+     * writes the diagram of a rule
+     *
+     * @param p_element rule element
+     * @param p_id id of the SVG element
+     * @param p_output output
+     */
+    final void diagram( final IGrammarElement p_element, final String p_id, final StringBuilder p_output )
+    {
+        final CSequence l_diagram = new CSequence( Arrays.asList( new CStart(), this.item( p_element ), new CEnd() ), false );
+        final double l_width = l_diagram.m_width + 2 * PADDING;
+        final double l_height = l_diagram.m_up + l_diagram.m_height + l_diagram.m_down + 2 * PADDING;
+
+        p_output.append( "<svg class=\"railroad-diagram\" id=\"" ).append( p_id )
+                .append( "\" width=\"" ).append( number( l_width ) ).append( "\" height=\"" ).append( number( l_height ) )
+                .append( "\" viewBox=\"0 0 " ).append( number( l_width ) ).append( ' ' ).append( number( l_height ) ).append( "\">" )
+                .append( "<g transform=\"translate(.5 .5)\">" );
+        l_diagram.format( PADDING, PADDING + l_diagram.m_up, l_diagram.m_width, p_output );
+        p_output.append( "</g></svg>" );
+    }
+
+    /**
+     * returns the layout item of an element
+     *
+     * @param p_element element
+     * @return item
+     */
+    private IItem item( final IGrammarElement p_element )
+    {
+        if ( p_element == null )
+            return new CSkip();
+
+        final IItem l_cached = p_element instanceof IGrammarComplexElement ? null : m_items.getIfPresent( p_element );
+        if ( l_cached != null )
+            return l_cached;
+
+        final IItem l_item = p_element.accept( this, null );
+        final IItem l_result;
+        switch ( p_element.cardinality() )
+        {
+            case OPTIONAL:
+                l_result = CRailroad.optional( l_item );
+                break;
+
+            case ZEROORMORE:
+                l_result = CRailroad.optional( new COneOrMore( l_item, new CSkip() ) );
+                break;
+
+            case ONEORMORE:
+                l_result = new COneOrMore( l_item, new CSkip() );
+                break;
+
+            default:
+                l_result = l_item;
+        }
+
+        if ( !( p_element instanceof IGrammarComplexElement ) )
+            m_items.put( p_element, l_result );
+        return l_result;
+    }
+
+    /**
+     * returns the layout items of elements
+     *
+     * @param p_elements elements
+     * @return items
+     */
+    private List<IItem> items( final List<IGrammarElement> p_elements )
+    {
+        return Collections.unmodifiableList( p_elements.stream().map( this::item ).collect( Collectors.toList() ) );
+    }
+
+    /**
+     * creates an optional item, the item is on
+     * the main line and the skip is above
+     *
+     * @param p_item item
+     * @return choice item
+     */
+    private static IItem optional( final IItem p_item )
+    {
+        return new CChoice( 1, Arrays.asList( new CSkip(), p_item ) );
+    }
+
+    @Override
+    public final IItem visitgrammar( final IGrammarComplexElement p_element, final Void p_argument )
+    {
+        return new CSkip();
+    }
+
+    @Override
+    public final IItem visitrule( final IGrammarRule p_element, final Void p_argument )
+    {
+        return this.item( p_element.children() );
+    }
+
+    @Override
+    public final IItem visitterminal( final IGrammarTerminal p_element, final Void p_argument )
+    {
+        return this.item( p_element.children() );
+    }
+
+    @Override
+    public final IItem visitidentifier( final IGrammarIdentifier p_element, final Void p_argument )
+    {
+        return new CBox( IBaseTemplate.removequotes( p_element.get() ), p_element.get(), false );
+    }
+
+    @Override
+    public final IItem visitterminalvalue( final IGrammarSimpleElement<?> p_element, final Void p_argument )
+    {
+        return new CBox( IBaseTemplate.removequotes( p_element.get() ), p_element.get(), true );
+    }
+
+    @Override
+    public final IItem visitcharacterclass( final IGrammarCharacterClass p_element, final Void p_argument )
+    {
+        return new CBox(
+            p_element.category() == null
+            ? p_element.notation()
+            : p_element.category().description(),
+            null,
+            true
+        );
+    }
+
+    @Override
+    public final IItem visitnegation( final IGrammarNegation p_element, final Void p_argument )
+    {
+        return new CSequence( Arrays.asList( new CComment( m_negation ), this.item( p_element.inner() ) ), true );
+    }
+
+    @Override
+    public final IItem visitgroup( final IGrammarGroup p_element, final Void p_argument )
+    {
+        return this.item( p_element.element() );
+    }
+
+    @Override
+    public final IItem visitchoice( final IGrammarChoice p_element, final Void p_argument )
+    {
+        if ( p_element.get().isEmpty() )
+            return new CSkip();
+
+        return p_element.get().size() == 1
+               ? this.item( p_element.get().get( 0 ) )
+               : new CChoice( 0, this.items( p_element.get() ) );
+    }
+
+    @Override
+    public final IItem visitsequence( final IGrammarSequence p_element, final Void p_argument )
+    {
+        if ( p_element.get().isEmpty() )
+            return new CSkip();
+
+        return p_element.get().size() == 1
+               ? this.item( p_element.get().get( 0 ) )
+               : new CSequence( this.items( p_element.get() ), true );
+    }
+
+    /**
+     * formats a number for SVG attributes
+     *
+     * @param p_value value
+     * @return string representation
+     */
+    private static String number( final double p_value )
+    {
+        return p_value == Math.rint( p_value ) ? Long.toString( (long) p_value ) : Double.toString( p_value );
+    }
+
+    /**
+     * returns the gap on each side of
+     * an item, the item is centered
+     *
+     * @param p_outer available width
+     * @param p_inner item width
+     * @return gap
+     */
+    private static double gap( final double p_outer, final double p_inner )
+    {
+        return ( p_outer - p_inner ) / 2;
+    }
+
+    /**
+     * creates a path
+     *
+     * @param p_xpos start x position
+     * @param p_ypos start y position
+     * @return path
+     */
+    private static CPath path( final double p_xpos, final double p_ypos )
+    {
+        return new CPath( p_xpos, p_ypos );
+    }
+
+
+    /**
+     * layout item with its size, the height is the
+     * vertical distance between the entry and the exit,
+     * up and down are the extent above the entry and
+     * below the exit
+     */
+    abstract static class IItem
+    {
+        /**
+         * width
+         */
+        protected double m_width;
+        /**
+         * height
+         */
+        protected double m_height;
+        /**
+         * extent above
+         */
+        protected double m_up;
+        /**
+         * extent below
+         */
+        protected double m_down;
+        /**
+         * item needs horizontal space
+         */
+        protected boolean m_needsspace;
+
+        /**
+         * writes the item
+         *
+         * @param p_xpos x position of the entry
+         * @param p_ypos y position of the entry
+         * @param p_width available width
+         * @param p_output output
+         */
+        abstract void format( final double p_xpos, final double p_ypos, final double p_width, final StringBuilder p_output );
+    }
+
+
+    /**
+     * SVG path
+     */
+    private static final class CPath
+    {
+        /**
+         * path data
+         */
+        private final StringBuilder m_data = new StringBuilder();
+
+        /**
+         * ctor
+         *
+         * @param p_xpos start x position
+         * @param p_ypos start y position
+         */
+        CPath( final double p_xpos, final double p_ypos )
+        {
+            m_data.append( 'M' ).append( number( p_xpos ) ).append( ' ' ).append( number( p_ypos ) );
+        }
+
+        /**
+         * horizontal line
+         *
+         * @param p_value length
+         * @return self reference
+         */
+        final CPath horizontal( final double p_value )
+        {
+            m_data.append( " h" ).append( number( p_value ) );
+            return this;
+        }
+
+        /**
+         * vertical line
+         *
+         * @param p_value length
+         * @return self reference
+         */
+        final CPath vertical( final double p_value )
+        {
+            m_data.append( " v" ).append( number( p_value ) );
+            return this;
+        }
+
+        /**
+         * relative move
+         *
+         * @param p_xpos x distance
+         * @param p_ypos y distance
+         * @return self reference
+         */
+        final CPath move( final double p_xpos, final double p_ypos )
+        {
+            m_data.append( " m" ).append( number( p_xpos ) ).append( ' ' ).append( number( p_ypos ) );
+            return this;
+        }
+
+        /**
+         * line to the right
+         *
+         * @param p_value length
+         * @return self reference
+         */
+        final CPath right( final double p_value )
+        {
+            return this.horizontal( Math.max( 0, p_value ) );
+        }
+
+        /**
+         * line downwards
+         *
+         * @param p_value length
+         * @return self reference
+         */
+        final CPath down( final double p_value )
+        {
+            return this.vertical( Math.max( 0, p_value ) );
+        }
+
+        /**
+         * line upwards
+         *
+         * @param p_value length
+         * @return self reference
+         */
+        final CPath up( final double p_value )
+        {
+            return this.vertical( -Math.max( 0, p_value ) );
+        }
+
+        /**
+         * quarter arc, the sweep is defined by the
+         * start and end direction e.g. "ne" starts
+         * northwards and ends eastwards
+         *
+         * @param p_sweep sweep
+         * @return self reference
+         */
+        final CPath arc( final String p_sweep )
+        {
+            final double l_xpos = ( p_sweep.charAt( 0 ) == 'e' ) || ( p_sweep.charAt( 1 ) == 'w' ) ? -ARCRADIUS : ARCRADIUS;
+            final double l_ypos = ( p_sweep.charAt( 0 ) == 's' ) || ( p_sweep.charAt( 1 ) == 'n' ) ? -ARCRADIUS : ARCRADIUS;
+            final boolean l_clockwise = "ne".equals( p_sweep ) || "es".equals( p_sweep ) || "sw".equals( p_sweep ) || "wn".equals( p_sweep );
+
+            m_data.append( " a" ).append( number( ARCRADIUS ) ).append( ' ' ).append( number( ARCRADIUS ) )
+                  .append( " 0 0 " ).append( l_clockwise ? '1' : '0' )
+                  .append( ' ' ).append( number( l_xpos ) ).append( ' ' ).append( number( l_ypos ) );
+            return this;
+        }
+
+        /**
+         * writes the path
+         *
+         * @param p_output output
+         */
+        final void write( final StringBuilder p_output )
+        {
+            p_output.append( "<path d=\"" ).append( m_data ).append( "\"></path>" );
+        }
+    }
+
+
+    /**
+     * start marker of a diagram
+     */
+    private static final class CStart extends IItem
+    {
+        /**
+         * ctor
+         */
+        CStart()
+        {
+            m_width = 2 * SPACE;
+            m_up = SPACE;
+            m_down = SPACE;
+        }
+
+        @Override
+        final void format( final double p_xpos, final double p_ypos, final double p_width, final StringBuilder p_output )
+        {
+            path( p_xpos, p_ypos - SPACE ).vertical( 2 * SPACE ).move( SPACE, -2 * SPACE ).vertical( 2 * SPACE )
+                                          .move( -SPACE, -SPACE ).horizontal( 2 * SPACE ).write( p_output );
+        }
+    }
+
+
+    /**
+     * end marker of a diagram
+     */
+    private static final class CEnd extends IItem
+    {
+        /**
+         * ctor
+         */
+        CEnd()
+        {
+            m_width = 2 * SPACE;
+            m_up = SPACE;
+            m_down = SPACE;
+        }
+
+        @Override
+        final void format( final double p_xpos, final double p_ypos, final double p_width, final StringBuilder p_output )
+        {
+            path( p_xpos, p_ypos ).horizontal( 2 * SPACE ).move( -SPACE, -SPACE ).vertical( 2 * SPACE ).move( SPACE, -2 * SPACE ).vertical( 2 * SPACE ).write( p_output );
+        }
+    }
+
+
+    /**
+     * empty line
+     */
+    private static final class CSkip extends IItem
+    {
+        @Override
+        final void format( final double p_xpos, final double p_ypos, final double p_width, final StringBuilder p_output )
+        {
+            path( p_xpos, p_ypos ).right( p_width ).write( p_output );
+        }
+    }
+
+
+    /**
+     * terminal or non-terminal box with link
+     */
+    private static final class CBox extends IItem
+    {
+        /**
+         * half height of the box
+         */
+        private static final double HALFHEIGHT = 11;
+        /**
+         * vertical text offset
+         */
+        private static final double TEXTOFFSET = 4;
+        /**
+         * escaped text
+         */
+        private final String m_text;
+        /**
+         * link target or null
+         */
+        private final String m_link;
+        /**
+         * box with rounded corners
+         */
+        private final boolean m_rounded;
+
+        /**
+         * ctor
+         *
+         * @param p_text text
+         * @param p_link unhashed link value or null
+         * @param p_rounded box with rounded corners
+         */
+        CBox( final String p_text, final String p_link, final boolean p_rounded )
+        {
+            m_text = XmlEscapers.xmlContentEscaper().escape( p_text );
+            m_link = p_link == null ? null : IBaseTemplate.linkhash( p_link );
+            m_rounded = p_rounded;
+
+            m_width = p_text.length() * CHARWIDTH + 2 * SPACE;
+            m_up = HALFHEIGHT;
+            m_down = HALFHEIGHT;
+            m_needsspace = true;
+        }
+
+        @Override
+        final void format( final double p_xpos, final double p_ypos, final double p_width, final StringBuilder p_output )
+        {
+            final double l_gap = gap( p_width, m_width );
+            path( p_xpos, p_ypos ).horizontal( l_gap ).write( p_output );
+            path( p_xpos + l_gap + m_width, p_ypos ).horizontal( l_gap ).write( p_output );
+
+            p_output.append( "<rect x=\"" ).append( number( p_xpos + l_gap ) ).append( "\" y=\"" ).append( number( p_ypos - HALFHEIGHT ) )
+                    .append( "\" width=\"" ).append( number( m_width ) ).append( "\" height=\"" ).append( number( 2 * HALFHEIGHT ) ).append( '"' );
+            if ( m_rounded )
+                p_output.append( " rx=\"" ).append( number( ARCRADIUS ) ).append( "\" ry=\"" ).append( number( ARCRADIUS ) ).append( '"' );
+            p_output.append( "></rect>" );
+
+            if ( m_link != null )
+                p_output.append( "<a xlink:href=\"#" ).append( m_link ).append( "\">" );
+            p_output.append( "<text x=\"" ).append( number( p_xpos + l_gap + m_width / 2 ) )
+                    .append( "\" y=\"" ).append( number( p_ypos + TEXTOFFSET ) ).append( "\">" ).append( m_text ).append( "</text>" );
+            if ( m_link != null )
+                p_output.append( "</a>" );
+        }
+    }
+
+
+    /**
+     * comment text on the line
+     */
+    private static final class CComment extends IItem
+    {
+        /**
+         * half height of the comment
+         */
+        private static final double HALFHEIGHT = 8;
+        /**
+         * vertical text offset
+         */
+        private static final double TEXTOFFSET = 5;
+        /**
+         * escaped text
+         */
+        private final String m_text;
+
+        /**
+         * ctor
+         *
+         * @param p_text text
+         */
+        CComment( final String p_text )
+        {
+            m_text = XmlEscapers.xmlContentEscaper().escape( p_text );
+            m_width = p_text.length() * COMMENTCHARWIDTH + SPACE;
+            m_up = HALFHEIGHT;
+            m_down = HALFHEIGHT;
+            m_needsspace = true;
+        }
+
+        @Override
+        final void format( final double p_xpos, final double p_ypos, final double p_width, final StringBuilder p_output )
+        {
+            final double l_gap = gap( p_width, m_width );
+            path( p_xpos, p_ypos ).horizontal( l_gap ).write( p_output );
+            path( p_xpos + l_gap + m_width, p_ypos ).horizontal( l_gap ).write( p_output );
+
+            p_output.append( "<text class=\"comment\" x=\"" ).append( number( p_xpos + l_gap + m_width / 2 ) )
+                    .append( "\" y=\"" ).append( number( p_ypos + TEXTOFFSET ) ).append( "\">" ).append( m_text ).append( "</text>" );
+        }
+    }
+
+
+    /**
+     * sequence of items
+     */
+    private static final class CSequence extends IItem
+    {
+        /**
+         * items
+         */
+        private final List<IItem> m_items;
+
+        /**
+         * ctor
+         *
+         * @param p_items items
+         * @param p_trim the outer space of the first and last item is not counted
+         */
+        CSequence( final List<IItem> p_items, final boolean p_trim )
+        {
+            m_items = p_items;
+            m_needsspace = true;
+
+            for ( final IItem l_item : p_items )
+            {
+                m_width += l_item.m_width + ( l_item.m_needsspace ? 2 * SPACE : 0 );
+                m_up = Math.max( m_up, l_item.m_up - m_height );
+                m_height += l_item.m_height;
+                m_down = Math.max( m_down - l_item.m_height, l_item.m_down );
+            }
+
+            if ( p_trim && p_items.get( 0 ).m_needsspace )
+                m_width -= SPACE;
+            if ( p_trim && p_items.get( p_items.size() - 1 ).m_needsspace )
+                m_width -= SPACE;
+        }
+
+        @Override
+        final void format( final double p_xpos, final double p_ypos, final double p_width, final StringBuilder p_output )
+        {
+            final double l_gap = gap( p_width, m_width );
+            path( p_xpos, p_ypos ).horizontal( l_gap ).write( p_output );
+            path( p_xpos + l_gap + m_width, p_ypos + m_height ).horizontal( l_gap ).write( p_output );
+
+            double l_xpos = p_xpos + l_gap;
+            double l_ypos = p_ypos;
+            for ( int i = 0; i < m_items.size(); i++ )
+            {
+                final IItem l_item = m_items.get( i );
+                if ( l_item.m_needsspace && ( i > 0 ) )
+                {
+                    path( l_xpos, l_ypos ).horizontal( SPACE ).write( p_output );
+                    l_xpos += SPACE;
+                }
+
+                l_item.format( l_xpos, l_ypos, l_item.m_width, p_output );
+                l_xpos += l_item.m_width;
+                l_ypos += l_item.m_height;
+
+                if ( l_item.m_needsspace && ( i < m_items.size() - 1 ) )
+                {
+                    path( l_xpos, l_ypos ).horizontal( SPACE ).write( p_output );
+                    l_xpos += SPACE;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * choice of items, the normal item is on the main
+     * line, the items before are above and the items
+     * after are below
+     */
+    private static final class CChoice extends IItem
+    {
+        /**
+         * index of the normal item
+         */
+        private final int m_normal;
+        /**
+         * items
+         */
+        private final List<IItem> m_items;
+
+        /**
+         * ctor
+         *
+         * @param p_normal index of the normal item
+         * @param p_items items
+         */
+        CChoice( final int p_normal, final List<IItem> p_items )
+        {
+            m_normal = p_normal;
+            m_items = p_items;
+
+            m_width = p_items.stream().mapToDouble( i -> i.m_width ).max().orElse( 0 ) + 4 * ARCRADIUS;
+            m_height = p_items.get( p_normal ).m_height;
+            m_up = p_items.get( 0 ).m_up;
+            m_down = p_items.get( p_items.size() - 1 ).m_down;
+
+            for ( int i = 0; i < p_normal; i++ )
+                m_up += Math.max( i == p_normal - 1 ? 2 * ARCRADIUS : ARCRADIUS, this.above( i ) );
+            for ( int i = p_normal + 1; i < p_items.size(); i++ )
+                m_down += Math.max( i == p_normal + 1 ? 2 * ARCRADIUS : ARCRADIUS, this.below( i ) );
+            m_down -= m_height;
+        }
+
+        /**
+         * vertical distance between an item above
+         * the normal item and its lower neighbour
+         *
+         * @param p_index index
+         * @return distance
+         */
+        private double above( final int p_index )
+        {
+            return m_items.get( p_index ).m_height + m_items.get( p_index ).m_down + VERTICALSEPARATION + m_items.get( p_index + 1 ).m_up;
+        }
+
+        /**
+         * vertical distance between an item below
+         * the normal item and its upper neighbour
+         *
+         * @param p_index index
+         * @return distance
+         */
+        private double below( final int p_index )
+        {
+            return m_items.get( p_index - 1 ).m_height + m_items.get( p_index - 1 ).m_down + VERTICALSEPARATION + m_items.get( p_index ).m_up;
+        }
+
+        @Override
+        final void format( final double p_xpos, final double p_ypos, final double p_width, final StringBuilder p_output )
+        {
+            final double l_gap = gap( p_width, m_width );
+            path( p_xpos, p_ypos ).horizontal( l_gap ).write( p_output );
+            path( p_xpos + l_gap + m_width, p_ypos + m_height ).horizontal( l_gap ).write( p_output );
+
+            final double l_xpos = p_xpos + l_gap;
+            final double l_inner = m_width - 4 * ARCRADIUS;
+
+            // items above
+            double l_distance = 0;
+            for ( int i = m_normal - 1; i >= 0; i-- )
+            {
+                final IItem l_item = m_items.get( i );
+                l_distance += Math.max( i == m_normal - 1 ? 2 * ARCRADIUS : ARCRADIUS, this.above( i ) );
+
+                path( l_xpos, p_ypos ).arc( "se" ).up( l_distance - 2 * ARCRADIUS ).arc( "wn" ).write( p_output );
+                l_item.format( l_xpos + 2 * ARCRADIUS, p_ypos - l_distance, l_inner, p_output );
+                path( l_xpos + 2 * ARCRADIUS + l_inner, p_ypos - l_distance + l_item.m_height )
+                    .arc( "ne" ).down( l_distance - 2 * ARCRADIUS + m_height - l_item.m_height ).arc( "ws" ).write( p_output );
+            }
+
+            // normal item on the main line
+            path( l_xpos, p_ypos ).right( 2 * ARCRADIUS ).write( p_output );
+            m_items.get( m_normal ).format( l_xpos + 2 * ARCRADIUS, p_ypos, l_inner, p_output );
+            path( l_xpos + 2 * ARCRADIUS + l_inner, p_ypos + m_height ).right( 2 * ARCRADIUS ).write( p_output );
+
+            // items below
+            l_distance = 0;
+            for ( int i = m_normal + 1; i < m_items.size(); i++ )
+            {
+                final IItem l_item = m_items.get( i );
+                l_distance += Math.max( i == m_normal + 1 ? 2 * ARCRADIUS : ARCRADIUS, this.below( i ) );
+
+                path( l_xpos, p_ypos ).arc( "ne" ).down( l_distance - 2 * ARCRADIUS ).arc( "ws" ).write( p_output );
+                l_item.format( l_xpos + 2 * ARCRADIUS, p_ypos + l_distance, l_inner, p_output );
+                path( l_xpos + 2 * ARCRADIUS + l_inner, p_ypos + l_distance + l_item.m_height )
+                    .arc( "se" ).up( l_distance - 2 * ARCRADIUS + l_item.m_height - m_height ).arc( "wn" ).write( p_output );
+            }
+        }
+    }
+
+
+    /**
+     * repetition of an item, the repeat item
+     * is on the way back below the item
+     */
+    private static final class COneOrMore extends IItem
+    {
+        /**
+         * item
+         */
+        private final IItem m_item;
+        /**
+         * repeat item
+         */
+        private final IItem m_repeat;
+
+        /**
+         * ctor
+         *
+         * @param p_item item
+         * @param p_repeat repeat item
+         */
+        COneOrMore( final IItem p_item, final IItem p_repeat )
+        {
+            m_item = p_item;
+            m_repeat = p_repeat;
+
+            m_width = Math.max( p_item.m_width, p_repeat.m_width ) + 2 * ARCRADIUS;
+            m_height = p_item.m_height;
+            m_up = p_item.m_up;
+            m_down = Math.max( 2 * ARCRADIUS, p_item.m_down + VERTICALSEPARATION + p_repeat.m_up + p_repeat.m_height + p_repeat.m_down );
+            m_needsspace = true;
+        }
+
+        @Override
+        final void format( final double p_xpos, final double p_ypos, final double p_width, final StringBuilder p_output )
+        {
+            final double l_gap = gap( p_width, m_width );
+            path( p_xpos, p_ypos ).horizontal( l_gap ).write( p_output );
+            path( p_xpos + l_gap + m_width, p_ypos + m_height ).horizontal( l_gap ).write( p_output );
+
+            final double l_xpos = p_xpos + l_gap;
+            final double l_distance = Math.max( 2 * ARCRADIUS, m_item.m_height + m_item.m_down + VERTICALSEPARATION + m_repeat.m_up );
+
+            // item on the main line
+            path( l_xpos, p_ypos ).right( ARCRADIUS ).write( p_output );
+            m_item.format( l_xpos + ARCRADIUS, p_ypos, m_width - 2 * ARCRADIUS, p_output );
+            path( l_xpos + m_width - ARCRADIUS, p_ypos + m_height ).right( ARCRADIUS ).write( p_output );
+
+            // way back with the repeat item
+            path( l_xpos + ARCRADIUS, p_ypos ).arc( "nw" ).down( l_distance - 2 * ARCRADIUS ).arc( "ws" ).write( p_output );
+            m_repeat.format( l_xpos + ARCRADIUS, p_ypos + l_distance, m_width - 2 * ARCRADIUS, p_output );
+            path( l_xpos + m_width - ARCRADIUS, p_ypos + l_distance + m_repeat.m_height )
+                .arc( "se" ).up( l_distance - 2 * ARCRADIUS + m_repeat.m_height - m_item.m_height ).arc( "en" ).write( p_output );
+        }
+    }
+
+}
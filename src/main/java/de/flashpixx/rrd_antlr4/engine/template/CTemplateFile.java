@@ -0,0 +1,190 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.engine.template;
+
+import de.flashpixx.rrd_antlr4.CCommon;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * precompiled template file, the content is parsed once
+ * into literal segments and named slots, so that the
+ * output is written in a single streaming pass
+ */
+public final class CTemplateFile
+{
+    /**
+     * cache of compiled resource files
+     */
+    private static final Map<String, CTemplateFile> CACHE = new ConcurrentHashMap<>();
+    /**
+     * placeholders
+     */
+    private final Set<String> m_placeholders;
+    /**
+     * literal segments, one more than slots
+     */
+    private final String[] m_literals;
+    /**
+     * slot names between the literal segments
+     */
+    private final String[] m_slots;
+
+    /**
+     * ctor
+     *
+     * @param p_placeholders placeholders
+     * @param p_literals literal segments
+     * @param p_slots slot names
+     */
+    private CTemplateFile( final Set<String> p_placeholders, final List<String> p_literals, final List<String> p_slots )
+    {
+        m_placeholders = p_placeholders;
+        m_literals = p_literals.toArray( new String[0] );
+        m_slots = p_slots.toArray( new String[0] );
+    }
+
+    /**
+     * compiles a template content
+     *
+     * @param p_content template content
+     * @param p_placeholders placeholders
+     * @return compiled template
+     */
+    public static CTemplateFile compile( final String p_content, final Set<String> p_placeholders )
+    {
+        final List<String> l_literals = new ArrayList<>();
+        final List<String> l_slots = new ArrayList<>();
+
+        int l_position = 0;
+        while ( true )
+        {
+            // find the next placeholder
+            String l_placeholder = null;
+            int l_next = p_content.length();
+            for ( final String l_slot : p_placeholders )
+            {
+                final int l_index = p_content.indexOf( l_slot, l_position );
+                if ( ( l_index > -1 ) && ( l_index < l_next ) )
+                {
+                    l_next = l_index;
+                    l_placeholder = l_slot;
+                }
+            }
+
+            l_literals.add( p_content.substring( l_position, l_next ) );
+            if ( l_placeholder == null )
+                break;
+
+            l_slots.add( l_placeholder );
+            l_position = l_next + l_placeholder.length();
+        }
+
+        return new CTemplateFile( Collections.unmodifiableSet( new HashSet<>( p_placeholders ) ), l_literals, l_slots );
+    }
+
+    /**
+     * returns a compiled template of a resource file,
+     * the template is compiled once and cached
+     *
+     * @param p_resource resource file
+     * @param p_placeholders placeholders
+     * @return compiled template
+     * @throws IOException on IO error
+     * @throws URISyntaxException on URL syntax error
+     */
+    public static CTemplateFile resource( final String p_resource, final Set<String> p_placeholders ) throws IOException, URISyntaxException
+    {
+        final CTemplateFile l_template = CACHE.get( p_resource );
+        if ( ( l_template != null ) && ( l_template.m_placeholders.equals( p_placeholders ) ) )
+            return l_template;
+
+        try ( final InputStream l_stream = CCommon.resourceurl( p_resource ).openStream() )
+        {
+            final CTemplateFile l_compiled = CTemplateFile.compile( IOUtils.toString( l_stream, StandardCharsets.UTF_8 ), p_placeholders );
+            CACHE.put( p_resource, l_compiled );
+            return l_compiled;
+        }
+    }
+
+    /**
+     * writes the template, the literal segments are
+     * written directly and the slot content is written
+     * on each occurrence of its placeholder
+     *
+     * @param p_output output
+     * @param p_slots map with placeholder and slot, the map contains all placeholders of the compiling
+     * @throws IOException on writing error
+     */
+    public final void write( final Writer p_output, final Map<String, ISlot> p_slots ) throws IOException
+    {
+        for ( int i = 0; i < m_slots.length; i++ )
+        {
+            p_output.write( m_literals[i] );
+            p_slots.get( m_slots[i] ).write( p_output );
+        }
+
+        p_output.write( m_literals[m_slots.length] );
+    }
+
+    /**
+     * returns the number of slots
+     *
+     * @return slot number
+     */
+    public final int slots()
+    {
+        return m_slots.length;
+    }
+
+
+    /**
+     * slot of a template
+     */
+    @FunctionalInterface
+    public interface ISlot
+    {
+        /**
+         * writes the slot content
+         *
+         * @param p_output output
+         * @throws IOException on writing error
+         */
+        void write( final Writer p_output ) throws IOException;
+    }
+
+}
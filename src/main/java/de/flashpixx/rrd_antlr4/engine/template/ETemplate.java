@@ -25,6 +25,8 @@ package de.flashpixx.rrd_antlr4.engine.template;
 
 import de.flashpixx.rrd_antlr4.CCommon;
 
+import java.io.File;
+
 
 /**
  * enum for template creation
@@ -32,6 +34,7 @@ import de.flashpixx.rrd_antlr4.CCommon;
 public enum ETemplate
 {
     HTML,
+    HTMLSVG,
     LATEXSYNTAX;
 
     /**
@@ -40,11 +43,26 @@ public enum ETemplate
      * @return template
      */
     public ITemplate generate()
+    {
+        return this.generate( null );
+    }
+
+    /**
+     * creates a new template
+     *
+     * @param p_baseoutputdirectory base output directory, if it is set static
+     * files are written once into a shared asset directory of the template
+     * @return template
+     */
+    public ITemplate generate( final File p_baseoutputdirectory )
     {
         switch ( this )
         {
             case HTML:
-                return new CHTML( HTML.toString() );
+                return new CHTML( HTML.toString(), p_baseoutputdirectory, false );
+
+            case HTMLSVG:
+                return new CHTML( HTMLSVG.toString(), p_baseoutputdirectory, true );
 
             case LATEXSYNTAX:
                 return new CLaTeXSyntax( LATEXSYNTAX.toString() );
@@ -23,11 +23,12 @@
 
 package de.flashpixx.rrd_antlr4.engine.template;
 
-import com.aol.cyclops.sequence.SequenceM;
-import de.flashpixx.rrd_antlr4.CCommon;
-import de.flashpixx.rrd_antlr4.CStringReplace;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarCharacterClass;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarChoice;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarCollection;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarComplexElement;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarElement;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarGroup;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarIdentifier;
@@ -36,37 +37,57 @@ import de.flashpixx.rrd_antlr4.antlr.IGrammarRule;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarSequence;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarSimpleElement;
 import de.flashpixx.rrd_antlr4.antlr.IGrammarTerminal;
-import org.apache.commons.io.FileUtils;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarVisitor;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.math.BigInteger;
 import java.net.URISyntaxException;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
+import java.util.List;
+import java.util.Map;
 
 
 /**
  * base implementation
  */
-public abstract class IBaseTemplate implements ITemplate
+public abstract class IBaseTemplate implements ITemplate, IGrammarVisitor<StringBuilder, StringBuilder>
 {
+    /**
+     * maximum number of cached fragments
+     */
+    private static final int FRAGMENTCACHESIZE = 8192;
+    /**
+     * maximum length of a cached fragment, larger fragments
+     * are not copied, so the copying is bounded on deep trees
+     */
+    private static final int FRAGMENTLENGTH = 1024;
 
     /**
      * template name
      */
     private final String m_name;
+    /**
+     * resource directory of the template
+     */
+    private final String m_directory;
     /**
      * index file name
      */
     private final String m_index;
+    /**
+     * cache of rendered fragments, key is the structural element
+     */
+    private final Cache<IGrammarElement, String> m_fragments = CacheBuilder.newBuilder()
+                                                                           .maximumSize( FRAGMENTCACHESIZE )
+                                                                           .build();
 
     /**
      * ctor
@@ -75,8 +96,21 @@ public abstract class IBaseTemplate implements ITemplate
      * @param p_index index file
      */
     public IBaseTemplate( final String p_name, final String p_index )
+    {
+        this( p_name, p_name, p_index );
+    }
+
+    /**
+     * ctor
+     *
+     * @param p_name template name
+     * @param p_directory resource directory of the template
+     * @param p_index index file
+     */
+    public IBaseTemplate( final String p_name, final String p_directory, final String p_index )
     {
         m_name = p_name.trim().toLowerCase();
+        m_directory = p_directory.trim().toLowerCase();
         m_index = p_index;
     }
 
@@ -93,7 +127,8 @@ public abstract class IBaseTemplate implements ITemplate
     }
 
     /**
-     * copies files from the directory of the template to the output directory
+     * copies files from the directory of the template to the output directory,
+     * identical files are skipped
      *
      * @param p_templatefile file within the template directory
      * @param p_output output directory
@@ -101,69 +136,161 @@ public abstract class IBaseTemplate implements ITemplate
      * @throws URISyntaxException on URL syntax error
      */
     protected final void copy( final String p_templatefile, final Path p_output ) throws IOException, URISyntaxException
+    {
+        CAssetWriter.write( this.resource( p_templatefile ), Paths.get( p_output.toString(), p_templatefile ) );
+    }
+
+    /**
+     * writes a file of the template directory into the output
+     * directory, the file is compiled once into literal segments
+     * and slots and the slot content is written on each occurrence
+     * of its placeholder, so the output is written in a single pass
+     *
+     * @param p_templatefile file within the template directory
+     * @param p_output output directory
+     * @param p_slots map with placeholder and slot
+     * @throws IOException on IO error
+     * @throws URISyntaxException on URL syntax error
+     */
+    protected final void write( final String p_templatefile, final Path p_output, final Map<String, CTemplateFile.ISlot> p_slots )
+        throws IOException, URISyntaxException
     {
         final Path l_target = Paths.get( p_output.toString(), p_templatefile );
         Files.createDirectories( l_target.getParent() );
-        Files.copy(
-                CCommon.resourceurl( MessageFormat.format( "{0}{1}{2}{3}", "de/flashpixx/rrd_antlr4/template/", m_name, "/", p_templatefile ) ).openStream(),
-                l_target,
-                StandardCopyOption.REPLACE_EXISTING
-        );
+        try ( final Writer l_writer = Files.newBufferedWriter( l_target, StandardCharsets.UTF_8 ) )
+        {
+            CTemplateFile.resource( this.resource( p_templatefile ), p_slots.keySet() ).write( l_writer, p_slots );
+        }
     }
 
     /**
-     * replaces the string within the file
+     * returns the resource path of a template file
      *
-     * @param p_file file
-     * @param p_replacepair string tupels for replacing
+     * @param p_templatefile file within the template directory
+     * @return resource path
      */
-    protected final void replace( final File p_file, final String... p_replacepair ) throws IOException
+    private String resource( final String p_templatefile )
     {
-        if ( ( p_replacepair == null ) || ( p_replacepair.length % 2 != 0 ) )
-            throw new IllegalArgumentException( CCommon.languagestring( IBaseTemplate.class, "replaceerror", p_file ) );
-
-        final CStringReplace l_content = new CStringReplace( FileUtils.readFileToString( p_file, Charset.forName( "UTF-8" ) ) );
-        SequenceM.rangeLong( 0, p_replacepair.length )
-                 .sliding( 2, 2 )
-                 .forEach( i -> l_content.replaceAll( p_replacepair[i.get( 0 ).intValue()], p_replacepair[i.get( 1 ).intValue()] ) );
-        FileUtils.write( p_file, l_content.get(), Charset.forName( "UTF-8" ) );
+        return MessageFormat.format( "{0}{1}{2}{3}", "de/flashpixx/rrd_antlr4/template/", m_directory, "/", p_templatefile );
     }
 
     /**
-     * calls the sub routines to format the lement
+     * calls the sub routines to format the element,
+     * the element calls the visitor method of its type
+     * and writes into the output, fragments of structural
+     * equal elements are rendered once and are read from
+     * the fragment cache afterwards
      *
-     * @param p_element grammat element or string
-     * @return string representation
+     * @param p_element grammat element or null
+     * @param p_output output
+     * @note rules are unique, so they are not cached, large fragments are not
+     * cached either, so the copying does not grow with the depth of large subtrees
      */
-    @SuppressWarnings( "unchecked" )
-    protected String map( final IGrammarElement p_element )
+    protected final void map( final IGrammarElement p_element, final StringBuilder p_output )
     {
-        if ( p_element instanceof IGrammarIdentifier )
-            return this.cardinality( p_element.cardinality(), this.nonterminal( (IGrammarIdentifier) p_element ) );
+        if ( p_element == null )
+            return;
 
-        if ( p_element instanceof IGrammarRule )
-            return this.cardinality( p_element.cardinality(), this.rule( (IGrammarRule) p_element ) );
+        final String l_cached = p_element instanceof IGrammarRule ? null : m_fragments.getIfPresent( p_element );
+        if ( l_cached != null )
+        {
+            p_output.append( l_cached );
+            return;
+        }
 
-        if ( p_element instanceof IGrammarSimpleElement<?> )
-            return this.cardinality( p_element.cardinality(), this.terminalvalue( (IGrammarSimpleElement<?>) p_element ) );
+        final int l_start = p_output.length();
+        this.opencardinality( p_element.cardinality(), p_output );
+        p_element.accept( this, p_output );
+        this.closecardinality( p_element.cardinality(), p_output, l_start );
 
-        if ( p_element instanceof IGrammarTerminal )
-            return this.cardinality( p_element.cardinality(), this.terminal( (IGrammarTerminal) p_element ) );
+        if ( ( !( p_element instanceof IGrammarRule ) ) && ( p_output.length() - l_start <= FRAGMENTLENGTH ) )
+            m_fragments.put( p_element, p_output.substring( l_start ) );
+    }
 
+    /**
+     * formats a list of elements with a separator
+     *
+     * @param p_elements elements
+     * @param p_separator separator
+     * @param p_output output
+     */
+    protected final void map( final List<IGrammarElement> p_elements, final String p_separator, final StringBuilder p_output )
+    {
+        for ( int i = 0; i < p_elements.size(); i++ )
+        {
+            if ( i > 0 )
+                p_output.append( p_separator );
+            this.map( p_elements.get( i ), p_output );
+        }
+    }
 
-        if ( p_element instanceof IGrammarNegation )
-            return this.cardinality( p_element.cardinality(), this.negation( ( (IGrammarNegation) p_element ).inner() ) );
+    @Override
+    public final StringBuilder visitgrammar( final IGrammarComplexElement p_element, final StringBuilder p_output )
+    {
+        return p_output;
+    }
 
-        if ( p_element instanceof IGrammarGroup )
-            return this.cardinality( p_element.cardinality(), this.group( (IGrammarGroup) p_element ) );
+    @Override
+    public final StringBuilder visitrule( final IGrammarRule p_element, final StringBuilder p_output )
+    {
+        this.rule( p_element, p_output );
+        return p_output;
+    }
 
-        if ( p_element instanceof IGrammarChoice )
-            return this.cardinality( p_element.cardinality(), this.choice( (IGrammarChoice) p_element ) );
+    @Override
+    public final StringBuilder visitterminal( final IGrammarTerminal p_element, final StringBuilder p_output )
+    {
+        this.terminal( p_element, p_output );
+        return p_output;
+    }
 
-        if ( p_element instanceof IGrammarSequence )
-            return this.cardinality( p_element.cardinality(), this.sequence( (IGrammarSequence) p_element ) );
+    @Override
+    public final StringBuilder visitidentifier( final IGrammarIdentifier p_element, final StringBuilder p_output )
+    {
+        this.nonterminal( p_element, p_output );
+        return p_output;
+    }
 
-        return "";
+    @Override
+    public final StringBuilder visitterminalvalue( final IGrammarSimpleElement<?> p_element, final StringBuilder p_output )
+    {
+        this.terminalvalue( p_element, p_output );
+        return p_output;
+    }
+
+    @Override
+    public final StringBuilder visitcharacterclass( final IGrammarCharacterClass p_element, final StringBuilder p_output )
+    {
+        this.characterclass( p_element, p_output );
+        return p_output;
+    }
+
+    @Override
+    public final StringBuilder visitnegation( final IGrammarNegation p_element, final StringBuilder p_output )
+    {
+        this.negation( p_element.inner(), p_output );
+        return p_output;
+    }
+
+    @Override
+    public final StringBuilder visitgroup( final IGrammarGroup p_element, final StringBuilder p_output )
+    {
+        this.group( p_element, p_output );
+        return p_output;
+    }
+
+    @Override
+    public final StringBuilder visitchoice( final IGrammarChoice p_element, final StringBuilder p_output )
+    {
+        this.choice( p_element, p_output );
+        return p_output;
+    }
+
+    @Override
+    public final StringBuilder visitsequence( final IGrammarSequence p_element, final StringBuilder p_output )
+    {
+        this.sequence( p_element, p_output );
+        return p_output;
     }
 
     /**
@@ -201,79 +328,97 @@ public abstract class IBaseTemplate implements ITemplate
      * creates a rule
      *
      * @param p_element rule element
-     * @return string represenation
+     * @param p_output output
      */
-    protected String rule( final IGrammarRule p_element )
+    protected void rule( final IGrammarRule p_element, final StringBuilder p_output )
     {
-        return this.map( p_element.children() );
+        this.map( p_element.children(), p_output );
     }
 
     /**
-     * sets the cardinality
+     * writes the beginning of the cardinality
+     * before the element is written
+     *
+     * @param p_cardinality cardinality value
+     * @param p_output output
+     */
+    protected abstract void opencardinality( final IGrammarElement.ECardinality p_cardinality, final StringBuilder p_output );
+
+    /**
+     * writes the end of the cardinality
+     * after the element is written
      *
      * @param p_cardinality cardinality value
-     * @param p_element inner string
-     * @return string represenation
+     * @param p_output output
+     * @param p_start start position of the element within the output
      */
-    protected abstract String cardinality( final IGrammarElement.ECardinality p_cardinality, final String p_element );
+    protected abstract void closecardinality( final IGrammarElement.ECardinality p_cardinality, final StringBuilder p_output, final int p_start );
 
     /**
      * creates a grammar sequence
      *
      * @param p_element element list
-     * @return string representation
+     * @param p_output output
      */
-    protected abstract String sequence( final IGrammarCollection p_element );
+    protected abstract void sequence( final IGrammarCollection p_element, final StringBuilder p_output );
 
     /**
      * creates a grammar choice
      *
      * @param p_element element list
-     * @return string representation
+     * @param p_output output
      */
-    protected abstract String choice( final IGrammarChoice p_element );
+    protected abstract void choice( final IGrammarChoice p_element, final StringBuilder p_output );
 
     /**
      * crates a grammer group
      *
      * @param p_element group element
-     * @return string representation
+     * @param p_output output
      */
-    protected abstract String group( final IGrammarGroup p_element );
+    protected abstract void group( final IGrammarGroup p_element, final StringBuilder p_output );
 
     /**
      * creates a terminal
      *
      * @param p_element terminal value element
-     * @return string represenation
+     * @param p_output output
+     */
+    protected abstract void terminalvalue( final IGrammarSimpleElement<?> p_element, final StringBuilder p_output );
+
+    /**
+     * creates a character class
+     *
+     * @param p_element character class element
+     * @param p_output output
      */
-    protected abstract String terminalvalue( final IGrammarSimpleElement<?> p_element );
+    protected abstract void characterclass( final IGrammarCharacterClass p_element, final StringBuilder p_output );
 
     /**
      * creates a terminal
      *
      * @param p_element terminal element
-     * @return string represenation
+     * @param p_output output
      */
-    protected String terminal( final IGrammarTerminal p_element )
+    protected void terminal( final IGrammarTerminal p_element, final StringBuilder p_output )
     {
-        return this.map( p_element.children() );
+        this.map( p_element.children(), p_output );
     }
 
     /**
      * creates a non-terminal
      *
      * @param p_element identifier element
-     * @return string represenation
+     * @param p_output output
      */
-    protected abstract String nonterminal( final IGrammarIdentifier p_element );
+    protected abstract void nonterminal( final IGrammarIdentifier p_element, final StringBuilder p_output );
 
     /**
      * creates a negation structure
      *
      * @param p_element inner negation element
-     * @return string represenation
+     * @param p_output output
      */
-    protected abstract String negation( final IGrammarElement p_element );
+    protected abstract void negation( final IGrammarElement p_element, final StringBuilder p_output );
 
 }
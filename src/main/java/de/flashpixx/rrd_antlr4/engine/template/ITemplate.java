@@ -25,16 +25,23 @@ package de.flashpixx.rrd_antlr4.engine.template;
 
 import de.flashpixx.rrd_antlr4.antlr.IGrammarComplexElement;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 
 
 /**
- * interface of a template
+ * interface of a template, closing releases
+ * the temporary files of the rendered rules
  */
-public interface ITemplate
+public interface ITemplate extends Closeable
 {
+    /**
+     * name of the shared asset directory within the template output directory,
+     * grammar output directories with this name are reported as errors
+     */
+    String ASSETS = "assets";
 
     /**
      * returns the index file
@@ -23,14 +23,16 @@
 
 package de.flashpixx.rrd_antlr4.generator;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.SortedSetMultimap;
+import com.google.common.collect.TreeMultimap;
 import de.flashpixx.rrd_antlr4.CCommon;
 import de.flashpixx.rrd_antlr4.engine.template.ETemplate;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.maven.doxia.sink.Sink;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.reporting.AbstractMavenReport;
 import org.apache.maven.reporting.AbstractMavenReportRenderer;
 import org.apache.maven.reporting.MavenReportRenderer;
@@ -62,9 +64,14 @@ public final class CPlugin extends IBaseGenerator
      */
     private final MavenReportRenderer m_report;
     /**
-     * map with grammar files, pair of template name and link
+     * Maven log
      */
-    private final Multimap<File, Pair<String, String>> m_files = HashMultimap.create();
+    private final Log m_log;
+    /**
+     * map with grammar files, pair of template name and link, sorted by
+     * grammar file and template name and synchronized for concurrent generating
+     */
+    private final SortedSetMultimap<File, Pair<String, String>> m_files = Multimaps.synchronizedSortedSetMultimap( TreeMultimap.create() );
 
 
     /**
@@ -77,16 +84,20 @@ public final class CPlugin extends IBaseGenerator
      * @param p_imports set with imported grammar files
      * @param p_docuclean set with documentation strings
      * @param p_templates array with exporting templates
+     * @param p_cache directory of the persistent model cache or null
+     * @param p_sharedassets write static template files once into a shared asset directory
      */
     public CPlugin( final AbstractMavenReport p_report, final String p_reporttitle, final File p_baseoutputdirectory, final File p_grammarbase,
-                    final Set<File> p_imports, final Set<String> p_docuclean, final Set<ETemplate> p_templates
+                    final Set<File> p_imports, final Set<String> p_docuclean, final Set<ETemplate> p_templates,
+                    final File p_cache, final boolean p_sharedassets
     )
     {
-        super( p_baseoutputdirectory, p_imports, p_docuclean, p_templates );
+        super( p_baseoutputdirectory, p_imports, p_docuclean, p_templates, p_cache, p_sharedassets );
         m_grammarbase = p_grammarbase;
         m_reporttitle = p_reporttitle;
         m_report = new CReportGenerator( p_report.getSink() );
         m_reportdirectory = p_report.getReportOutputDirectory();
+        m_log = p_report.getLog();
     }
 
 
@@ -94,7 +105,7 @@ public final class CPlugin extends IBaseGenerator
     @Override
     public final IGenerator finish()
     {
-        if ( !m_error )
+        if ( !this.hasError() )
             m_report.render();
         return this;
     }
@@ -105,11 +116,17 @@ public final class CPlugin extends IBaseGenerator
         return new File( m_grammarbase.toURI().relativize( p_grammar.toURI() ).toString() );
     }
 
+    @Override
+    protected final IGenerator processwarnings( final Collection<String> p_messages )
+    {
+        p_messages.forEach( m_log::warn );
+        return this;
+    }
+
     @Override
     protected final IGenerator processmessages( final File p_grammar, final File p_outputdirectory, final Collection<String> p_messages )
     {
-        m_error = !p_messages.isEmpty();
-        if ( !m_error )
+        if ( p_messages.isEmpty() )
             m_templates
                 .stream()
                 // generate template to get template data
@@ -158,24 +175,27 @@ public final class CPlugin extends IBaseGenerator
             this.startTable();
             this.tableHeader( ArrayUtils.add( m_templates.stream().map( i -> "" ).toArray( String[]::new ), 0, "Grammar" ) );
 
-            m_files.asMap().entrySet().forEach( i -> {
+            synchronized ( m_files )
+            {
+                m_files.asMap().entrySet().forEach( i -> {
 
-                sink.tableRow();
+                    sink.tableRow();
 
-                sink.tableCell();
-                sink.text( m_grammarbase.toURI().relativize( i.getKey().toURI() ).toString() );
-                sink.tableCell_();
+                    sink.tableCell();
+                    sink.text( m_grammarbase.toURI().relativize( i.getKey().toURI() ).toString() );
+                    sink.tableCell_();
 
-                i.getValue()
-                    .forEach( j -> {
-                        sink.tableCell();
-                        sink.link( j.getRight() );
-                        sink.text( j.getLeft() );
-                        sink.tableCell_();
-                    } );
+                    i.getValue()
+                        .forEach( j -> {
+                            sink.tableCell();
+                            sink.link( j.getRight() );
+                            sink.text( j.getLeft() );
+                            sink.tableCell_();
+                        } );
 
-                sink.tableRow_();
-            } );
+                    sink.tableRow_();
+                } );
+            }
             this.endTable();
 
             this.endSection();
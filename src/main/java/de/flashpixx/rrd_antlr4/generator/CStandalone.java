@@ -23,11 +23,15 @@
 
 package de.flashpixx.rrd_antlr4.generator;
 
+import de.flashpixx.rrd_antlr4.CCommon;
 import de.flashpixx.rrd_antlr4.engine.template.ETemplate;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 
 /**
@@ -35,6 +39,10 @@ import java.util.Set;
  */
 public final class CStandalone extends IBaseGenerator
 {
+    /**
+     * error messages of each grammar file, sorted by file
+     */
+    private final ConcurrentNavigableMap<File, Collection<String>> m_messages = new ConcurrentSkipListMap<>();
 
     /**
      * ctor
@@ -43,11 +51,14 @@ public final class CStandalone extends IBaseGenerator
      * @param p_imports set with imported grammar files
      * @param p_docuclean set with documentation strings
      * @param p_templates array with exporting templates
+     * @param p_cache directory of the persistent model cache or null
+     * @param p_sharedassets write static template files once into a shared asset directory
      */
-    public CStandalone( final File p_baseoutputdirectory, final Set<File> p_imports, final Set<String> p_docuclean, final Set<ETemplate> p_templates
+    public CStandalone( final File p_baseoutputdirectory, final Set<File> p_imports, final Set<String> p_docuclean, final Set<ETemplate> p_templates,
+                        final File p_cache, final boolean p_sharedassets
     )
     {
-        super( p_baseoutputdirectory, p_imports, p_docuclean, p_templates );
+        super( p_baseoutputdirectory, p_imports, p_docuclean, p_templates, p_cache, p_sharedassets );
     }
 
     @Override
@@ -59,8 +70,28 @@ public final class CStandalone extends IBaseGenerator
     @Override
     protected IGenerator processmessages( final File p_grammar, final File p_outputdirectory,  final Collection<String> p_messages )
     {
-        m_error = !p_messages.isEmpty();
-        p_messages.forEach( System.err::println );
+        if ( !p_messages.isEmpty() )
+            m_messages.put( p_grammar, p_messages );
+        return this;
+    }
+
+    @Override
+    protected final IGenerator processwarnings( final Collection<String> p_messages )
+    {
+        p_messages.forEach( i -> System.err.println( CCommon.languagestring( this, "warning", i ) ) );
+        return this;
+    }
+
+    @Override
+    public final IGenerator finish()
+    {
+        // messages are printed after all grammar files are finished, so the output order is stable,
+        // printed messages are removed, so each run of the watch mode prints its own messages only
+        for ( Map.Entry<File, Collection<String>> l_entry = m_messages.pollFirstEntry(); l_entry != null; l_entry = m_messages.pollFirstEntry() )
+        {
+            final File l_grammar = l_entry.getKey();
+            l_entry.getValue().forEach( i -> System.err.println( CCommon.languagestring( this, "message", l_grammar, i ) ) );
+        }
         return this;
     }
 
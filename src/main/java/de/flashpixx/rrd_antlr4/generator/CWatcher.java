@@ -0,0 +1,253 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4.generator;
+
+import de.flashpixx.rrd_antlr4.CCommon;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * watches grammar and import directories and generates
+ * the changed grammar files and all grammar files which
+ * import a changed file again
+ */
+public final class CWatcher
+{
+    /**
+     * debounce time in milliseconds, events are
+     * coalesced until no event occurs within this time
+     */
+    private static final long DEBOUNCE = 250;
+    /**
+     * generator
+     */
+    private final IGenerator m_generator;
+    /**
+     * supplier of the current grammar files
+     */
+    private final Supplier<Stream<File>> m_grammars;
+    /**
+     * directories which are watched recursively
+     */
+    private final Collection<File> m_directories;
+    /**
+     * directories which are not watched, e.g. the output directory,
+     * so that generated files do not trigger a new generation
+     */
+    private final Collection<File> m_excludes;
+    /**
+     * canonical paths of the excluded directories
+     */
+    private Collection<Path> m_excludepaths = Collections.emptySet();
+    /**
+     * number of worker threads
+     */
+    private final int m_threads;
+
+    /**
+     * ctor
+     *
+     * @param p_generator generator
+     * @param p_grammars supplier of the current grammar files
+     * @param p_directories directories which are watched recursively
+     * @param p_excludes directories which are not watched, e.g. output and cache directory
+     * @param p_threads number of worker threads
+     */
+    public CWatcher( final IGenerator p_generator, final Supplier<Stream<File>> p_grammars, final Collection<File> p_directories,
+                     final Collection<File> p_excludes, final int p_threads
+    )
+    {
+        m_generator = p_generator;
+        m_grammars = p_grammars;
+        m_directories = p_directories;
+        m_excludes = p_excludes;
+        m_threads = p_threads;
+    }
+
+    /**
+     * watches the directories until the thread is interrupted
+     *
+     * @throws IOException on IO errors of the watch service
+     */
+    public final void run() throws IOException
+    {
+        try ( final WatchService l_service = FileSystems.getDefault().newWatchService() )
+        {
+            m_excludepaths = m_excludes.stream().map( i -> CWatcher.canonical( i.toPath() ) ).collect( Collectors.toSet() );
+            for ( final File l_directory : m_directories )
+                this.register( l_service, l_directory.toPath() );
+
+            while ( !Thread.currentThread().isInterrupted() )
+                this.generate( this.changes( l_service ) );
+        }
+        catch ( final InterruptedException l_exception )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * generates all grammar files, which depend on the changed files
+     *
+     * @param p_changed canonical paths of the changed files or null if all grammar files must be checked
+     */
+    private void generate( final Set<Path> p_changed )
+    {
+        final List<File> l_grammars = m_grammars.get()
+                                                .filter( i -> ( p_changed == null ) || ( m_generator.dependson( i, p_changed ) ) )
+                                                .collect( Collectors.toList() );
+        if ( l_grammars.isEmpty() )
+            return;
+
+        System.out.println( CCommon.languagestring( this, "generate", l_grammars.stream().map( File::toString ).collect( Collectors.joining( ", " ) ) ) );
+        m_generator.generate( l_grammars.stream(), m_threads ).finish();
+    }
+
+    /**
+     * waits for changes and coalesces all events
+     * until no further event occurs within the debounce time
+     *
+     * @param p_service watch service
+     * @return canonical paths of the changed files or null on event overflow
+     * @throws InterruptedException if the thread is interrupted
+     * @throws IOException on IO errors
+     */
+    private Set<Path> changes( final WatchService p_service ) throws InterruptedException, IOException
+    {
+        final Set<Path> l_changed = new HashSet<>();
+        boolean l_overflow = false;
+
+        for ( WatchKey l_key = p_service.take(); l_key != null; l_key = p_service.poll( DEBOUNCE, TimeUnit.MILLISECONDS ) )
+        {
+            final Path l_directory = (Path) l_key.watchable();
+            for ( final WatchEvent<?> l_event : l_key.pollEvents() )
+            {
+                if ( StandardWatchEventKinds.OVERFLOW.equals( l_event.kind() ) )
+                {
+                    l_overflow = true;
+                    continue;
+                }
+
+                final Path l_path = CWatcher.canonical( l_directory.resolve( (Path) l_event.context() ) );
+                if ( this.excluded( l_path ) )
+                    continue;
+
+                if ( ( StandardWatchEventKinds.ENTRY_CREATE.equals( l_event.kind() ) ) && ( Files.isDirectory( l_path ) ) )
+                    this.register( p_service, l_path );
+
+                l_changed.add( l_path );
+            }
+            l_key.reset();
+        }
+
+        // on overflow events are lost, so all grammar files are checked against the build-state
+        return l_overflow ? null : l_changed;
+    }
+
+    /**
+     * checks if a path is located in an excluded directory
+     *
+     * @param p_path canonical path
+     * @return exclude flag
+     */
+    private boolean excluded( final Path p_path )
+    {
+        return m_excludepaths.stream().anyMatch( p_path::startsWith );
+    }
+
+    /**
+     * returns the canonical path of an existing file or
+     * the normalized absolute path of a non-existing file
+     *
+     * @param p_path path
+     * @return canonical path
+     */
+    private static Path canonical( final Path p_path )
+    {
+        try
+        {
+            return p_path.toRealPath();
+        }
+        catch ( final IOException l_exception )
+        {
+            return p_path.toAbsolutePath().normalize();
+        }
+    }
+
+    /**
+     * registers a directory and all subdirectories
+     * except the excluded directories
+     *
+     * @param p_service watch service
+     * @param p_directory directory
+     * @throws IOException on IO errors
+     */
+    private void register( final WatchService p_service, final Path p_directory ) throws IOException
+    {
+        final List<Path> l_directories = new ArrayList<>();
+        Files.walkFileTree( p_directory, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public final FileVisitResult preVisitDirectory( final Path p_path, final BasicFileAttributes p_attributes )
+            {
+                if ( CWatcher.this.excluded( CWatcher.canonical( p_path ) ) )
+                    return FileVisitResult.SKIP_SUBTREE;
+
+                l_directories.add( p_path );
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+
+        for ( final Path l_directory : l_directories )
+            l_directory.toRealPath().register(
+                p_service,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE
+            );
+    }
+
+}
@@ -23,16 +23,38 @@
 
 package de.flashpixx.rrd_antlr4.generator;
 
+import com.google.common.hash.Hashing;
+import de.flashpixx.rrd_antlr4.CCommon;
+import de.flashpixx.rrd_antlr4.antlr.CTerminalCache;
+import de.flashpixx.rrd_antlr4.engine.CBuildManifest;
 import de.flashpixx.rrd_antlr4.engine.CEngine;
+import de.flashpixx.rrd_antlr4.engine.CGrammarCache;
+import de.flashpixx.rrd_antlr4.engine.CGrammarResolver;
+import de.flashpixx.rrd_antlr4.engine.template.CAssetWriter;
 import de.flashpixx.rrd_antlr4.engine.template.ETemplate;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -47,9 +69,9 @@ public abstract class IBaseGenerator implements IGenerator
      */
     private static final CEngine ENGINE = new CEngine();
     /**
-     * result generator error
+     * file name of the build-state manifest within the base output directory
      */
-    protected boolean m_error;
+    private static final String MANIFEST = ".rrd-manifest";
     /**
      * set of generator templates
      */
@@ -59,13 +81,29 @@ public abstract class IBaseGenerator implements IGenerator
      */
     protected final File m_baseoutput;
     /**
-     * map with imported grammar files
+     * static template files are written once into a shared asset directory
      */
-    private final Map<String, File> m_imports;
+    private final boolean m_sharedassets;
     /**
-     * set with regex string for documentation cleaning
+     * result generator error, is set if any grammar fails
      */
-    private final Set<String> m_docuclean;
+    private final AtomicBoolean m_error = new AtomicBoolean();
+    /**
+     * run-scoped resolver of grammar files and imports
+     */
+    private final CGrammarResolver m_resolver;
+    /**
+     * build-state manifest to skip unchanged grammar files
+     */
+    private final CBuildManifest m_manifest;
+    /**
+     * number of skipped grammar files
+     */
+    private final AtomicLong m_skipped = new AtomicLong();
+    /**
+     * warnings of the current run, which do not fail a grammar file
+     */
+    private final Queue<String> m_warnings = new ConcurrentLinkedQueue<>();
 
 
     /**
@@ -75,13 +113,49 @@ public abstract class IBaseGenerator implements IGenerator
      * @param p_templates array with exporting templates
      * @param p_imports set with imported grammar files
      * @param p_docuclean set with documentation strings
+     * @param p_cache directory of the persistent model cache or null
+     * @param p_sharedassets write static template files once into a shared asset directory
      */
-    protected IBaseGenerator( final File p_baseoutputdirectory, final Set<File> p_imports, final Set<String> p_docuclean, final Set<ETemplate> p_templates )
+    protected IBaseGenerator( final File p_baseoutputdirectory, final Set<File> p_imports, final Set<String> p_docuclean, final Set<ETemplate> p_templates,
+                              final File p_cache, final boolean p_sharedassets
+    )
     {
-        m_docuclean = p_docuclean;
+        final Map<String, File> l_imports = Collections.unmodifiableMap(
+            p_imports.parallelStream().collect( Collectors.toMap( i -> FilenameUtils.removeExtension( i.getName() ), i -> i ) )
+        );
+
         m_templates = p_templates;
         m_baseoutput = p_baseoutputdirectory;
-        m_imports = Collections.unmodifiableMap( p_imports.parallelStream().collect( Collectors.toMap( i -> FilenameUtils.removeExtension( i.getName() ), i -> i ) ) );
+        m_sharedassets = p_sharedassets;
+        m_resolver = new CGrammarResolver( l_imports, p_docuclean, p_cache == null ? null : new CGrammarCache( p_cache, p_docuclean ) );
+        m_manifest = new CBuildManifest( new File( p_baseoutputdirectory, MANIFEST ), this.fingerprint( l_imports, p_docuclean ) );
+    }
+
+    /**
+     * creates the fingerprint of the configuration, which changes
+     * the output of all grammar files
+     *
+     * @param p_imports map with imported grammar files
+     * @param p_docuclean set with documentation strings
+     * @return fingerprint
+     */
+    private String fingerprint( final Map<String, File> p_imports, final Set<String> p_docuclean )
+    {
+        return Hashing.sha256().hashString(
+            Stream.of(
+                Stream.of(
+                    this.getClass().getName(),
+                    CCommon.configuration().getString( "version" ),
+                    CCommon.configuration().getString( "buildcommit" ),
+                    Locale.getDefault().toLanguageTag(),
+                    String.valueOf( m_sharedassets )
+                ),
+                m_templates.stream().map( Enum::name ).sorted(),
+                p_docuclean.stream().sorted(),
+                p_imports.entrySet().stream().map( i -> i.getKey() + "=" + i.getValue().getAbsolutePath() ).sorted()
+            ).flatMap( i -> i ).collect( Collectors.joining( "\n" ) ),
+            StandardCharsets.UTF_8
+        ).toString();
     }
 
 
@@ -89,31 +163,102 @@ public abstract class IBaseGenerator implements IGenerator
     public final IGenerator generate( final File p_grammar )
     {
         final File l_outputdirectory = this.processoutputdirectory( p_grammar );
+        if ( m_manifest.uptodate( p_grammar ) )
+        {
+            m_skipped.incrementAndGet();
+            return this.processmessages( p_grammar, l_outputdirectory, Collections.<String>emptySet() );
+        }
+
+        CEngine.CResult l_result = null;
+        Collection<String> l_messages;
         try
         {
-            return this.processmessages(
-                p_grammar, l_outputdirectory,
-                ENGINE.generate(
-                    m_baseoutput,
-                    l_outputdirectory,
-                    p_grammar,
-                    m_docuclean,
-                    m_imports,
-                    m_templates
-                )
+            l_result = ENGINE.generate(
+                m_baseoutput,
+                l_outputdirectory,
+                p_grammar,
+                m_resolver,
+                m_templates,
+                m_sharedassets
             );
+            l_messages = l_result.messages();
         }
         catch ( final IOException l_exception )
         {
-            return this.processmessages( p_grammar, l_outputdirectory, Collections.unmodifiableSet( Stream.of( l_exception.getMessage() ).collect( Collectors.toSet() ) ) );
+            l_messages = Collections.unmodifiableSet( Stream.of( l_exception.getMessage() ).collect( Collectors.toSet() ) );
         }
 
+        if ( !l_messages.isEmpty() )
+            this.failed( p_grammar );
+        else
+            try
+            {
+                m_manifest.put( p_grammar, l_result.inputs(), l_result.outputs() );
+            }
+            catch ( final IOException l_exception )
+            {
+                m_warnings.add( l_exception.getMessage() );
+            }
+
+        return this.processmessages( p_grammar, l_outputdirectory, l_messages );
+    }
+
+    @Override
+    public final IGenerator generate( final Stream<File> p_grammar, final int p_threads )
+    {
+        // the caches are shared by all runs of the JVM, so only their statistic is reset
+        CTerminalCache.reset();
+        CAssetWriter.reset();
+
+        final ExecutorService l_pool = Executors.newFixedThreadPool( p_threads > 0 ? p_threads : Runtime.getRuntime().availableProcessors() );
+        try
+        {
+            // all grammar files are submitted first, so the pool is busy until the last one is finished
+            p_grammar.map( i -> new ImmutablePair<>( i, l_pool.submit( () -> this.generate( i ) ) ) )
+                     .collect( Collectors.toList() )
+                     .forEach( i -> this.await( i.getLeft(), i.getRight() ) );
+        }
+        finally
+        {
+            l_pool.shutdown();
+        }
+
+        // the manifest is only an optimization, so on write errors all grammar files are generated on the next run
+        try
+        {
+            m_manifest.write();
+        }
+        catch ( final IOException l_exception )
+        {
+            m_warnings.add( l_exception.getMessage() );
+        }
+
+        final List<String> l_warnings = new ArrayList<>( m_resolver.warnings() );
+        for ( String l_warning = m_warnings.poll(); l_warning != null; l_warning = m_warnings.poll() )
+            l_warnings.add( l_warning );
+        return this.processwarnings( l_warnings );
+    }
+
+    @Override
+    public final boolean dependson( final File p_grammar, final Collection<Path> p_files )
+    {
+        return m_manifest.dependson( p_grammar, p_files );
     }
 
     @Override
     public final boolean hasError()
     {
-        return m_error;
+        return m_error.get();
+    }
+
+    @Override
+    public final Map<String, Number> statistic()
+    {
+        final Map<String, Number> l_statistic = new LinkedHashMap<>( m_resolver.statistic() );
+        l_statistic.put( CCommon.languagestring( IBaseGenerator.class, "statisticskipped" ), m_skipped.get() );
+        l_statistic.putAll( CTerminalCache.statistic() );
+        l_statistic.putAll( CAssetWriter.statistic() );
+        return Collections.unmodifiableMap( l_statistic );
     }
 
     @Override
@@ -122,6 +267,59 @@ public abstract class IBaseGenerator implements IGenerator
         return this;
     }
 
+    /**
+     * waits for a grammar task and reports an unexpected failure as error
+     *
+     * @param p_grammar grammar file
+     * @param p_task task of the grammar
+     */
+    private void await( final File p_grammar, final Future<?> p_task )
+    {
+        try
+        {
+            p_task.get();
+        }
+        catch ( final InterruptedException l_exception )
+        {
+            Thread.currentThread().interrupt();
+            this.failed( p_grammar, l_exception );
+        }
+        catch ( final ExecutionException l_exception )
+        {
+            this.failed( p_grammar, l_exception.getCause() );
+        }
+    }
+
+    /**
+     * reports an exception of a grammar as error
+     *
+     * @param p_grammar grammar file
+     * @param p_exception exception
+     */
+    private void failed( final File p_grammar, final Throwable p_exception )
+    {
+        this.failed( p_grammar );
+        this.processmessages( p_grammar, this.processoutputdirectory( p_grammar ), Collections.singleton( p_exception.toString() ) );
+    }
+
+    /**
+     * sets the error flag and removes the build state of a failed grammar file
+     *
+     * @param p_grammar grammar file
+     */
+    private void failed( final File p_grammar )
+    {
+        m_error.set( true );
+        try
+        {
+            m_manifest.remove( p_grammar );
+        }
+        catch ( final IOException l_exception )
+        {
+            m_warnings.add( l_exception.getMessage() );
+        }
+    }
+
     /**
      * processes the output directory
      *
@@ -131,7 +329,16 @@ public abstract class IBaseGenerator implements IGenerator
     protected abstract File processoutputdirectory( final File p_grammar );
 
     /**
-     * processes the error messages
+     * processes warnings, which do not fail a grammar file,
+     * it is called after all grammar files are finished
+     *
+     * @param p_messages warning messages
+     * @return generator self reference
+     */
+    protected abstract IGenerator processwarnings( final Collection<String> p_messages );
+
+    /**
+     * processes the error messages, can be called concurrently
      *
      * @param p_grammar input grammar file
      * @param p_outputdirectory output directory
@@ -24,6 +24,10 @@
 package de.flashpixx.rrd_antlr4.generator;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Stream;
 
 
 /**
@@ -39,6 +43,26 @@ public interface IGenerator
      */
     IGenerator generate( final File p_grammar );
 
+    /**
+     * generates exports for grammar files concurrently
+     * and returns if all grammar files are finished
+     *
+     * @param p_grammar stream of grammar files
+     * @param p_threads number of worker threads, a value less or equal zero uses all available cores
+     * @return generator self reference
+     */
+    IGenerator generate( final Stream<File> p_grammar, final int p_threads );
+
+    /**
+     * checks if a grammar file must be generated again
+     * if any of the files has been changed
+     *
+     * @param p_grammar grammar file
+     * @param p_files canonical paths of changed files
+     * @return flag that the grammar file or any transitive import is changed
+     */
+    boolean dependson( final File p_grammar, final Collection<Path> p_files );
+
     /**
      * boolean error flag
      *
@@ -46,6 +70,13 @@ public interface IGenerator
      */
     boolean hasError();
 
+    /**
+     * returns the run statistic
+     *
+     * @return map with statistic name and value
+     */
+    Map<String, Number> statistic();
+
     /**
      * finishing after all grammar files are proceed
      *
@@ -0,0 +1,132 @@
+/*
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ */
+"use strict"
+jQuery(function(){
+
+    // height of a rule list entry in pixel, must be equal to the layout
+    var ROWHEIGHT = 20;
+    // number of visible rule list entries
+    var ROWS = 30;
+    // number of entries, which are created outside the visible range
+    var OVERSCAN = 10;
+
+
+    // constructors, which can be called by the diagram data
+    var CONSTRUCTOR = {
+        Diagram: Diagram,
+        Sequence: Sequence,
+        Choice: Choice,
+        Optional: Optional,
+        ZeroOrMore: ZeroOrMore,
+        OneOrMore: OneOrMore,
+        Terminal: Terminal,
+        NonTerminal: NonTerminal,
+        Comment: Comment
+    };
+
+
+    // builds a diagram item of the data, an array is a call
+    // of the constructor in the first entry with the other
+    // entries as arguments, any other value is an argument
+    function build( p_data ) {
+        return Array.isArray( p_data )
+               ? CONSTRUCTOR[p_data[0]].apply( null, p_data.slice( 1 ).map( build ) )
+               : p_data;
+    }
+
+    // creates the diagram of a placeholder and replaces the inert definition
+    function diagram( p_placeholder ) {
+        var l_definition = p_placeholder.querySelector( "script[type='application/json']" );
+        if ( !l_definition )
+            return;
+
+        var l_svg = build( JSON.parse( l_definition.textContent ) ).toSVG();
+        l_svg.id = p_placeholder.getAttribute( "data-diagram" );
+        p_placeholder.replaceChild( l_svg, l_definition );
+    }
+
+    // creates diagrams only if they are near to the viewport
+    var l_placeholder = document.querySelectorAll( "p.diagram" );
+    if ( "IntersectionObserver" in window ) {
+        var l_observer = new IntersectionObserver( function( p_entries ) {
+            p_entries.forEach( function( p_entry ) {
+                if ( !p_entry.isIntersecting )
+                    return;
+
+                l_observer.unobserve( p_entry.target );
+                diagram( p_entry.target );
+            });
+        }, { rootMargin: "500px 0px" } );
+
+        Array.prototype.forEach.call( l_placeholder, function( p_item ) { l_observer.observe( p_item ); } );
+
+        // all diagrams must exist on printing
+        window.addEventListener( "beforeprint", function() {
+            l_observer.disconnect();
+            Array.prototype.forEach.call( l_placeholder, diagram );
+        });
+    }
+    else
+        Array.prototype.forEach.call( l_placeholder, diagram );
+
+
+    // virtual rule list, only the visible entries exist as list items,
+    // the padding of the list is used as space for all other entries
+    jQuery( ".rulelist" ).each( function() {
+        var l_list = this.querySelector( "ul" );
+        var l_rules = JSON.parse( this.querySelector( "script[type='application/json']" ).textContent );
+        var l_start = -1;
+        var l_frame = 0;
+
+        l_list.style.maxHeight = ROWS * ROWHEIGHT + "px";
+
+        function render() {
+            l_frame = 0;
+            var l_first = Math.max( 0, Math.min( Math.floor( l_list.scrollTop / ROWHEIGHT ) - OVERSCAN, l_rules.length - ROWS - 2 * OVERSCAN ) );
+            if ( l_first === l_start )
+                return;
+
+            var l_last = Math.min( l_rules.length, l_first + ROWS + 2 * OVERSCAN );
+            var l_items = document.createDocumentFragment();
+            for ( var i = l_first; i < l_last; i++ ) {
+                var l_item = document.createElement( "li" );
+                var l_link = l_item.appendChild( document.createElement( "a" ) );
+                l_link.href = "#" + l_rules[i][0];
+                l_link.textContent = l_rules[i][1];
+                l_items.appendChild( l_item );
+            }
+
+            l_start = l_first;
+            l_list.style.paddingTop = l_first * ROWHEIGHT + "px";
+            l_list.style.paddingBottom = ( l_rules.length - l_last ) * ROWHEIGHT + "px";
+            while ( l_list.firstChild )
+                l_list.removeChild( l_list.firstChild );
+            l_list.appendChild( l_items );
+        }
+
+        l_list.addEventListener( "scroll", function() {
+            if ( !l_frame )
+                l_frame = window.requestAnimationFrame( render );
+        });
+        render();
+    });
+
+});
\ No newline at end of file
@@ -0,0 +1,172 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4;
+
+import de.flashpixx.rrd_antlr4.antlr.CASTVisitorPCRE;
+import de.flashpixx.rrd_antlr4.antlr.CCommon;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarCharacterClass;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarElement;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarNegation;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarSimpleElement;
+import de.flashpixx.rrd_antlr4.antlr.PCRELexer;
+import de.flashpixx.rrd_antlr4.antlr.PCREParser;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.junit.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * test of the regular expression literal merging
+ */
+public final class TestCASTVisitorPCRE extends IBaseTest
+{
+    /**
+     * length of the long literals
+     */
+    private static final int LENGTH = 10000;
+    /**
+     * number of benchmark iterations
+     */
+    private static final int ITERATION = 200;
+
+    /**
+     * test a long literal, which is merged into one terminal
+     */
+    @Test
+    public final void longliteral()
+    {
+        final String l_literal = literal( LENGTH );
+        final IGrammarElement l_element = (IGrammarElement) new CASTVisitorPCRE().visit( tree( l_literal ) );
+
+        assertTrue( l_element instanceof IGrammarSimpleElement<?> );
+        assertEquals( l_literal, ( (IGrammarSimpleElement<?>) l_element ).get() );
+        assertEquals( IGrammarElement.ECardinality.NONE, l_element.cardinality() );
+    }
+
+    /**
+     * test a long literal with a trailing quantifier,
+     * the quantifier of the last element is used
+     */
+    @Test
+    public final void longliteralquantifier()
+    {
+        final String l_literal = literal( LENGTH );
+        final IGrammarElement l_element = (IGrammarElement) new CASTVisitorPCRE().visit( tree( l_literal + "+" ) );
+
+        assertTrue( l_element instanceof IGrammarSimpleElement<?> );
+        assertEquals( l_literal, ( (IGrammarSimpleElement<?>) l_element ).get() );
+        assertEquals( IGrammarElement.ECardinality.ONEORMORE, l_element.cardinality() );
+    }
+
+    /**
+     * test a negation in front of a character class
+     */
+    @Test
+    public final void negation()
+    {
+        final IGrammarElement l_element = CCommon.terminalvalue( "~[ab]" );
+
+        assertTrue( l_element instanceof IGrammarNegation );
+        assertTrue( ( (IGrammarNegation) l_element ).inner() instanceof IGrammarCharacterClass );
+        assertArrayEquals( new int[]{'a', 'b'}, ( (IGrammarCharacterClass) ( (IGrammarNegation) l_element ).inner() ).ranges() );
+    }
+
+    /**
+     * test a negated character class and a leading
+     * closing bracket, which is part of the class
+     */
+    @Test
+    public final void negatedclass()
+    {
+        final IGrammarElement l_element = CCommon.terminalvalue( "[^]ab]" );
+
+        assertTrue( l_element instanceof IGrammarNegation );
+        assertTrue( ( (IGrammarNegation) l_element ).inner() instanceof IGrammarCharacterClass );
+        assertArrayEquals( new int[]{']', ']', 'a', 'b'}, ( (IGrammarCharacterClass) ( (IGrammarNegation) l_element ).inner() ).ranges() );
+    }
+
+    /**
+     * throughput benchmark of the visitor on long literals,
+     * the benchmark is not part of the unit tests and runs only manually
+     */
+    public final void benchmark()
+    {
+        final ParseTree l_tree = tree( literal( LENGTH ) );
+        final CASTVisitorPCRE l_visitor = new CASTVisitorPCRE();
+
+        final long l_start = System.nanoTime();
+        IntStream.range( 0, ITERATION ).forEach( i -> l_visitor.visit( l_tree ) );
+        final long l_time = System.nanoTime() - l_start;
+
+        System.out.println( String.format(
+            "regular expression literal merging: %d ns / character, %d characters / ms",
+            l_time / ( (long) ITERATION * LENGTH ),
+            (long) ITERATION * LENGTH * 1000000L / Math.max( 1, l_time )
+        ) );
+    }
+
+    /**
+     * manual test
+     *
+     * @param p_args arguments
+     */
+    public static void main( final String[] p_args )
+    {
+        final TestCASTVisitorPCRE l_test = new TestCASTVisitorPCRE();
+        l_test.invoketest();
+        l_test.benchmark();
+    }
+
+    /**
+     * creates a literal without any regular expression characters
+     *
+     * @param p_length length
+     * @return literal
+     */
+    private static String literal( final int p_length )
+    {
+        final StringBuilder l_literal = new StringBuilder( p_length );
+        IntStream.range( 0, p_length ).forEach( i -> l_literal.append( (char) ( 'a' + i % 26 ) ) );
+        return l_literal.toString();
+    }
+
+    /**
+     * parses a regular expression
+     *
+     * @param p_expression expression
+     * @return parse tree
+     */
+    private static ParseTree tree( final String p_expression )
+    {
+        return new PCREParser( new CommonTokenStream( new PCRELexer( CharStreams.fromString( p_expression ) ) ) ).parse();
+    }
+
+}
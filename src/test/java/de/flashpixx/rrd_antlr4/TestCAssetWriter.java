@@ -0,0 +1,119 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4;
+
+import de.flashpixx.rrd_antlr4.engine.template.CAssetWriter;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * test of the checksum-aware asset writer
+ */
+public final class TestCAssetWriter extends IBaseTest
+{
+    /**
+     * resource file
+     */
+    private static final String RESOURCE = "de/flashpixx/rrd_antlr4/template/html/layout.css";
+    /**
+     * statistic key of the skipped bytes
+     */
+    private static final String SKIPPED = CCommon.languagestring( CAssetWriter.class, "statisticskipped" );
+
+    /**
+     * test that identical files are skipped
+     * and changed files are written again
+     *
+     * @throws IOException on IO error
+     * @throws URISyntaxException on URL error
+     */
+    @Test
+    public final void skip() throws IOException, URISyntaxException
+    {
+        final Path l_directory = Files.createTempDirectory( "rrd-asset" );
+        try
+        {
+            final Path l_first = l_directory.resolve( "first/layout.css" );
+            final Path l_second = l_directory.resolve( "second/layout.css" );
+
+            CAssetWriter.write( RESOURCE, l_first );
+            final byte[] l_content = Files.readAllBytes( l_first );
+            final long l_skipped = TestCAssetWriter.statistic( SKIPPED );
+
+            // identical file is skipped
+            CAssetWriter.write( RESOURCE, l_first );
+            assertEquals( l_skipped + l_content.length, TestCAssetWriter.statistic( SKIPPED ) );
+
+            // second target is copied from the first one, so a change of the first one does not change it
+            CAssetWriter.write( RESOURCE, l_second );
+            assertArrayEquals( l_content, Files.readAllBytes( l_second ) );
+            Files.write( l_first, "changed".getBytes( StandardCharsets.UTF_8 ), StandardOpenOption.TRUNCATE_EXISTING );
+            assertArrayEquals( l_content, Files.readAllBytes( l_second ) );
+
+            // changed file is written again
+            Files.write( l_second, "changed".getBytes( StandardCharsets.UTF_8 ) );
+            CAssetWriter.write( RESOURCE, l_second );
+            assertArrayEquals( l_content, Files.readAllBytes( l_second ) );
+            assertEquals( l_skipped + l_content.length, TestCAssetWriter.statistic( SKIPPED ) );
+        }
+        finally
+        {
+            FileUtils.deleteDirectory( l_directory.toFile() );
+        }
+    }
+
+    /**
+     * manual test
+     *
+     * @param p_args arguments
+     */
+    public static void main( final String[] p_args )
+    {
+        new TestCAssetWriter().invoketest();
+    }
+
+
+    /**
+     * returns a statistic value
+     *
+     * @param p_key statistic key
+     * @return value
+     */
+    private static long statistic( final String p_key )
+    {
+        return CAssetWriter.statistic().get( p_key ).longValue();
+    }
+
+}
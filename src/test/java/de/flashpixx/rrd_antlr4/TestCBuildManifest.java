@@ -0,0 +1,210 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4;
+
+import de.flashpixx.rrd_antlr4.engine.CBuildManifest;
+import de.flashpixx.rrd_antlr4.engine.CGrammarLoader;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * test of the incremental build manifest
+ */
+public final class TestCBuildManifest extends IBaseTest
+{
+    /**
+     * configuration fingerprint
+     */
+    private static final String CONFIGURATION = "configuration";
+    /**
+     * temporary directory
+     */
+    private Path m_directory;
+    /**
+     * manifest file
+     */
+    private File m_file;
+    /**
+     * grammar file
+     */
+    private Path m_grammar;
+    /**
+     * imported grammar file
+     */
+    private Path m_import;
+    /**
+     * output file
+     */
+    private Path m_output;
+
+    /**
+     * creates the grammar and output files
+     *
+     * @throws IOException on IO error
+     */
+    @Before
+    public final void initialize() throws IOException
+    {
+        m_directory = Files.createTempDirectory( "rrd-manifest" ).toRealPath();
+        m_file = m_directory.resolve( "manifest" ).toFile();
+        m_grammar = Files.write( m_directory.resolve( "Sample.g4" ), "grammar Sample;\nimport Base;\n".getBytes( StandardCharsets.UTF_8 ) );
+        m_import = Files.write( m_directory.resolve( "Base.g4" ), "grammar Base;\nrule : 'a' ;\n".getBytes( StandardCharsets.UTF_8 ) );
+        m_output = Files.write( m_directory.resolve( "index.htm" ), "<html/>".getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * removes the temporary directory
+     *
+     * @throws IOException on IO error
+     */
+    @After
+    public final void cleanup() throws IOException
+    {
+        FileUtils.deleteDirectory( m_directory.toFile() );
+    }
+
+    /**
+     * test that a stored grammar is up-to-date after rereading the manifest
+     *
+     * @throws IOException on IO error
+     */
+    @Test
+    public final void uptodate() throws IOException
+    {
+        assertFalse( new CBuildManifest( m_file, CONFIGURATION ).uptodate( m_grammar.toFile() ) );
+
+        this.store();
+        assertTrue( new CBuildManifest( m_file, CONFIGURATION ).uptodate( m_grammar.toFile() ) );
+    }
+
+    /**
+     * test that a changed configuration fingerprint drops all entries
+     *
+     * @throws IOException on IO error
+     */
+    @Test
+    public final void fingerprint() throws IOException
+    {
+        this.store();
+        assertFalse( new CBuildManifest( m_file, CONFIGURATION + "changed" ).uptodate( m_grammar.toFile() ) );
+    }
+
+    /**
+     * test that a changed import or a deleted output invalidates the entry
+     *
+     * @throws IOException on IO error
+     */
+    @Test
+    public final void invalidation() throws IOException
+    {
+        this.store();
+        Files.write( m_import, "grammar Base;\nrule : 'b' ;\n".getBytes( StandardCharsets.UTF_8 ) );
+        assertFalse( new CBuildManifest( m_file, CONFIGURATION ).uptodate( m_grammar.toFile() ) );
+
+        this.store();
+        Files.delete( m_output );
+        assertFalse( new CBuildManifest( m_file, CONFIGURATION ).uptodate( m_grammar.toFile() ) );
+    }
+
+    /**
+     * test the dependency check of transitive imports
+     *
+     * @throws IOException on IO error
+     */
+    @Test
+    public final void dependson() throws IOException
+    {
+        final Path l_other = m_directory.resolve( "Other.g4" );
+        assertTrue( new CBuildManifest( m_file, CONFIGURATION ).dependson( m_grammar.toFile(), Collections.singleton( l_other ) ) );
+
+        this.store();
+        final CBuildManifest l_manifest = new CBuildManifest( m_file, CONFIGURATION );
+        assertTrue( l_manifest.dependson( m_grammar.toFile(), Collections.singleton( m_import ) ) );
+        assertFalse( l_manifest.dependson( m_grammar.toFile(), Collections.singleton( l_other ) ) );
+
+        l_manifest.remove( m_grammar.toFile() );
+        assertFalse( l_manifest.uptodate( m_grammar.toFile() ) );
+    }
+
+    /**
+     * test that entries of grammar files, which are not used in a run, are dropped on writing
+     *
+     * @throws IOException on IO error
+     */
+    @Test
+    public final void unused() throws IOException
+    {
+        this.store();
+        new CBuildManifest( m_file, CONFIGURATION ).write();
+        assertFalse( new CBuildManifest( m_file, CONFIGURATION ).uptodate( m_grammar.toFile() ) );
+
+        this.store();
+        final CBuildManifest l_manifest = new CBuildManifest( m_file, CONFIGURATION );
+        assertFalse( l_manifest.dependson( m_grammar.toFile(), Collections.singleton( m_directory.resolve( "Other.g4" ) ) ) );
+        l_manifest.write();
+        assertTrue( new CBuildManifest( m_file, CONFIGURATION ).uptodate( m_grammar.toFile() ) );
+    }
+
+    /**
+     * stores the current state of the grammar and writes the manifest
+     *
+     * @throws IOException on IO error
+     */
+    private void store() throws IOException
+    {
+        final Map<Path, String> l_inputs = new HashMap<>();
+        l_inputs.put( m_grammar, CGrammarLoader.hash( CGrammarLoader.read( m_grammar ) ) );
+        l_inputs.put( m_import, CGrammarLoader.hash( CGrammarLoader.read( m_import ) ) );
+
+        new CBuildManifest( m_file, CONFIGURATION )
+            .put( m_grammar.toFile(), l_inputs, Collections.singleton( m_output ) )
+            .write();
+    }
+
+    /**
+     * manual test
+     *
+     * @param p_args arguments
+     */
+    public static void main( final String[] p_args )
+    {
+        new TestCBuildManifest().invoketest();
+    }
+
+}
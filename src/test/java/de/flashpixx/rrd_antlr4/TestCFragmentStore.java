@@ -0,0 +1,124 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4;
+
+import de.flashpixx.rrd_antlr4.engine.template.CFragmentStore;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * test of the spilling fragment store
+ */
+public final class TestCFragmentStore extends IBaseTest
+{
+    /**
+     * number of fragments
+     */
+    private static final int FRAGMENTS = 5000;
+
+    /**
+     * test sorting and overwriting of fragments
+     *
+     * @throws IOException on IO error
+     */
+    @Test
+    public final void order() throws IOException
+    {
+        try ( final CFragmentStore l_store = new CFragmentStore() )
+        {
+            l_store.put( "grammar", "rule", "first" );
+            l_store.put( "Grammar", "b", "b" );
+            l_store.put( "grammar", "A", "a" );
+            l_store.put( "grammar", "rule", "second" );
+
+            assertEquals( "[Grammar.b b]\n[grammar.A a][grammar.rule second]", TestCFragmentStore.walk( l_store ) );
+            assertEquals( 0, l_store.segments() );
+        }
+    }
+
+    /**
+     * test that spilled segments result in the same order
+     * as the in-memory store and are removed on closing
+     *
+     * @throws IOException on IO error
+     */
+    @Test
+    public final void spill() throws IOException
+    {
+        final CFragmentStore l_memory = new CFragmentStore();
+        final CFragmentStore l_spill = new CFragmentStore( 1024 );
+
+        final Random l_random = new Random( 42 );
+        for ( int i = 0; i < FRAGMENTS; i++ )
+        {
+            final String l_grammar = "grammar" + l_random.nextInt( 5 );
+            final String l_rule = "rule" + l_random.nextInt( FRAGMENTS / 2 );
+            final String l_fragment = "fragment " + i;
+
+            l_memory.put( l_grammar, l_rule, l_fragment );
+            l_spill.put( l_grammar, l_rule, l_fragment );
+        }
+
+        assertTrue( l_spill.segments() > 1 );
+        assertEquals( TestCFragmentStore.walk( l_memory ), TestCFragmentStore.walk( l_spill ) );
+
+        l_memory.close();
+        l_spill.close();
+        assertEquals( 0, l_spill.segments() );
+    }
+
+    /**
+     * manual test
+     *
+     * @param p_args arguments
+     */
+    public static void main( final String[] p_args )
+    {
+        new TestCFragmentStore().invoketest();
+    }
+
+
+    /**
+     * walks over the store and writes the fragments
+     * grouped by grammars
+     *
+     * @param p_store store
+     * @return string representation
+     * @throws IOException on IO error
+     */
+    private static String walk( final CFragmentStore p_store ) throws IOException
+    {
+        final StringWriter l_output = new StringWriter();
+        p_store.walk( ( i, j, k ) -> l_output.write( "[" + i + " " + i.fragment() + "]" ), l_output, "\n" );
+        return l_output.toString();
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4;
+
+import de.flashpixx.rrd_antlr4.antlr.CGrammarCodec;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarModel;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarCharacterClass;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarTerminal;
+import de.flashpixx.rrd_antlr4.engine.CGrammarCache;
+import de.flashpixx.rrd_antlr4.engine.CGrammarResolver;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * test of the binary model codec and the persistent model cache
+ */
+public final class TestCGrammarCache extends IBaseTest
+{
+    /**
+     * grammar with documentation, terminals and character classes
+     */
+    private static final String GRAMMAR = "grammar Sample;\n/** sample rule */\nrule : DIGIT+ ( 'a' | OTHER ) ;\nDIGIT : [0-9] ;\nOTHER : ~[x-z] ;\n";
+    /**
+     * temporary directory
+     */
+    private Path m_directory;
+    /**
+     * grammar file
+     */
+    private File m_grammar;
+
+    /**
+     * creates the grammar file
+     *
+     * @throws IOException on IO error
+     */
+    @Before
+    public final void initialize() throws IOException
+    {
+        m_directory = Files.createTempDirectory( "rrd-cache" );
+        m_grammar = Files.write( m_directory.resolve( "Sample.g4" ), GRAMMAR.getBytes( StandardCharsets.UTF_8 ) ).toFile();
+    }
+
+    /**
+     * removes the temporary directory
+     *
+     * @throws IOException on IO error
+     */
+    @After
+    public final void cleanup() throws IOException
+    {
+        FileUtils.deleteDirectory( m_directory.toFile() );
+    }
+
+    /**
+     * test that a model is equal after encoding and decoding
+     *
+     * @throws IOException on IO error
+     */
+    @Test
+    public final void codec() throws IOException
+    {
+        final CGrammarModel l_model = TestCGrammarCache.resolve( m_grammar, null, new LinkedList<>() );
+        assertTrue(
+            l_model.rules().stream()
+                   .filter( i -> i instanceof IGrammarTerminal )
+                   .anyMatch( i -> ( (IGrammarTerminal) i ).children() instanceof IGrammarCharacterClass )
+        );
+
+        final ByteArrayOutputStream l_bytes = new ByteArrayOutputStream();
+        CGrammarCodec.write( l_model, new DataOutputStream( l_bytes ) );
+        final CGrammarModel l_decoded = CGrammarCodec.read( new DataInputStream( new ByteArrayInputStream( l_bytes.toByteArray() ) ) );
+
+        assertEquals( l_model.grammar(), l_decoded.grammar() );
+        assertEquals( l_model.rules(), l_decoded.rules() );
+        assertEquals( l_model.imports(), l_decoded.imports() );
+    }
+
+    /**
+     * test that a cache entry of another
+     * format version is parsed again
+     *
+     * @throws IOException on IO error
+     */
+    @Test
+    public final void version() throws IOException
+    {
+        final CGrammarCache l_cache = new CGrammarCache( m_directory.resolve( "cache" ).toFile(), Collections.emptySet() );
+        final CGrammarModel l_model = TestCGrammarCache.resolve( m_grammar, l_cache, new LinkedList<>() );
+        assertEquals( 0, TestCGrammarCache.parsed( m_grammar, l_cache ) );
+        assertEquals( l_model.rules(), TestCGrammarCache.resolve( m_grammar, l_cache, new LinkedList<>() ).rules() );
+
+        // the version is stored after the file header
+        final Path l_entry = TestCGrammarCache.entry( m_directory.resolve( "cache" ) );
+        try ( final RandomAccessFile l_file = new RandomAccessFile( l_entry.toFile(), "rw" ) )
+        {
+            l_file.seek( Integer.BYTES );
+            l_file.writeInt( CGrammarCodec.VERSION + 1 );
+        }
+        assertEquals( 1, TestCGrammarCache.parsed( m_grammar, l_cache ) );
+    }
+
+    /**
+     * test that a changed salt or grammar content
+     * does not return the cached model
+     *
+     * @throws IOException on IO error
+     */
+    @Test
+    public final void invalidation() throws IOException
+    {
+        final File l_directory = m_directory.resolve( "cache" ).toFile();
+        assertEquals( 1, TestCGrammarCache.parsed( m_grammar, new CGrammarCache( l_directory, Collections.emptySet() ) ) );
+        assertEquals( 0, TestCGrammarCache.parsed( m_grammar, new CGrammarCache( l_directory, Collections.emptySet() ) ) );
+
+        // documentation clean set is part of the salt
+        final Set<String> l_docuclean = Collections.singleton( "sample" );
+        assertEquals( 1, TestCGrammarCache.parsed( m_grammar, new CGrammarCache( l_directory, l_docuclean ) ) );
+        assertEquals( 0, TestCGrammarCache.parsed( m_grammar, new CGrammarCache( l_directory, l_docuclean ) ) );
+
+        // grammar content is part of the key
+        Files.write( m_grammar.toPath(), ( GRAMMAR + "ID : [a-z]+ ;\n" ).getBytes( StandardCharsets.UTF_8 ) );
+        assertEquals( 1, TestCGrammarCache.parsed( m_grammar, new CGrammarCache( l_directory, Collections.emptySet() ) ) );
+    }
+
+    /**
+     * test that grammars with lexer errors are not cached
+     * and write errors are reported as warnings
+     *
+     * @throws IOException on IO error
+     */
+    @Test
+    public final void uncached() throws IOException
+    {
+        final Path l_directory = m_directory.resolve( "cache" );
+        // options mode has no error token, so the character is a lexer error only and the parser succeeds
+        Files.write( m_grammar.toPath(), GRAMMAR.replace( "grammar Sample;", "grammar Sample;\noptions { ` }" ).getBytes( StandardCharsets.UTF_8 ) );
+        assertEquals( 1, TestCGrammarCache.parsed( m_grammar, new CGrammarCache( l_directory.toFile(), Collections.emptySet() ) ) );
+        assertEquals( 1, TestCGrammarCache.parsed( m_grammar, new CGrammarCache( l_directory.toFile(), Collections.emptySet() ) ) );
+
+        // cache directory is a file, so the model cannot be written
+        Files.write( m_grammar.toPath(), GRAMMAR.getBytes( StandardCharsets.UTF_8 ) );
+        final Path l_file = Files.write( m_directory.resolve( "file" ), new byte[0] );
+        final CGrammarResolver l_resolver = new CGrammarResolver(
+            Collections.emptyMap(), Collections.emptySet(), new CGrammarCache( l_file.toFile(), Collections.emptySet() )
+        );
+        final List<String> l_errors = new LinkedList<>();
+        l_resolver.resolve( m_grammar, l_errors );
+
+        assertTrue( l_errors.isEmpty() );
+        assertEquals( 1, l_resolver.warnings().size() );
+        assertTrue( l_resolver.warnings().isEmpty() );
+    }
+
+    /**
+     * manual test
+     *
+     * @param p_args arguments
+     */
+    public static void main( final String[] p_args )
+    {
+        new TestCGrammarCache().invoketest();
+    }
+
+
+    /**
+     * resolves a grammar with a new resolver
+     *
+     * @param p_grammar grammar file
+     * @param p_cache cache or null
+     * @param p_errors error messages
+     * @return model of the grammar
+     *
+     * @throws IOException on IO error
+     */
+    private static CGrammarModel resolve( final File p_grammar, final CGrammarCache p_cache, final List<String> p_errors ) throws IOException
+    {
+        final CGrammarModel l_model = new CGrammarResolver( Collections.emptyMap(), Collections.emptySet(), p_cache ).resolve( p_grammar, p_errors ).get( 0 );
+        assertTrue( p_errors.toString(), p_errors.isEmpty() );
+        return l_model;
+    }
+
+    /**
+     * returns the number of parsed grammar files of a new resolver
+     *
+     * @param p_grammar grammar file
+     * @param p_cache cache
+     * @return number of parsed grammar files
+     *
+     * @throws IOException on IO error
+     */
+    private static int parsed( final File p_grammar, final CGrammarCache p_cache ) throws IOException
+    {
+        final CGrammarResolver l_resolver = new CGrammarResolver( Collections.emptyMap(), Collections.emptySet(), p_cache );
+        l_resolver.resolve( p_grammar, new LinkedList<>() );
+        return l_resolver.statistic().get( CCommon.languagestring( CGrammarResolver.class, "statisticparsed" ) ).intValue();
+    }
+
+    /**
+     * returns the single cache entry
+     *
+     * @param p_directory cache directory
+     * @return entry file
+     *
+     * @throws IOException on IO error
+     */
+    private static Path entry( final Path p_directory ) throws IOException
+    {
+        try ( final Stream<Path> l_files = Files.list( p_directory ) )
+        {
+            final Path[] l_entries = l_files.toArray( Path[]::new );
+            assertEquals( 1, l_entries.length );
+            return l_entries[0];
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4;
+
+import de.flashpixx.rrd_antlr4.antlr.CCommon;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarChoice;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarGroup;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarIdentifier;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarInterner;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarSequence;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarTerminalValue;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarCollection;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarElement;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarGroup;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * test of the immutable grammar model
+ */
+public final class TestCGrammarElement extends IBaseTest
+{
+    /**
+     * terminal value
+     */
+    private static final String TERMINAL = "'a'";
+    /**
+     * identifier name
+     */
+    private static final String IDENTIFIER = "B";
+
+    /**
+     * test that a cardinality change creates a new element
+     */
+    @Test
+    public final void cardinality()
+    {
+        final IGrammarElement l_element = new CGrammarGroup( new CGrammarTerminalValue<>( TERMINAL ) );
+        final IGrammarElement l_changed = l_element.cardinality( IGrammarElement.ECardinality.ONEORMORE );
+
+        assertEquals( IGrammarElement.ECardinality.NONE, l_element.cardinality() );
+        assertEquals( IGrammarElement.ECardinality.ONEORMORE, l_changed.cardinality() );
+        assertNotEquals( l_element, l_changed );
+        assertSame( l_element, l_element.cardinality( IGrammarElement.ECardinality.NONE ) );
+
+        final IGrammarElement l_identifier = new CGrammarIdentifier( "A" ).cardinality( IGrammarElement.ECardinality.OPTIONAL );
+        assertTrue( l_identifier instanceof CGrammarIdentifier );
+        assertEquals( IGrammarElement.ECardinality.OPTIONAL, l_identifier.cardinality() );
+    }
+
+    /**
+     * test the structural equality
+     */
+    @Test
+    public final void equality()
+    {
+        final IGrammarElement l_choice = new CGrammarChoice( Arrays.asList( new CGrammarTerminalValue<>( TERMINAL ), new CGrammarIdentifier( IDENTIFIER ) ) );
+
+        assertEquals( l_choice, new CGrammarChoice( Arrays.asList( new CGrammarTerminalValue<>( TERMINAL ), new CGrammarIdentifier( IDENTIFIER ) ) ) );
+        assertEquals( l_choice.hashCode(), new CGrammarChoice( Arrays.asList( new CGrammarTerminalValue<>( TERMINAL ), new CGrammarIdentifier( IDENTIFIER ) ) ).hashCode() );
+
+        assertNotEquals( l_choice, new CGrammarSequence( Arrays.asList( new CGrammarTerminalValue<>( TERMINAL ), new CGrammarIdentifier( IDENTIFIER ) ) ) );
+        assertNotEquals( new CGrammarTerminalValue<>( IDENTIFIER ), new CGrammarIdentifier( IDENTIFIER ) );
+    }
+
+    /**
+     * test that equal hashes are not treated as equal elements,
+     * the strings "Aa" and "BB" have the same hash code
+     */
+    @Test
+    public final void collision()
+    {
+        final IGrammarElement l_first = new CGrammarTerminalValue<>( "Aa" );
+        final IGrammarElement l_second = new CGrammarTerminalValue<>( "BB" );
+
+        assertEquals( l_first.hashCode(), l_second.hashCode() );
+        assertNotEquals( l_first, l_second );
+
+        final Set<IGrammarElement> l_set = new HashSet<>( Arrays.asList( l_first, l_second ) );
+        assertEquals( 2, l_set.size() );
+    }
+
+    /**
+     * test that structurally equal subtrees share one instance
+     */
+    @Test
+    public final void intern()
+    {
+        final CGrammarInterner l_interner = new CGrammarInterner();
+        final IGrammarElement l_first = l_interner.intern( CCommon.sequence(
+            Arrays.asList( new CGrammarGroup( new CGrammarTerminalValue<>( TERMINAL ) ), new CGrammarIdentifier( IDENTIFIER ) )
+        ) );
+        final Map<String, Number> l_statistic = l_interner.statistic();
+        final IGrammarElement l_second = l_interner.intern( CCommon.sequence(
+            Arrays.asList( new CGrammarGroup( new CGrammarTerminalValue<>( TERMINAL ) ), new CGrammarIdentifier( IDENTIFIER ) )
+        ) );
+
+        assertSame( l_first, l_second );
+        assertSame( l_interner.intern( CCommon.terminalvalue( TERMINAL ) ), ( (IGrammarGroup) ( (IGrammarCollection) l_first ).get().get( 0 ) ).element() );
+        // the deduplicated instances are counted
+        assertNotEquals( l_statistic, l_interner.statistic() );
+        // the interners of different runs are independent
+        assertNotSame( l_first, new CGrammarInterner().intern( CCommon.sequence(
+            Arrays.asList( new CGrammarGroup( new CGrammarTerminalValue<>( TERMINAL ) ), new CGrammarIdentifier( IDENTIFIER ) )
+        ) ) );
+    }
+
+    /**
+     * manual test
+     *
+     * @param p_args arguments
+     */
+    public static void main( final String[] p_args )
+    {
+        new TestCGrammarElement().invoketest();
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4;
+
+import de.flashpixx.rrd_antlr4.engine.CGrammarLoader;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * test of the grammar file loader
+ */
+public final class TestCGrammarLoader extends IBaseTest
+{
+    /**
+     * source name
+     */
+    private static final String SOURCE = "test.g4";
+
+    /**
+     * test that valid UTF-8 content is decoded into code points
+     *
+     * @throws IOException on IO error
+     */
+    @Test
+    public final void decode() throws IOException
+    {
+        final String l_content = "grammar Test;\nrule : 'ä' | '😀' ;\n";
+        final Path l_file = Files.createTempFile( "rrd-loader", ".g4" );
+        try
+        {
+            Files.write( l_file, l_content.getBytes( StandardCharsets.UTF_8 ) );
+            final ByteBuffer l_buffer = CGrammarLoader.read( l_file );
+            final CharStream l_stream = CGrammarLoader.decode( l_buffer, SOURCE );
+
+            assertEquals( l_content.codePointCount( 0, l_content.length() ), l_stream.size() );
+            assertEquals( l_content, l_stream.getText( Interval.of( 0, l_stream.size() - 1 ) ) );
+            assertEquals( SOURCE, l_stream.getSourceName() );
+            assertEquals( CGrammarLoader.hash( l_buffer ), CGrammarLoader.hash( ByteBuffer.wrap( l_content.getBytes( StandardCharsets.UTF_8 ) ) ) );
+        }
+        finally
+        {
+            Files.deleteIfExists( l_file );
+        }
+    }
+
+    /**
+     * test that malformed UTF-8 content is rejected
+     * instead of being replaced silently
+     *
+     * @throws CharacterCodingException on malformed content
+     */
+    @Test( expected = CharacterCodingException.class )
+    public final void malformed() throws CharacterCodingException
+    {
+        CGrammarLoader.decode( ByteBuffer.wrap( new byte[]{'a', (byte) 0xc3, '(', 'b'} ), SOURCE );
+    }
+
+    /**
+     * manual test
+     *
+     * @param p_args arguments
+     */
+    public static void main( final String[] p_args )
+    {
+        new TestCGrammarLoader().invoketest();
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4;
+
+import com.google.common.collect.ImmutableMap;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarModel;
+import de.flashpixx.rrd_antlr4.engine.CGrammarResolver;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * test of the grammar import resolution
+ */
+public final class TestCGrammarResolver extends IBaseTest
+{
+    /**
+     * test that an import cycle is reported
+     * and each grammar is parsed once
+     *
+     * @throws IOException on IO error
+     */
+    @Test
+    public final void cycle() throws IOException
+    {
+        final Path l_directory = Files.createTempDirectory( "rrd-resolver" );
+        try
+        {
+            final File l_first = TestCGrammarResolver.grammar( l_directory, "First", "grammar First;\nimport Second;\nfirst : 'a' second ;\n" );
+            final File l_second = TestCGrammarResolver.grammar( l_directory, "Second", "grammar Second;\nimport First;\nsecond : 'b' first? ;\n" );
+
+            final CGrammarResolver l_resolver = new CGrammarResolver( ImmutableMap.of( "First", l_first, "Second", l_second ), Collections.emptySet(), null );
+            final List<String> l_errors = new LinkedList<>();
+            final List<CGrammarModel> l_models = l_resolver.resolve( l_first, l_errors );
+
+            assertEquals( 1, l_errors.size() );
+            assertTrue( l_errors.get( 0 ), l_errors.get( 0 ).contains( "First.g4 -> Second.g4 -> First.g4" ) );
+            assertEquals( "First, Second", l_models.stream().map( i -> i.grammar().id() ).collect( Collectors.joining( ", " ) ) );
+
+            // the second grammar is resolved from the run-scoped models
+            l_errors.clear();
+            l_resolver.resolve( l_second, l_errors );
+            assertEquals( 1, l_errors.size() );
+            assertEquals( 2, l_resolver.statistic().get( CCommon.languagestring( CGrammarResolver.class, "statisticparsed" ) ).intValue() );
+        }
+        finally
+        {
+            FileUtils.deleteDirectory( l_directory.toFile() );
+        }
+    }
+
+    /**
+     * manual test
+     *
+     * @param p_args arguments
+     */
+    public static void main( final String[] p_args )
+    {
+        new TestCGrammarResolver().invoketest();
+    }
+
+
+    /**
+     * writes a grammar file
+     *
+     * @param p_directory directory
+     * @param p_name grammar name
+     * @param p_content grammar content
+     * @return file
+     *
+     * @throws IOException on IO error
+     */
+    private static File grammar( final Path p_directory, final String p_name, final String p_content ) throws IOException
+    {
+        return Files.write( p_directory.resolve( p_name + ".g4" ), p_content.getBytes( StandardCharsets.UTF_8 ) ).toFile();
+    }
+
+}
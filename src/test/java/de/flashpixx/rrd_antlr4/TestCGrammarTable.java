@@ -0,0 +1,210 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4;
+
+import de.flashpixx.rrd_antlr4.antlr.CGrammarCharacterClass;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarChoice;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarGroup;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarIdentifier;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarNegation;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarRule;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarSequence;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarTable;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarTerminalValue;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarCharacterClass;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarChoice;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarCollection;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarElement;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarGroup;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarIdentifier;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarNegation;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarRule;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarSimpleElement;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * test of the flat grammar table
+ */
+public final class TestCGrammarTable extends IBaseTest
+{
+    /**
+     * number of rules of the synthetic grammar
+     */
+    private static final int RULES = 50000;
+    /**
+     * number of garbage collector runs before a measurement
+     */
+    private static final int COLLECT = 5;
+
+    /**
+     * test that the views have the same structure as the elements
+     */
+    @Test
+    public final void views()
+    {
+        final List<IGrammarElement> l_rules = rules( 100 );
+        final List<IGrammarElement> l_views = CGrammarTable.of( l_rules ).elements();
+
+        assertEquals( l_rules.size(), l_views.size() );
+        IntStream.range( 0, l_rules.size() ).forEach( i ->
+        {
+            assertEquals( map( l_rules.get( i ) ), map( l_views.get( i ) ) );
+            assertEquals( l_rules.get( i ).toString(), l_views.get( i ).toString() );
+        } );
+    }
+
+    /**
+     * test the equality and the cardinality change of views
+     */
+    @Test
+    public final void equality()
+    {
+        final CGrammarTable l_table = CGrammarTable.of( rules( 2 ) );
+        final IGrammarElement l_element = ( (IGrammarRule) l_table.elements().get( 0 ) ).children();
+
+        assertEquals( l_element, ( (IGrammarRule) l_table.elements().get( 0 ) ).children() );
+        assertNotEquals( l_element, ( (IGrammarRule) l_table.elements().get( 1 ) ).children() );
+
+        final IGrammarElement l_changed = l_element.cardinality( IGrammarElement.ECardinality.OPTIONAL );
+        assertEquals( IGrammarElement.ECardinality.NONE, l_element.cardinality() );
+        assertEquals( IGrammarElement.ECardinality.OPTIONAL, l_changed.cardinality() );
+        assertTrue( l_changed instanceof IGrammarCollection );
+    }
+
+    /**
+     * measures the heap of the element objects and of the table on a synthetic
+     * grammar, the measurement depends on the garbage collector, so it is not
+     * part of the unit tests and runs only manually
+     */
+    public final void memory()
+    {
+        final long l_base = used();
+        List<IGrammarElement> l_rules = rules( RULES );
+        final long l_elements = used() - l_base;
+
+        final CGrammarTable l_table = CGrammarTable.of( l_rules );
+        l_rules = null;
+        final long l_flat = used() - l_base;
+
+        System.out.println( MessageFormat.format(
+            "synthetic grammar with {0} rules: elements {1} KB, table {2} KB (estimated {3} KB, {4} nodes)",
+            RULES, l_elements / 1024, l_flat / 1024, l_table.bytes() / 1024, l_table.size()
+        ) );
+    }
+
+    /**
+     * manual test
+     *
+     * @param p_args arguments
+     */
+    public static void main( final String[] p_args )
+    {
+        final TestCGrammarTable l_test = new TestCGrammarTable();
+        l_test.invoketest();
+        l_test.memory();
+    }
+
+    /**
+     * creates the rules of a synthetic grammar
+     *
+     * @param p_size number of rules
+     * @return list with rules
+     */
+    static List<IGrammarElement> rules( final int p_size )
+    {
+        return IntStream.range( 0, p_size ).mapToObj( i -> new CGrammarRule(
+            "rule" + i,
+            "synthetic rule " + i,
+            new CGrammarSequence( Arrays.asList(
+                new CGrammarTerminalValue<>( "'keyword" + i + "'" ),
+                new CGrammarGroup(
+                    IGrammarElement.ECardinality.ZEROORMORE,
+                    new CGrammarChoice( Arrays.asList( new CGrammarIdentifier( "rule" + ( i + 1 ) ), new CGrammarIdentifier( "ID" ) ) )
+                ),
+                new CGrammarNegation( IGrammarElement.ECardinality.OPTIONAL, new CGrammarTerminalValue<>( "';'" ) ),
+                new CGrammarCharacterClass( IGrammarElement.ECardinality.ONEORMORE, '0', '9' ).cardinality( IGrammarElement.ECardinality.ONEORMORE )
+            ) )
+        ) ).collect( Collectors.toList() );
+    }
+
+    /**
+     * maps an element with the interface methods only
+     *
+     * @param p_element element
+     * @return string representation
+     */
+    private static String map( final IGrammarElement p_element )
+    {
+        if ( p_element instanceof IGrammarRule )
+            return MessageFormat.format( "rule {0} [{1}] {2}", ( (IGrammarRule) p_element ).id(), ( (IGrammarRule) p_element ).documentation(),
+                                         map( ( (IGrammarRule) p_element ).children() ) );
+
+        if ( p_element instanceof IGrammarSimpleElement<?> )
+            return MessageFormat.format( "{0}{1}{2}", p_element instanceof IGrammarIdentifier ? "id " : "value ",
+                                         ( (IGrammarSimpleElement<?>) p_element ).get(), p_element.cardinality() );
+
+        if ( p_element instanceof IGrammarCharacterClass )
+            return MessageFormat.format( "class {0}{1}", ( (IGrammarCharacterClass) p_element ).notation(), p_element.cardinality() );
+
+        if ( p_element instanceof IGrammarCollection )
+            return MessageFormat.format( "{0}( {1} ){2}", p_element instanceof IGrammarChoice ? "choice" : "sequence",
+                                         ( (IGrammarCollection) p_element ).get().stream().map( TestCGrammarTable::map ).collect( Collectors.joining( ", " ) ),
+                                         p_element.cardinality() );
+
+        if ( p_element instanceof IGrammarGroup )
+            return MessageFormat.format( "group( {0} ){1}", map( ( (IGrammarGroup) p_element ).element() ), p_element.cardinality() );
+
+        if ( p_element instanceof IGrammarNegation )
+            return MessageFormat.format( "not( {0} ){1}", map( ( (IGrammarNegation) p_element ).inner() ), p_element.cardinality() );
+
+        return "";
+    }
+
+    /**
+     * returns the used heap after garbage collection
+     *
+     * @return used heap in bytes
+     */
+    private static long used()
+    {
+        for ( int i = 0; i < COLLECT; i++ )
+        {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+}
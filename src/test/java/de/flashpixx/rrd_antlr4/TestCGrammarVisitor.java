@@ -0,0 +1,318 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4;
+
+import de.flashpixx.rrd_antlr4.antlr.CGrammarTable;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarCharacterClass;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarChoice;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarCollection;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarComplexElement;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarElement;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarGroup;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarIdentifier;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarNegation;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarRule;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarSequence;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarSimpleElement;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarTerminal;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarVisitor;
+import org.junit.Test;
+
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * test of the visitor dispatch of grammar elements
+ */
+public final class TestCGrammarVisitor extends IBaseTest
+{
+    /**
+     * number of rules of the benchmark grammar
+     */
+    private static final int RULES = 5000;
+    /**
+     * number of benchmark iterations
+     */
+    private static final int ITERATION = 50;
+
+    /**
+     * test that each element calls the method of its type
+     */
+    @Test
+    public final void dispatch()
+    {
+        final List<IGrammarElement> l_rules = TestCGrammarTable.rules( 1 );
+        final String l_expected = "rule( sequence( value, group( choice( identifier, identifier ) ), negation( value ), class ) )";
+
+        assertEquals( l_expected, l_rules.get( 0 ).accept( new CNames(), null ) );
+        assertEquals( l_expected, CGrammarTable.of( l_rules ).elements().get( 0 ).accept( new CNames(), null ) );
+    }
+
+    /**
+     * benchmark of the visitor dispatch against an instanceof chain
+     * in the order of the former template mapping, both count the
+     * nodes of a synthetic grammar, the benchmark is not part of the
+     * unit tests and runs only manually
+     */
+    public final void benchmark()
+    {
+        final List<IGrammarElement> l_rules = TestCGrammarTable.rules( RULES );
+        final CCount l_visitor = new CCount();
+        assertEquals( chain( l_rules.get( 0 ) ), (int) l_rules.get( 0 ).accept( l_visitor, null ) );
+
+        // warm-up, so both paths are compiled
+        for ( int i = 0; i < ITERATION; i++ )
+            l_rules.forEach( j ->
+            {
+                j.accept( l_visitor, null );
+                chain( j );
+            } );
+
+        final long l_chain = System.nanoTime();
+        for ( int i = 0; i < ITERATION; i++ )
+            l_rules.forEach( TestCGrammarVisitor::chain );
+        final long l_chainend = System.nanoTime();
+
+        final long l_visit = System.nanoTime();
+        for ( int i = 0; i < ITERATION; i++ )
+            l_rules.forEach( j -> j.accept( l_visitor, null ) );
+        final long l_visitend = System.nanoTime();
+
+        System.out.println( MessageFormat.format(
+            "grammar element dispatch: instanceof chain {0} ns / rule, visitor {1} ns / rule",
+            ( l_chainend - l_chain ) / ( ITERATION * RULES ),
+            ( l_visitend - l_visit ) / ( ITERATION * RULES )
+        ) );
+    }
+
+    /**
+     * manual test
+     *
+     * @param p_args arguments
+     */
+    public static void main( final String[] p_args )
+    {
+        final TestCGrammarVisitor l_test = new TestCGrammarVisitor();
+        l_test.invoketest();
+        l_test.benchmark();
+    }
+
+    /**
+     * counts the nodes of an element with an instanceof chain
+     *
+     * @param p_element element
+     * @return number of nodes
+     */
+    private static int chain( final IGrammarElement p_element )
+    {
+        if ( p_element instanceof IGrammarIdentifier )
+            return 1;
+        if ( p_element instanceof IGrammarRule )
+            return 1 + chain( ( (IGrammarRule) p_element ).children() );
+        if ( p_element instanceof IGrammarSimpleElement<?> )
+            return 1;
+        if ( p_element instanceof IGrammarTerminal )
+            return 1 + chain( ( (IGrammarTerminal) p_element ).children() );
+        if ( p_element instanceof IGrammarCharacterClass )
+            return 1;
+        return chainstructure( p_element );
+    }
+
+    /**
+     * counts the nodes of a structure element with an instanceof chain
+     *
+     * @param p_element element
+     * @return number of nodes
+     */
+    private static int chainstructure( final IGrammarElement p_element )
+    {
+        if ( p_element instanceof IGrammarNegation )
+            return 1 + chain( ( (IGrammarNegation) p_element ).inner() );
+        if ( p_element instanceof IGrammarGroup )
+            return 1 + chain( ( (IGrammarGroup) p_element ).element() );
+        if ( ( p_element instanceof IGrammarChoice ) || ( p_element instanceof IGrammarSequence ) )
+        {
+            int l_count = 1;
+            for ( final IGrammarElement l_child : ( (IGrammarCollection) p_element ).get() )
+                l_count += chain( l_child );
+            return l_count;
+        }
+        return 0;
+    }
+
+
+    /**
+     * visitor which counts the nodes
+     */
+    private static final class CCount implements IGrammarVisitor<Integer, Void>
+    {
+
+        @Override
+        public final Integer visitgrammar( final IGrammarComplexElement p_element, final Void p_argument )
+        {
+            return 0;
+        }
+
+        @Override
+        public final Integer visitrule( final IGrammarRule p_element, final Void p_argument )
+        {
+            return 1 + p_element.children().accept( this, null );
+        }
+
+        @Override
+        public final Integer visitterminal( final IGrammarTerminal p_element, final Void p_argument )
+        {
+            return 1 + p_element.children().accept( this, null );
+        }
+
+        @Override
+        public final Integer visitidentifier( final IGrammarIdentifier p_element, final Void p_argument )
+        {
+            return 1;
+        }
+
+        @Override
+        public final Integer visitterminalvalue( final IGrammarSimpleElement<?> p_element, final Void p_argument )
+        {
+            return 1;
+        }
+
+        @Override
+        public final Integer visitcharacterclass( final IGrammarCharacterClass p_element, final Void p_argument )
+        {
+            return 1;
+        }
+
+        @Override
+        public final Integer visitnegation( final IGrammarNegation p_element, final Void p_argument )
+        {
+            return 1 + p_element.inner().accept( this, null );
+        }
+
+        @Override
+        public final Integer visitgroup( final IGrammarGroup p_element, final Void p_argument )
+        {
+            return 1 + p_element.element().accept( this, null );
+        }
+
+        @Override
+        public final Integer visitchoice( final IGrammarChoice p_element, final Void p_argument )
+        {
+            return this.collection( p_element );
+        }
+
+        @Override
+        public final Integer visitsequence( final IGrammarSequence p_element, final Void p_argument )
+        {
+            return this.collection( p_element );
+        }
+
+        /**
+         * counts the nodes of a collection
+         *
+         * @param p_element collection
+         * @return number of nodes
+         */
+        private int collection( final IGrammarCollection p_element )
+        {
+            int l_count = 1;
+            for ( final IGrammarElement l_child : p_element.get() )
+                l_count += l_child.accept( this, null );
+            return l_count;
+        }
+    }
+
+
+    /**
+     * visitor which returns the type names
+     */
+    private static final class CNames implements IGrammarVisitor<String, Void>
+    {
+
+        @Override
+        public final String visitgrammar( final IGrammarComplexElement p_element, final Void p_argument )
+        {
+            return "grammar";
+        }
+
+        @Override
+        public final String visitrule( final IGrammarRule p_element, final Void p_argument )
+        {
+            return MessageFormat.format( "rule( {0} )", p_element.children().accept( this, null ) );
+        }
+
+        @Override
+        public final String visitterminal( final IGrammarTerminal p_element, final Void p_argument )
+        {
+            return MessageFormat.format( "terminal( {0} )", p_element.children().accept( this, null ) );
+        }
+
+        @Override
+        public final String visitidentifier( final IGrammarIdentifier p_element, final Void p_argument )
+        {
+            return "identifier";
+        }
+
+        @Override
+        public final String visitterminalvalue( final IGrammarSimpleElement<?> p_element, final Void p_argument )
+        {
+            return "value";
+        }
+
+        @Override
+        public final String visitcharacterclass( final IGrammarCharacterClass p_element, final Void p_argument )
+        {
+            return "class";
+        }
+
+        @Override
+        public final String visitnegation( final IGrammarNegation p_element, final Void p_argument )
+        {
+            return MessageFormat.format( "negation( {0} )", p_element.inner().accept( this, null ) );
+        }
+
+        @Override
+        public final String visitgroup( final IGrammarGroup p_element, final Void p_argument )
+        {
+            return MessageFormat.format( "group( {0} )", p_element.element().accept( this, null ) );
+        }
+
+        @Override
+        public final String visitchoice( final IGrammarChoice p_element, final Void p_argument )
+        {
+            return MessageFormat.format( "choice( {0} )", p_element.get().stream().map( i -> i.accept( this, null ) ).collect( Collectors.joining( ", " ) ) );
+        }
+
+        @Override
+        public final String visitsequence( final IGrammarSequence p_element, final Void p_argument )
+        {
+            return MessageFormat.format( "sequence( {0} )", p_element.get().stream().map( i -> i.accept( this, null ) ).collect( Collectors.joining( ", " ) ) );
+        }
+    }
+
+}
@@ -0,0 +1,262 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4;
+
+import de.flashpixx.rrd_antlr4.antlr.ANTLRv4Lexer;
+import de.flashpixx.rrd_antlr4.antlr.ANTLRv4Parser;
+import de.flashpixx.rrd_antlr4.antlr.CASTVisitorAntLR;
+import de.flashpixx.rrd_antlr4.antlr.CCommon;
+import de.flashpixx.rrd_antlr4.antlr.EUnicodeCategory;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarCharacterClass;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarCollection;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarElement;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarGroup;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarIdentifier;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarNegation;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarSimpleElement;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.xpath.XPath;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * test of the typed lexer element mapping
+ */
+public final class TestCLexerElement extends IBaseTest
+{
+    /**
+     * number of benchmark iterations
+     */
+    private static final int ITERATION = 250;
+
+    /**
+     * test a lexer token reference
+     */
+    @Test
+    public final void tokenreference()
+    {
+        final IGrammarElement l_element = this.element( "A : B ;" ).get( 0 );
+
+        assertTrue( l_element instanceof IGrammarIdentifier );
+        assertEquals( "B", ( (IGrammarIdentifier) l_element ).get() );
+    }
+
+    /**
+     * test a negated literal with cardinality
+     */
+    @Test
+    public final void negation()
+    {
+        final IGrammarElement l_element = this.element( "A : ~'\"'* ;" ).get( 0 );
+
+        assertTrue( l_element instanceof IGrammarNegation );
+        assertEquals( IGrammarElement.ECardinality.ZEROORMORE, l_element.cardinality() );
+    }
+
+    /**
+     * test a labeled lexer block
+     */
+    @Test
+    public final void block()
+    {
+        final IGrammarElement l_element = this.element( "A : x=( 'a' | B )+ ;" ).get( 0 );
+
+        assertTrue( l_element instanceof IGrammarGroup );
+        assertEquals( IGrammarElement.ECardinality.ONEORMORE, l_element.cardinality() );
+    }
+
+    /**
+     * test that actions and predicates are dropped
+     */
+    @Test
+    public final void action()
+    {
+        final List<IGrammarElement> l_element = this.element( "A : 'a' {true}? {foo();} ;" );
+
+        assertEquals( 3, l_element.size() );
+        assertTrue( l_element.get( 0 ) instanceof IGrammarSimpleElement<?> );
+        assertNull( l_element.get( 1 ) );
+        assertNull( l_element.get( 2 ) );
+    }
+
+    /**
+     * test the character set conversion into a character class
+     */
+    @Test
+    public final void characterset()
+    {
+        final IGrammarElement l_element = this.element( "A : [a-z_\\t0-9b]+ ;" ).get( 0 );
+
+        assertTrue( l_element instanceof IGrammarCharacterClass );
+        assertEquals( IGrammarElement.ECardinality.ONEORMORE, l_element.cardinality() );
+        assertArrayEquals( new int[]{'\t', '\t', '0', '9', '_', '_', 'a', 'z'}, ( (IGrammarCharacterClass) l_element ).ranges() );
+        assertEquals( "[\\t0-9_a-z]", ( (IGrammarCharacterClass) l_element ).notation() );
+
+        assertNull( CCommon.characterset( "[a-" ) );
+    }
+
+    /**
+     * test the character set with unknown properties,
+     * which is split into its items
+     */
+    @Test
+    public final void charactersetproperty()
+    {
+        final IGrammarElement l_element = this.element( "A : [a-z_\\p{Greek}] ;" ).get( 0 );
+
+        assertTrue( l_element instanceof IGrammarCollection );
+        assertEquals(
+            "a-z|_|\\p{Greek}",
+            ( (IGrammarCollection) l_element ).get().stream()
+                                              .map( i -> ( (IGrammarSimpleElement<?>) i ).get().toString() )
+                                              .collect( Collectors.joining( "|" ) )
+        );
+    }
+
+    /**
+     * test the merging of range alternatives and the category detection
+     */
+    @Test
+    public final void characterclass()
+    {
+        final IGrammarElement l_range = this.rule( "A : 'a'..'f' | '\\u{30}'..'9' | 'c'..'z' ;" );
+
+        assertTrue( l_range instanceof IGrammarCharacterClass );
+        assertEquals( "[0-9a-z]", ( (IGrammarCharacterClass) l_range ).notation() );
+        assertNull( ( (IGrammarCharacterClass) l_range ).category() );
+
+        final IGrammarElement l_category = this.element( "A : [\\p{Lu}] ;" ).get( 0 );
+        assertTrue( l_category instanceof IGrammarCharacterClass );
+        assertEquals( EUnicodeCategory.UPPERCASELETTER, ( (IGrammarCharacterClass) l_category ).category() );
+    }
+
+    /**
+     * benchmark of the typed mapping against the regular expression conversion,
+     * the benchmark is not part of the unit tests and runs only manually
+     */
+    public final void benchmark()
+    {
+        final List<ParseTree> l_tree = this.tree( "A : ( B | 'c' | [a-z0-9_] | ~[\\r\\n] )+ ;" );
+        final CASTVisitorAntLR l_visitor = new CASTVisitorAntLR( Collections.emptySet() );
+
+        final long l_typed = System.nanoTime();
+        for ( int i = 0; i < ITERATION; i++ )
+            l_tree.forEach( l_visitor::visit );
+        final long l_typedend = System.nanoTime();
+
+        // a unique suffix bypasses the terminal cache, so the conversion itself is measured
+        final List<String> l_text = l_tree.stream().map( ParseTree::getText ).collect( Collectors.toList() );
+        final long l_regex = System.nanoTime();
+        for ( int i = 0; i < ITERATION; i++ )
+            for ( final String l_item : l_text )
+                CCommon.terminalvalue( l_item + i );
+        final long l_regexend = System.nanoTime();
+
+        System.out.println( String.format(
+            "lexer element typed: %d ns / element, regular expression: %d ns / element",
+            ( l_typedend - l_typed ) / ( ITERATION * l_tree.size() ),
+            ( l_regexend - l_regex ) / ( ITERATION * l_tree.size() )
+        ) );
+    }
+
+    /**
+     * manual test
+     *
+     * @param p_args arguments
+     */
+    public static void main( final String[] p_args )
+    {
+        final TestCLexerElement l_test = new TestCLexerElement();
+        l_test.invoketest();
+        l_test.benchmark();
+    }
+
+    /**
+     * maps the alternatives of a lexer rule
+     *
+     * @param p_rule lexer rule
+     * @return element
+     */
+    private IGrammarElement rule( final String p_rule )
+    {
+        final ANTLRv4Parser l_parser = parser( p_rule );
+        return new CASTVisitorAntLR( Collections.emptySet() ).visit(
+            XPath.findAll( l_parser.grammarSpec(), "/grammarSpec/rules/ruleSpec/lexerRuleSpec/lexerRuleBlock/lexerAltList", l_parser ).iterator().next()
+        );
+    }
+
+    /**
+     * maps all lexer elements of a rule
+     *
+     * @param p_rule lexer rule
+     * @return list of elements
+     */
+    private List<IGrammarElement> element( final String p_rule )
+    {
+        final CASTVisitorAntLR l_visitor = new CASTVisitorAntLR( Collections.emptySet() );
+        return this.tree( p_rule ).stream().map( l_visitor::visit ).collect( Collectors.toList() );
+    }
+
+    /**
+     * parses a lexer rule and returns the top-level lexer elements
+     *
+     * @param p_rule lexer rule
+     * @return list of lexer element trees
+     */
+    private List<ParseTree> tree( final String p_rule )
+    {
+        final ANTLRv4Parser l_parser = parser( p_rule );
+        return new ArrayList<>( XPath.findAll(
+            l_parser.grammarSpec(),
+            "/grammarSpec/rules/ruleSpec/lexerRuleSpec/lexerRuleBlock/lexerAltList/lexerAlt/lexerElements/lexerElement",
+            l_parser
+        ) );
+    }
+
+    /**
+     * creates the parser of a lexer rule
+     *
+     * @param p_rule lexer rule
+     * @return parser
+     */
+    private static ANTLRv4Parser parser( final String p_rule )
+    {
+        return new ANTLRv4Parser(
+            new CommonTokenStream( new ANTLRv4Lexer( CharStreams.fromString( "lexer grammar T;\n" + p_rule + "\n" ) ) )
+        );
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4;
+
+import de.flashpixx.rrd_antlr4.antlr.CGrammarCharacterClass;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarGroup;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarIdentifier;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarNegation;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarNonTerminal;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarRule;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarSequence;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarTerminalValue;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarComplexElement;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarElement;
+import de.flashpixx.rrd_antlr4.engine.template.ETemplate;
+import de.flashpixx.rrd_antlr4.engine.template.ITemplate;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * test of the server-side railroad diagrams of the HTMLSVG template
+ */
+public final class TestCRailroad extends IBaseTest
+{
+    /**
+     * rule name
+     */
+    private static final String RULE = "expr";
+    /**
+     * lexer rule name
+     */
+    private static final String LEXERRULE = "ID";
+    /**
+     * pattern of the anchors of the rules
+     */
+    private static final Pattern ANCHOR = Pattern.compile( "<a name=\"([0-9a-f]+)\"></a><h5>([^<]+)</h5>" );
+    /**
+     * pattern of the diagrams
+     */
+    private static final Pattern DIAGRAM = Pattern.compile( "<svg .*?</svg>", Pattern.DOTALL );
+
+    /**
+     * test that a rule is rendered into a well-formed SVG
+     * with escaped texts, links of the nonterminals and
+     * terminals and character classes without links
+     *
+     * @throws IOException on reading or writing error
+     * @throws URISyntaxException on asset error
+     * @throws ParserConfigurationException on parser error
+     * @throws SAXException if the SVG is not well-formed
+     */
+    @Test
+    public final void diagram() throws IOException, URISyntaxException, ParserConfigurationException, SAXException
+    {
+        final IGrammarComplexElement l_rule = new CGrammarRule( RULE, "", new CGrammarSequence( Arrays.asList(
+            new CGrammarIdentifier( LEXERRULE ),
+            new CGrammarGroup(
+                IGrammarElement.ECardinality.ZEROORMORE,
+                new CGrammarSequence( Arrays.asList( new CGrammarTerminalValue<>( "'<'" ), new CGrammarIdentifier( LEXERRULE ) ) )
+            ),
+            new CGrammarNegation( new CGrammarCharacterClass( '0', '9' ) )
+        ) ) );
+        final IGrammarComplexElement l_lexerrule = new CGrammarNonTerminal( LEXERRULE, "", new CGrammarCharacterClass( 'a', 'z' ) );
+
+        final String l_index = TestCRailroad.index( l_rule, l_lexerrule );
+
+        // anchor names of the rules
+        final Map<String, String> l_anchors = new HashMap<>();
+        final Matcher l_anchor = ANCHOR.matcher( l_index );
+        while ( l_anchor.find() )
+            l_anchors.put( l_anchor.group( 2 ), l_anchor.group( 1 ) );
+        assertEquals( 2, l_anchors.size() );
+
+        // the diagrams are written in rule order
+        final Matcher l_diagram = DIAGRAM.matcher( l_index );
+        assertTrue( l_diagram.find() );
+
+        final Element l_svg = DocumentBuilderFactory.newInstance()
+                                                    .newDocumentBuilder()
+                                                    .parse( new InputSource( new StringReader( l_diagram.group() ) ) )
+                                                    .getDocumentElement();
+        assertEquals( "svg", l_svg.getTagName() );
+        assertEquals( "svg_" + l_anchors.get( RULE ), l_svg.getAttribute( "id" ) );
+
+        // text and link target of all texts, texts without link have an empty target
+        final Map<String, String> l_texts = new HashMap<>();
+        final NodeList l_nodes = l_svg.getElementsByTagName( "text" );
+        for ( int i = 0; i < l_nodes.getLength(); i++ )
+        {
+            final Element l_parent = (Element) l_nodes.item( i ).getParentNode();
+            l_texts.put( l_nodes.item( i ).getTextContent(), "a".equals( l_parent.getTagName() ) ? l_parent.getAttribute( "xlink:href" ) : "" );
+        }
+
+        // the texts are the identifier, the escaped terminal, the character class and the negation comment
+        assertEquals( 4, l_texts.size() );
+        assertEquals( "#" + l_anchors.get( LEXERRULE ), l_texts.get( LEXERRULE ) );
+        assertTrue( l_texts.get( "<" ).startsWith( "#" ) );
+        assertEquals( "", l_texts.get( "[0-9]" ) );
+        assertEquals( 2, Collections.frequency( l_texts.values(), "" ) );
+        assertTrue( l_svg.getElementsByTagName( "path" ).getLength() > 0 );
+    }
+
+    /**
+     * manual test
+     *
+     * @param p_args arguments
+     */
+    public static void main( final String[] p_args )
+    {
+        new TestCRailroad().invoketest();
+    }
+
+
+    /**
+     * renders rules with the HTMLSVG template
+     *
+     * @param p_rules rules
+     * @return content of the index file
+     * @throws IOException on reading or writing error
+     * @throws URISyntaxException on asset error
+     */
+    private static String index( final IGrammarComplexElement... p_rules ) throws IOException, URISyntaxException
+    {
+        final Path l_directory = Files.createTempDirectory( "rrd-railroad" );
+        try
+        {
+            try ( final ITemplate l_template = ETemplate.HTMLSVG.generate() )
+            {
+                final IGrammarComplexElement l_grammar = l_template.grammar( new CGrammarRule( "Test", "", new CGrammarIdentifier( RULE ) ) );
+                Arrays.stream( p_rules ).forEach( i -> l_template.element( l_grammar, i ) );
+                l_template.postprocess( l_directory );
+            }
+            return new String( Files.readAllBytes( l_directory.resolve( "index.htm" ) ), StandardCharsets.UTF_8 );
+        }
+        finally
+        {
+            FileUtils.deleteDirectory( l_directory.toFile() );
+        }
+    }
+
+}
@@ -0,0 +1,301 @@
+/*
+ * @cond LICENSE
+ * ######################################################################################
+ * # LGPL License                                                                       #
+ * #                                                                                    #
+ * # This file is part of the RRD-AntLR4                                                #
+ * # Copyright (c) 2016-17, Philipp Kraus (philipp.kraus@flashpixx.de)                  #
+ * # This program is free software: you can redistribute it and/or modify               #
+ * # it under the terms of the GNU Lesser General Public License as                     #
+ * # published by the Free Software Foundation, either version 3 of the                 #
+ * # License, or (at your option) any later version.                                    #
+ * #                                                                                    #
+ * # This program is distributed in the hope that it will be useful,                    #
+ * # but WITHOUT ANY WARRANTY; without even the implied warranty of                     #
+ * # MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                      #
+ * # GNU Lesser General Public License for more details.                                #
+ * #                                                                                    #
+ * # You should have received a copy of the GNU Lesser General Public License           #
+ * # along with this program. If not, see http://www.gnu.org/licenses/                  #
+ * ######################################################################################
+ * @endcond
+ */
+
+package de.flashpixx.rrd_antlr4;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.sun.management.ThreadMXBean;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarGroup;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarIdentifier;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarRule;
+import de.flashpixx.rrd_antlr4.antlr.CGrammarSequence;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarCharacterClass;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarChoice;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarCollection;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarComplexElement;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarElement;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarGroup;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarIdentifier;
+import de.flashpixx.rrd_antlr4.antlr.IGrammarSimpleElement;
+import de.flashpixx.rrd_antlr4.engine.template.CTemplateFile;
+import de.flashpixx.rrd_antlr4.engine.template.ETemplate;
+import de.flashpixx.rrd_antlr4.engine.template.IBaseTemplate;
+import de.flashpixx.rrd_antlr4.engine.template.ITemplate;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * test of the template base
+ */
+public final class TestCTemplate extends IBaseTest
+{
+    /**
+     * identifier name
+     */
+    private static final String IDENTIFIER = "ID";
+    /**
+     * number of rules of the benchmark grammar
+     */
+    private static final int RULES = 20000;
+
+    /**
+     * test that structural equal fragments are rendered once
+     */
+    @Test
+    public final void fragmentcache()
+    {
+        final CTemplate l_template = new CTemplate();
+        final IGrammarElement l_first = new CGrammarGroup( IGrammarElement.ECardinality.OPTIONAL, new CGrammarIdentifier( IDENTIFIER ) );
+        final IGrammarElement l_second = new CGrammarGroup( IGrammarElement.ECardinality.OPTIONAL, new CGrammarIdentifier( IDENTIFIER ) );
+
+        assertEquals( "(<ID>)?", l_template.render( l_first ) );
+        assertEquals( "(<ID>)?", l_template.render( l_second ) );
+        assertEquals( "(<ID>)? (<ID>)?", l_template.render( new CGrammarSequence( Arrays.asList( l_first, l_second ) ) ) );
+        assertEquals( 1, l_template.m_identifier.get() );
+
+        assertEquals( "<ID>+", l_template.render( new CGrammarIdentifier( IGrammarElement.ECardinality.ONEORMORE, IDENTIFIER ) ) );
+        assertEquals( 2, l_template.m_identifier.get() );
+
+        // large fragments are not cached
+        final String l_large = StringUtils.repeat( IDENTIFIER, 1024 );
+        l_template.render( new CGrammarIdentifier( l_large ) );
+        l_template.render( new CGrammarIdentifier( l_large ) );
+        assertEquals( 4, l_template.m_identifier.get() );
+    }
+
+    /**
+     * test of the precompiled template file
+     *
+     * @throws IOException on writing error
+     */
+    @Test
+    public final void templatefile() throws IOException
+    {
+        final CTemplateFile l_template = CTemplateFile.compile( "<title>%title%</title><h1>%title%</h1>%body%%unused", ImmutableSet.of( "%title%", "%body%" ) );
+        assertEquals( 3, l_template.slots() );
+
+        final StringWriter l_output = new StringWriter();
+        l_template.write(
+            l_output,
+            ImmutableMap.<String, CTemplateFile.ISlot>of(
+                "%title%", i -> i.write( "$1 \\title" ),
+                "%body%", i -> i.write( "%title%" )
+            )
+        );
+        assertEquals( "<title>$1 \\title</title><h1>$1 \\title</h1>%title%%unused", l_output.toString() );
+    }
+
+    /**
+     * benchmark of the HTML and LaTeX rendering of a synthetic
+     * grammar, measures the time and allocated bytes per rule,
+     * the benchmark is not part of the unit tests and runs only manually
+     *
+     * @throws IOException on removing the temporary files
+     */
+    public final void benchmark() throws IOException
+    {
+        final List<IGrammarElement> l_rules = TestCGrammarTable.rules( RULES );
+        final IGrammarComplexElement l_grammar = new CGrammarRule( "grammar", "", new CGrammarIdentifier( IDENTIFIER ) );
+
+        for ( final ETemplate l_type : ETemplate.values() )
+        {
+            // warm-up with an own template instance, so the fragment cache is empty on measuring
+            try ( final ITemplate l_warmup = l_type.generate() )
+            {
+                l_rules.forEach( j -> l_warmup.element( l_grammar, (IGrammarComplexElement) j ) );
+            }
+
+            try ( final ITemplate l_template = l_type.generate() )
+            {
+                final long l_bytes = allocated();
+                final long l_time = System.nanoTime();
+                l_rules.forEach( j -> l_template.element( l_grammar, (IGrammarComplexElement) j ) );
+                final long l_timeend = System.nanoTime();
+                final long l_bytesend = allocated();
+
+                System.out.println( MessageFormat.format(
+                    "template {0} rendering: {1} ns / rule, {2} bytes / rule",
+                    l_type, ( l_timeend - l_time ) / RULES, ( l_bytesend - l_bytes ) / RULES
+                ) );
+            }
+        }
+    }
+
+    /**
+     * manual test
+     *
+     * @param p_args arguments
+     * @throws IOException on removing the temporary files
+     */
+    public static void main( final String[] p_args ) throws IOException
+    {
+        final TestCTemplate l_test = new TestCTemplate();
+        l_test.invoketest();
+        l_test.benchmark();
+    }
+
+
+    /**
+     * returns the allocated bytes of the current thread
+     *
+     * @return allocated bytes or zero if the virtual machine does not count them
+     */
+    private static long allocated()
+    {
+        final Object l_bean = ManagementFactory.getThreadMXBean();
+        return l_bean instanceof ThreadMXBean
+               ? ( (ThreadMXBean) l_bean ).getThreadAllocatedBytes( Thread.currentThread().getId() )
+               : 0;
+    }
+
+
+    /**
+     * template which counts the rendered identifiers
+     */
+    private static final class CTemplate extends IBaseTemplate
+    {
+        /**
+         * number of rendered identifiers
+         */
+        private final AtomicInteger m_identifier = new AtomicInteger();
+
+        /**
+         * ctor
+         */
+        CTemplate()
+        {
+            super( "test", "" );
+        }
+
+        /**
+         * renders an element
+         *
+         * @param p_element element
+         * @return string representation
+         */
+        public final String render( final IGrammarElement p_element )
+        {
+            final StringBuilder l_output = new StringBuilder();
+            this.map( p_element, l_output );
+            return l_output.toString();
+        }
+
+        @Override
+        public final void preprocess( final Path p_output )
+        {
+        }
+
+        @Override
+        public final void postprocess( final Path p_output )
+        {
+        }
+
+        @Override
+        public final void close()
+        {
+        }
+
+        @Override
+        public final IGrammarComplexElement grammar( final IGrammarComplexElement p_grammar )
+        {
+            return p_grammar;
+        }
+
+        @Override
+        public final IGrammarComplexElement element( final IGrammarComplexElement p_grammar, final IGrammarComplexElement p_element )
+        {
+            return p_element;
+        }
+
+        @Override
+        protected final void opencardinality( final IGrammarElement.ECardinality p_cardinality, final StringBuilder p_output )
+        {
+        }
+
+        @Override
+        protected final void closecardinality( final IGrammarElement.ECardinality p_cardinality, final StringBuilder p_output, final int p_start )
+        {
+            p_output.append( p_cardinality );
+        }
+
+        @Override
+        protected final void sequence( final IGrammarCollection p_element, final StringBuilder p_output )
+        {
+            this.map( p_element.get(), " ", p_output );
+        }
+
+        @Override
+        protected final void choice( final IGrammarChoice p_element, final StringBuilder p_output )
+        {
+            this.map( p_element.get(), " | ", p_output );
+        }
+
+        @Override
+        protected final void group( final IGrammarGroup p_element, final StringBuilder p_output )
+        {
+            p_output.append( '(' );
+            this.map( p_element.element(), p_output );
+            p_output.append( ')' );
+        }
+
+        @Override
+        protected final void terminalvalue( final IGrammarSimpleElement<?> p_element, final StringBuilder p_output )
+        {
+            p_output.append( p_element.<String>get() );
+        }
+
+        @Override
+        protected final void characterclass( final IGrammarCharacterClass p_element, final StringBuilder p_output )
+        {
+            p_output.append( p_element.notation() );
+        }
+
+        @Override
+        protected final void nonterminal( final IGrammarIdentifier p_element, final StringBuilder p_output )
+        {
+            m_identifier.incrementAndGet();
+            p_output.append( '<' ).append( p_element.<String>get() ).append( '>' );
+        }
+
+        @Override
+        protected final void negation( final IGrammarElement p_element, final StringBuilder p_output )
+        {
+            p_output.append( '~' );
+            this.map( p_element, p_output );
+        }
+    }
+
+}